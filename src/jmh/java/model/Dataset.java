@@ -0,0 +1,48 @@
+package model;
+
+import util.TimeSimulation;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Seeded Vintage of a given number of entities for the benchmarks, generated by {@link WorkloadGenerator}.
+ * <p>
+ * One entity in twenty is a user, one in five an order and the rest are products, published and ordered over the 30
+ * days from {@link #START} to {@link #END}; there are always 20 shipping companies, a quarter of them premium.
+ */
+final class Dataset {
+    static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+    static final LocalDateTime END = START.plusDays(30);
+    private static final int SHIPPING_COMPANIES = 20;
+
+    final Vintage vintage;
+    final List<String> userIds;
+    final List<String> shippingCompanyIds;
+
+    private Dataset(Vintage vintage, List<String> userIds, List<String> shippingCompanyIds) {
+        this.vintage = vintage;
+        this.userIds = userIds;
+        this.shippingCompanyIds = shippingCompanyIds;
+    }
+
+    /**
+     * Builds a dataset. The simulated clock is left at {@link #END}.
+     *
+     * @param size Number of entities
+     * @param seed Random seed
+     * @return New dataset
+     */
+    static Dataset build(int size, long seed) {
+        TimeSimulation.setClock(Clock.fixed(START.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        Vintage vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        int users = Math.max(2, size / 20);
+        int orders = size / 5;
+        int products = Math.max(0, size - users - orders - SHIPPING_COMPANIES);
+        WorkloadGenerator generator = new WorkloadGenerator(vintage, new WorkloadGenerator.Config(users, SHIPPING_COMPANIES, 0.25, products, orders, 30, seed));
+        generator.generate();
+        return new Dataset(vintage, generator.userIds(), generator.shippingCompanyIds());
+    }
+}
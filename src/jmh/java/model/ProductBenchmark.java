@@ -0,0 +1,38 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the price of each type of product.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductBenchmark {
+    @Param({"Sneaker", "PremiumSneaker", "TShirt", "Handbag", "PremiumHandbag"})
+    public String type;
+
+    private Product product;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        do {
+            product = WorkloadGenerator.product(random, "seller", "shipping", 0);
+        } while (!product.getClass().getSimpleName().equals(type));
+    }
+
+    @Benchmark
+    public BigDecimal priceCorrection() {
+        return product.priceCorrection();
+    }
+
+    @Benchmark
+    public BigDecimal price() {
+        return product.price();
+    }
+}
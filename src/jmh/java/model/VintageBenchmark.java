@@ -0,0 +1,86 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Vintage queries and of ordering a cart, over datasets of 10k to 10M entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VintageBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Dataset dataset;
+    private Vintage vintage;
+    private ShippingCompany shippingCompany;
+    private Random random;
+    private int published;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataset = Dataset.build(size, 42);
+        vintage = dataset.vintage;
+        shippingCompany = vintage.shippingCompanies().get(dataset.shippingCompanyIds.get(0));
+        random = new Random(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Publishes one product, adds it to the cart of another user and orders that cart.
+     */
+    @Benchmark
+    public List<Order> orderUserCart() {
+        List<String> userIds = dataset.userIds;
+        String sellerId = userIds.get(random.nextInt(userIds.size()));
+        String buyerId = userIds.get(random.nextInt(userIds.size()));
+        String shippingCompanyId = dataset.shippingCompanyIds.get(random.nextInt(dataset.shippingCompanyIds.size()));
+        Product product = WorkloadGenerator.product(random, sellerId, shippingCompanyId, published++);
+        vintage.publishProduct(sellerId, product);
+        vintage.addProductToUserCart(buyerId, product.getId());
+        return vintage.orderUserCart(buyerId);
+    }
+
+    @Benchmark
+    public List<User> topSellersInInterval() {
+        return vintage.topSellersInInterval(Dataset.START.plusDays(10), Dataset.START.plusDays(20));
+    }
+
+    @Benchmark
+    public List<User> topBuyersInInterval() {
+        return vintage.topBuyersInInterval(Dataset.START.plusDays(10), Dataset.START.plusDays(20));
+    }
+
+    @Benchmark
+    public Optional<User> userWithMostRevenue() {
+        return vintage.userWithMostRevenue();
+    }
+
+    @Benchmark
+    public List<Product> getProducts() {
+        return vintage.getProducts();
+    }
+
+    @Benchmark
+    public List<Order> getInitializedOrders() {
+        return shippingCompany.getInitializedOrders();
+    }
+
+    @Benchmark
+    public BigDecimal getRevenue() {
+        return vintage.getRevenue();
+    }
+}
@@ -1,7 +1,40 @@
 import controllerView.ControllerView;
+import controllerView.ScriptRunner;
+import model.SnapshotChain;
+import model.SystemState;
+import model.Vintage;
+import util.TimeSimulation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class Main {
-    public static void main(String[] args) {
-        new ControllerView().run();
+    /**
+     * Starts the interactive menus, or runs a command script with {@code --script <script> [snapshot]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("--script")) {
+            runScript(Path.of(args[1]), args.length > 2 ? Path.of(args[2]) : null);
+        } else {
+            new ControllerView().run();
+        }
+    }
+
+    private static void runScript(Path script, Path snapshot) throws IOException {
+        Vintage model = null;
+        if (snapshot != null) {
+            SystemState systemState = SnapshotChain.read(snapshot);
+            TimeSimulation.setClock(systemState.clock());
+            model = systemState.vintage();
+        }
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            new ScriptRunner(model, out).run(reader);
+        }
     }
 }
@@ -1,22 +1,34 @@
 package controllerView;
 
+import exceptions.DuplicateEmailException;
+import exceptions.DuplicateShippingCompanyNameException;
+import exceptions.ProductInCartUnavailable;
 import model.*;
 import util.TimeSimulation;
 
 import java.awt.*;
-import java.io.*;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.List;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.function.Function;
 
 public class ControllerView {
     private static final int EXIT = 0;
+    private static final int PAGE_SIZE = 20;
 
     private static final int NEW_SYSTEM = 1;
     private static final int LOAD_SYSTEM = 2;
+    private static final int OPEN_JOURNALED_SYSTEM = 3;
+
+    private static final String SNAPSHOT_FILE = "vintage.snapshot";
+    private static final String JOURNAL_FILE = "vintage.journal";
 
     private static final int REGISTER_USER = 1;
     private static final int REGISTER_SHIPPING_COMPANY = 2;
@@ -25,6 +37,7 @@ public class ControllerView {
     private static final int SAVE_SYSTEM = 5;
     private static final int STATISTICS = 6;
     private static final int ADVANCE_TIME = 7;
+    private static final int IMPORT_DATA = 8;
 
     private static final int ALL_TIME_BEST_SELLER = 1;
     private static final int BEST_SELLER_IN_TIME_INTERVAL = 2;
@@ -69,6 +82,10 @@ public class ControllerView {
     private final Scanner sc;
     private String userId;
     private String shippingCompanyId;
+    private Journal journal;
+    private Path snapshotPath;
+    private BackgroundSnapshot background;
+    private Path savePath;
 
     public ControllerView() {
         this.sc = new Scanner(System.in);
@@ -77,6 +94,7 @@ public class ControllerView {
         System.out.println("VINTAGE - " + now());
         System.out.println("  1. New System");
         System.out.println("  2. Load System");
+        System.out.println("  3. Open Journaled System");
         System.out.println("  0. Exit");
         System.out.print("  Answer: ");
 
@@ -84,36 +102,53 @@ public class ControllerView {
         sc.nextLine();
 
         switch (option) {
-            case NEW_SYSTEM -> {
-                System.out.println("\nSystem Initialization - " + now());
-                System.out.print("  Small order expedition base cost: ");
-                var small = new BigDecimal(sc.nextLine());
-                System.out.print("  Medium order expedition base cost: ");
-                var medium = new BigDecimal(sc.nextLine());
-                System.out.print("  Big order expedition base cost: ");
-                var big = new BigDecimal(sc.nextLine());
-                System.out.print("  Transportation fee: ");
-                var fee = new BigDecimal(sc.nextLine());
-                this.model = new Vintage(small, medium, big, fee);
-            }
+            case NEW_SYSTEM -> this.model = newSystem();
             case LOAD_SYSTEM -> {
                 System.out.println("\nLoad System State - " + now());
                 System.out.print("  Path: ");
                 String path = sc.nextLine();
-                ClockVintagePair systemState = null;
+                System.out.print("  Memory-map and load lazily? [y/n] ");
+                boolean lazy = sc.nextLine().equals("y");
+                SystemState systemState = null;
                 try {
-                    FileInputStream fileIn = new FileInputStream(path);
-                    ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-                    systemState = (ClockVintagePair) objectIn.readObject();
-                    objectIn.close();
-                    fileIn.close();
-                } catch (IOException | ClassNotFoundException e) {
+                    if (lazy && !SnapshotChain.canMap(Path.of(path))) {
+                        System.out.println("  The snapshot is chunked or has deltas, loading it sequentially.");
+                        lazy = false;
+                    }
+                    systemState = lazy ? SnapshotCodec.map(Path.of(path)) : SnapshotChain.read(Path.of(path));
+                } catch (IOException e) {
                     System.out.println("  Error loading system from file.");
+                    System.exit(1);
                 }
-                this.model = systemState.vintage;
-                TimeSimulation.setClock(systemState.clock);
+                this.model = systemState.vintage();
+                this.savePath = Path.of(path);
+                TimeSimulation.setClock(systemState.clock());
                 System.out.println("  System loaded from " + path);
             }
+            case OPEN_JOURNALED_SYSTEM -> {
+                System.out.println("\nOpen Journaled System - " + now());
+                System.out.print("  Directory: ");
+                Path directory = Path.of(sc.nextLine());
+                Path journalPath = directory.resolve(JOURNAL_FILE);
+                this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+                SystemState systemState = null;
+                try {
+                    Files.createDirectories(directory);
+                    boolean recovering = Files.exists(snapshotPath);
+                    systemState = recovering
+                            ? Journal.recover(snapshotPath, journalPath)
+                            : new SystemState(TimeSimulation.getClock(), newSystem());
+                    this.journal = Journal.open(journalPath, systemState);
+                    if (!recovering) {
+                        journal.checkpoint(snapshotPath);
+                    }
+                } catch (IOException e) {
+                    System.out.println("  Error opening journaled system.");
+                    System.exit(1);
+                }
+                this.model = systemState.vintage();
+                System.out.println("  Journaling to " + directory);
+            }
             case EXIT -> {
                 this.model = null;
                 System.out.println("Exiting...");
@@ -125,6 +160,19 @@ public class ControllerView {
         }
     }
 
+    private Vintage newSystem() {
+        System.out.println("\nSystem Initialization - " + now());
+        System.out.print("  Small order expedition base cost: ");
+        var small = new BigDecimal(sc.nextLine());
+        System.out.print("  Medium order expedition base cost: ");
+        var medium = new BigDecimal(sc.nextLine());
+        System.out.print("  Big order expedition base cost: ");
+        var big = new BigDecimal(sc.nextLine());
+        System.out.print("  Transportation fee: ");
+        var fee = new BigDecimal(sc.nextLine());
+        return new Vintage(small, medium, big, fee);
+    }
+
     public void run() {
         System.out.println("\nVintage Main Menu - " + now());
         System.out.println("  1. Register user");
@@ -134,6 +182,7 @@ public class ControllerView {
         System.out.println("  5. Save system state");
         System.out.println("  6. Statistics");
         System.out.println("  7. Advance time");
+        System.out.println("  8. Import data");
         System.out.println("  0. Exit");
         System.out.print("  Answer: ");
 
@@ -148,6 +197,7 @@ public class ControllerView {
             case SAVE_SYSTEM -> saveSystemState();
             case STATISTICS -> statisticsMenu();
             case ADVANCE_TIME -> advanceTime();
+            case IMPORT_DATA -> importData();
             case EXIT -> exit();
             default -> {
             }
@@ -188,9 +238,16 @@ public class ControllerView {
             case USER_ISSUED_ORDERS -> {
                 System.out.print("  User email: ");
                 String email = sc.nextLine();
-                List<Order> orders = model.getUser(model.getUserIdByEmail(email).orElseThrow()).orElseThrow().getOrdersReceived();
-                for (var order : orders) {
-                    System.out.println("  " + order);
+                String sellerId = model.getUserIdByEmail(email).orElseThrow();
+                Page<Order> page = model.userReceivedOrders(sellerId, null, PAGE_SIZE);
+                page.items().forEach(order -> System.out.println("  " + order));
+                while (page.hasNext()) {
+                    System.out.print("  Next page? [y/n] ");
+                    if (!sc.nextLine().equals("y")) {
+                        break;
+                    }
+                    page = model.userReceivedOrders(sellerId, page.nextCursor(), PAGE_SIZE);
+                    page.items().forEach(order -> System.out.println("  " + order));
                 }
             }
             case USERS_BY_REVENUE -> {
@@ -198,10 +255,13 @@ public class ControllerView {
                 LocalDateTime from = LocalDateTime.parse(sc.nextLine());
                 System.out.print("  To: ");
                 LocalDateTime to = LocalDateTime.parse(sc.nextLine());
+                System.out.print("  Number of users: ");
+                int limit = sc.nextInt();
+                sc.nextLine();
                 System.out.println("  Users by revenue between " + from.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.FULL)) + " and " + to.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.FULL)) + ":");
                 int index = 1;
-                for (var user : model.topSellersInInterval(from, to)) {
-                    System.out.println("  " + index + ". " + user.getName() + " - " + user.getRevenue() + " €");
+                for (var ranked : model.topSellers(from, to, limit)) {
+                    System.out.println("  " + index + ". " + ranked.user().getName() + " - " + ranked.amount() + " €");
                     index++;
                 }
             }
@@ -210,10 +270,13 @@ public class ControllerView {
                 LocalDateTime from = LocalDateTime.parse(sc.nextLine());
                 System.out.print("  To: ");
                 LocalDateTime to = LocalDateTime.parse(sc.nextLine());
+                System.out.print("  Number of users: ");
+                int limit = sc.nextInt();
+                sc.nextLine();
                 System.out.println("  Users by spending between " + from.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.FULL)) + " and " + to.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.FULL)) + ":");
                 int index = 1;
-                for (var user : model.topBuyersInInterval(from, to)) {
-                    System.out.println("  " + index + ". " + user.getName() + " - " + user.getSpending() + " €");
+                for (var ranked : model.topBuyers(from, to, limit)) {
+                    System.out.println("  " + index + ". " + ranked.user().getName() + " - " + ranked.amount() + " €");
                     index++;
                 }
 
@@ -235,6 +298,17 @@ public class ControllerView {
         } else {
             System.out.println("  Exiting...");
         }
+        if (background != null && !background.completion().isDone()) {
+            System.out.println("  Waiting for the background save to finish...");
+            background.completion().exceptionally(e -> null).join();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("  Error closing the journal!");
+            }
+        }
         System.exit(0);
     }
 
@@ -250,23 +324,96 @@ public class ControllerView {
         System.out.println("  Advanced " + days + " day" + (days == 1 ? "" : "s") + ", " + hours + " hour" + (hours == 1 ? "" : "s") + ", " + minutes + " minute" + (minutes == 1 ? "" : "s") + " and " + seconds + " second" + (seconds == 1 ? "" : "s") + ".");
     }
 
+    private void importData() {
+        System.out.println("\nImport Data - " + now());
+        System.out.print("  CSV or JSON Lines file: ");
+        String path = sc.nextLine();
+        BulkImporter importer = new BulkImporter(model);
+        importer.setProgressListener(progress -> System.out.printf("  %d records imported, %d rejected (%.0f records/s)%n", progress.accepted(), progress.rejected(), progress.recordsPerSecond()));
+        try {
+            BulkImporter.Report report = importer.importFile(Path.of(path));
+            report.errors().forEach(error -> System.out.println("  Rejected " + error));
+            System.out.printf("  Imported %d records, rejected %d, in %.1f s (%.0f records/s).%n", report.accepted(), report.rejected(), report.elapsed().toMillis() / 1000.0, report.recordsPerSecond());
+        } catch (IOException e) {
+            System.out.println("  Error reading " + path + "!");
+        }
+    }
+
     private void saveSystemState() {
-        ClockVintagePair systemState = new ClockVintagePair(TimeSimulation.getClock(), model);
+        if (background != null && !background.completion().isDone()) {
+            System.out.println("\nSave System State - " + now());
+            System.out.printf("  A background save is still running (%.0f%% written).%n", background.progress() * 100);
+            return;
+        }
+        if (journal != null) {
+            System.out.println("\nCheckpoint System State - " + now());
+            System.out.print("  Write only the changes since the last checkpoint? [y/n] ");
+            if (sc.nextLine().equals("y")) {
+                try {
+                    Path written = journal.checkpointDelta(snapshotPath);
+                    System.out.println("  Checkpoint written to " + written + ".");
+                } catch (IOException e) {
+                    System.out.println("  Error writing the checkpoint!");
+                }
+                return;
+            }
+            System.out.print("  Write in the background? [y/n] ");
+            if (sc.nextLine().equals("y")) {
+                background = journal.checkpointInBackground(snapshotPath);
+                background.completion().whenComplete((path, e) -> reportBackgroundSave(path, e));
+                System.out.println("  Writing checkpoint to " + snapshotPath + " in the background.");
+                return;
+            }
+            try {
+                journal.checkpoint(snapshotPath);
+            } catch (IOException e) {
+                System.out.println("  Error writing the checkpoint!");
+            }
+            System.out.println("  Checkpoint written to " + snapshotPath + ".");
+            return;
+        }
+        SystemState systemState = new SystemState(TimeSimulation.getClock(), model);
         System.out.println("\nSave System State - " + now());
         System.out.print("  Path: ");
         String path = sc.nextLine();
+        if (Path.of(path).equals(savePath)) {
+            System.out.print("  Save only the changes since the last save? [y/n] ");
+            if (sc.nextLine().equals("y")) {
+                try {
+                    Path written = SnapshotChain.writeDelta(savePath, systemState);
+                    System.out.println("  System saved to " + written + ".");
+                } catch (IOException e) {
+                    System.out.println("  Error saving the system state!");
+                }
+                return;
+            }
+        }
+        System.out.print("  Write in the background? [y/n] ");
+        if (sc.nextLine().equals("y")) {
+            background = BackgroundSnapshot.start(Path.of(path), systemState);
+            background.completion().whenComplete((written, e) -> reportBackgroundSave(written, e));
+            System.out.println("  Saving system to " + path + " in the background.");
+            return;
+        }
+        System.out.print("  Compress in parallel chunks? [y/n] ");
+        boolean chunked = sc.nextLine().equals("y");
         try {
-            FileOutputStream fileOut = new FileOutputStream(path);
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            objectOut.writeObject(systemState);
-            objectOut.close();
-            fileOut.close();
+            SnapshotChain.writeBase(Path.of(path), systemState, chunked);
+            savePath = Path.of(path);
         } catch (IOException e) {
             System.out.println("  Error saving the system state!");
         }
         System.out.println("  System saved to " + path + ".");
     }
 
+    private void reportBackgroundSave(Path path, Throwable e) {
+        if (e != null) {
+            System.out.println("\n  Error saving the system state in the background!");
+        } else {
+            System.out.println("\n  Background save to " + path + " completed.");
+        }
+    }
+
     private void signupUser() {
         System.out.println("\nUser Signup - " + now());
         System.out.print("  Email: ");
@@ -277,8 +424,12 @@ public class ControllerView {
         String address = sc.nextLine();
         System.out.print("  Tax number: ");
         String taxNumber = sc.nextLine();
-        model.registerUser(email, name, address, taxNumber);
-        System.out.println("  User " + name + " registered.");
+        try {
+            model.registerUser(email, name, address, taxNumber);
+            System.out.println("  User " + name + " registered.");
+        } catch (DuplicateEmailException e) {
+            System.out.println("  " + e.getMessage());
+        }
     }
 
     private void signupShippingCompany() {
@@ -289,14 +440,18 @@ public class ControllerView {
         BigDecimal profitMargin = new BigDecimal(sc.nextLine());
         System.out.print("  Is it a premium shipping company? [y/n] ");
         String premium = sc.nextLine();
-        if (premium.equals("y")) {
-            System.out.print("    Premium Tax: ");
-            BigDecimal premiumTax = new BigDecimal(sc.nextLine());
-            model.registerPremiumShippingCompany(name, profitMargin, premiumTax);
-        } else {
-            model.registerShippingCompany(name, profitMargin);
+        try {
+            if (premium.equals("y")) {
+                System.out.print("    Premium Tax: ");
+                BigDecimal premiumTax = new BigDecimal(sc.nextLine());
+                model.registerPremiumShippingCompany(name, profitMargin, premiumTax);
+            } else {
+                model.registerShippingCompany(name, profitMargin);
+            }
+            System.out.println("  Shipping company " + name + " registered.");
+        } catch (DuplicateShippingCompanyNameException e) {
+            System.out.println("  " + e.getMessage());
         }
-        System.out.println("  Shipping company " + name + " registered.");
     }
 
     private void userLogin() {
@@ -331,7 +486,7 @@ public class ControllerView {
             case PUBLISH_PRODUCT -> publishProduct();
             case ADD_PRODUCT_TO_CART -> addProductToCart();
             case REMOVE_PRODUCT_FROM_CART -> removeProductFromCart();
-            case ORDER_CART -> model.orderUserCart(userId);
+            case ORDER_CART -> orderCart();
             case RETURN_ORDER -> returnOrder();
             case SHOW_CART -> showCart();
             case EXIT -> {
@@ -368,7 +523,7 @@ public class ControllerView {
         List<Order> returnableOrders = model.getUserReturnableOrders(userId);
         for (var order : returnableOrders) {
             User seller = model.getUser(order.getSellerId()).orElseThrow();
-            System.out.println("    " + index + ". Size: " + order.getSize() + ", Date: " + order.getCreationDate() + ", Seller: " + seller.getName() + ", Price: " + order.totalCost() + " €");
+            System.out.println("    " + index + ". Size: " + order.getSize() + ", Date: " + order.getCreationDate() + ", Seller: " + seller.getName() + ", Price: " + order.totalCost() + " €, Return by: " + order.returnDeadline());
             index++;
         }
         System.out.println("    0. Exit");
@@ -388,29 +543,89 @@ public class ControllerView {
     }
 
     private void publishProduct() {
-        model.publishProduct(userId, newProduct());
+        Product product = newProduct();
+        if (product == null) {
+            return;
+        }
+        model.publishProduct(userId, product);
         System.out.println("  New product published.");
     }
 
+    private void orderCart() {
+        List<Product> cart = model.getUser(userId).orElseThrow().getCart();
+        try {
+            System.out.println("  " + model.orderUserCart(userId).size() + " orders placed.");
+        } catch (ProductInCartUnavailable e) {
+            System.out.println("  These products are no longer available and were removed from the cart:");
+            cart.stream()
+                    .filter(product -> e.getUnavailableProductIds().contains(product.getId()))
+                    .forEach(product -> System.out.println("    " + product.show()));
+        }
+    }
+
     private void addProductToCart() {
-        System.out.println("  Choose a product:");
-        int index = 1;
-        List<Product> products = model.getProducts()
-                .stream()
-                .filter(product -> !product.getSellerId().equals(userId))
-                .toList();
-        for (var product : products) {
-            System.out.println("    " + index + ". " + product.show());
-            index++;
+        System.out.print("  Search text (e.g. leather tote, empty for none): ");
+        String text = sc.nextLine().strip();
+        System.out.print("  Filters (e.g. brand=Nike \"material=LEATHER\", empty for none): ");
+        ProductQuery query = ProductQuery.all(PAGE_SIZE).excludingSeller(userId);
+        for (String filter : ScriptRunner.tokenize(sc.nextLine())) {
+            int separator = filter.indexOf('=');
+            try {
+                query = query.where(ProductFacet.valueOf(filter.substring(0, Math.max(separator, 0)).toUpperCase()), filter.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                System.out.println("  Unknown filter '" + filter + "'.");
+                return;
+            }
         }
-        System.out.println("    0. Exit");
-        System.out.print("    Answer: ");
-        int productOption = sc.nextInt();
-        sc.nextLine();
-        if (productOption == EXIT) {
+        if (!text.isEmpty()) {
+            List<Product> results = model.searchText(text, query);
+            choose("Best matches:", cursor -> new Page<>(results, null), Product::show)
+                    .ifPresent(product -> model.addProductToUserCart(userId, product.getId()));
             return;
         }
-        model.addProductToUserCart(userId, products.get(productOption - 1).getId());
+        if (!query.filters().isEmpty()) {
+            System.out.println("  " + model.countProducts(query).total() + " products found.");
+        }
+
+        ProductQuery search = query;
+        choose("Choose a product:", cursor -> model.searchProducts(search.after(cursor)), Product::show)
+                .ifPresent(product -> model.addProductToUserCart(userId, product.getId()));
+    }
+
+    /**
+     * Shows a listing a page at a time until an item of it is chosen.
+     *
+     * @param title Title of the listing
+     * @param pages Page of the listing after a cursor, or the first page for a null cursor
+     * @param show  Description of an item
+     * @return Chosen item, or empty if the user exits
+     */
+    private <T> Optional<T> choose(String title, Function<String, Page<T>> pages, Function<T, String> show) {
+        String cursor = null;
+        while (true) {
+            Page<T> page = pages.apply(cursor);
+            System.out.println("  " + title);
+            int index = 1;
+            for (var item : page.items()) {
+                System.out.println("    " + index + ". " + show.apply(item));
+                index++;
+            }
+            if (page.hasNext()) {
+                System.out.println("    " + index + ". Next page");
+            }
+            System.out.println("    0. Exit");
+            System.out.print("    Answer: ");
+            int option = sc.nextInt();
+            sc.nextLine();
+            if (option == EXIT) {
+                return Optional.empty();
+            }
+            if (page.hasNext() && option == index) {
+                cursor = page.nextCursor();
+                continue;
+            }
+            return Optional.of(page.items().get(option - 1));
+        }
     }
 
     private void shippingCompanyMenu() {
@@ -445,45 +660,28 @@ public class ControllerView {
     }
 
     private void expedite() {
-        System.out.println("  Choose an order:");
-        int index = 1;
-        List<Order> initializedOrders = model.getShippingCompanyInitializedOrders(shippingCompanyId);
-        for (var order : initializedOrders) {
-            User buyer = model.getUser(order.getBuyerId()).orElseThrow();
-            System.out.println("    " + index + ". Size: " + order.getSize() + ", Recipient: " + buyer.getName() + ", Address: " + buyer.getAddress());
-            index++;
-        }
-        System.out.println("    0. Exit");
-        System.out.print("    Answer: ");
-        int expediteOption = sc.nextInt();
-        sc.nextLine();
-        if (expediteOption == EXIT) {
+        Optional<Order> order = choose("Choose an order:", cursor -> model.getShippingCompanyInitializedOrders(shippingCompanyId, cursor, PAGE_SIZE), this::showShipment);
+        if (order.isEmpty()) {
             return;
         }
-        model.expediteOrder(initializedOrders.get(expediteOption - 1).getId());
+        model.expediteOrder(order.get().getId());
         System.out.println("  Order expedited.");
     }
 
     public void deliverOrder() {
-        System.out.println("  Choose an order:");
-        int index = 1;
-        List<Order> expeditedOrders = model.getShippingCompanyExpeditedOrders(shippingCompanyId);
-        for (var order : expeditedOrders) {
-            User buyer = model.getUser(order.getBuyerId()).orElseThrow();
-            System.out.println("    " + index + ". Size: " + order.getSize() + ", Recipient: " + buyer.getName() + ", Address: " + buyer.getAddress());
-            index++;
-        }
-        System.out.println("    0. Exit");
-        System.out.print("    Answer: ");
-        int deliverOption = sc.nextInt();
-        sc.nextLine();
-        if (deliverOption == EXIT) {
+        Optional<Order> order = choose("Choose an order:", cursor -> model.getShippingCompanyExpeditedOrders(shippingCompanyId, cursor, PAGE_SIZE), this::showShipment);
+        if (order.isEmpty()) {
             return;
         }
-        model.deliverOrder(expeditedOrders.get(deliverOption - 1).getId());
+        model.deliverOrder(order.get().getId());
         System.out.println("  Order delivered.");
     }
 
+    private String showShipment(Order order) {
+        User buyer = model.getUser(order.getBuyerId()).orElseThrow();
+        return "Size: " + order.getSize() + ", Recipient: " + buyer.getName() + ", Address: " + buyer.getAddress();
+    }
+
     private Product newProduct() {
         System.out.println("\nNew Product - " + now());
 
@@ -526,17 +724,11 @@ public class ControllerView {
             default -> Product.State.NEW_WITH_TAG;
         };
 
-        System.out.println("  Choose a shipping company:");
-        int index = 1;
-        List<ShippingCompany> shippingCompanies = model.getShippingCompanies();
-        for (var shippingCompany : shippingCompanies) {
-            System.out.println("    " + index + ". " + shippingCompany.getName() + (shippingCompany instanceof Premium ? " P" : ""));
-            index++;
+        Optional<ShippingCompanySummary> shippingCompany = choose("Choose a shipping company:", cursor -> model.getShippingCompanySummaries(cursor, PAGE_SIZE), company -> company.name() + (company.premium() ? " P" : ""));
+        if (shippingCompany.isEmpty()) {
+            return null;
         }
-        System.out.print("  Answer: ");
-        int option = sc.nextInt();
-        sc.nextLine();
-        String shippingCompanyId = shippingCompanies.get(option - 1).getId();
+        String shippingCompanyId = shippingCompany.get().id();
 
         switch (productTypeOption) {
             case SNEAKER -> {
@@ -648,7 +840,4 @@ public class ControllerView {
                 .atOffset(ZoneOffset.UTC)
                 .format(DateTimeFormatter.RFC_1123_DATE_TIME);
     }
-
-    record ClockVintagePair(Clock clock, Vintage vintage) implements Serializable {
-    }
 }
@@ -0,0 +1,337 @@
+package controllerView;
+
+import model.*;
+import util.TimeSimulation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Runs a command script against a Vintage without rendering menus.
+ * <p>
+ * Each line holds one command followed by its arguments, separated by spaces; an argument with spaces is written
+ * between double quotes, and blank lines and lines starting with {@code #} are skipped. The commands are:
+ * <pre>
+ * system &lt;small&gt; &lt;medium&gt; &lt;big&gt; &lt;fee&gt;             start a new system
+ * user &lt;email&gt; &lt;name&gt; &lt;address&gt; &lt;tax number&gt;     register a user
+ * shipping &lt;name&gt; &lt;profit margin&gt; [premium tax]   register a shipping company
+ * import &lt;file&gt;                                   import a CSV or JSON Lines file
+ * generate &lt;users&gt; &lt;shipping companies&gt; &lt;products&gt; &lt;orders&gt; &lt;days&gt; &lt;seed&gt;
+ * login &lt;email&gt;                                   act as a user
+ * company &lt;name&gt;                                  act as a shipping company
+ * publish &lt;ref&gt; &lt;type&gt; &lt;shipping company&gt; field=value...
+ * add &lt;ref&gt;...                                    add products to the cart
+ * remove &lt;ref&gt;...                                 remove products from the cart
+ * order [ref]                                     order the cart
+ * expedite [ref]                                  expedite the orders of a ref, or all initialized orders
+ * deliver [ref]                                   deliver the orders of a ref, or all expedited orders
+ * return &lt;ref&gt;                                    return the orders of a ref
+ * advance &lt;duration&gt;                              advance time by an ISO-8601 duration
+ * stats                                           print the statistics
+ * top sellers|buyers &lt;from&gt; &lt;to&gt; &lt;limit&gt;          print a leaderboard of an ISO-8601 date interval
+ * search &lt;limit&gt; [sort] [facet=value...] [min=price] [max=price] [after=cursor] [text=words]
+ *                                                 print a page of the products on sale and its next cursor
+ * </pre>
+ * Products are published with the type and fields of {@link BulkImporter} product records and are referred to by
+ * the ref they were published under, or by their id. A failed command is reported with its line number and the
+ * script goes on.
+ */
+public class ScriptRunner {
+    private final BufferedWriter out;
+    private final Map<String, String> userIds;
+    private final Map<String, String> shippingCompanyIds;
+    private final Map<String, String> productIds;
+    private final Map<String, List<String>> orderIds;
+    private Vintage model;
+    private String userId;
+    private String shippingCompanyId;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param model Vintage to run the script against, or null if the script starts a new system
+     * @param out   Output of the commands
+     */
+    public ScriptRunner(Vintage model, BufferedWriter out) {
+        this.model = model;
+        this.out = out;
+        this.userIds = new HashMap<>();
+        this.shippingCompanyIds = new HashMap<>();
+        this.productIds = new HashMap<>();
+        this.orderIds = new HashMap<>();
+    }
+
+    /**
+     * Runs every command of a script and writes a throughput summary.
+     *
+     * @param script Command script
+     * @return Summary of the run
+     */
+    public Summary run(BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        long lineNumber = 0;
+        long commands = 0;
+        long failed = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            List<String> arguments;
+            try {
+                arguments = tokenize(line);
+            } catch (IllegalArgumentException e) {
+                failed++;
+                out.write("line " + lineNumber + ": " + e.getMessage());
+                out.newLine();
+                continue;
+            }
+            if (arguments.isEmpty() || arguments.get(0).startsWith("#")) {
+                continue;
+            }
+            commands++;
+            try {
+                execute(arguments);
+            } catch (IllegalStateException | IllegalArgumentException | NoSuchElementException |
+                     IndexOutOfBoundsException | DateTimeException | IOException e) {
+                failed++;
+                out.write("line " + lineNumber + ": " + arguments.get(0) + " failed: " + e.getMessage());
+                out.newLine();
+            }
+        }
+
+        Summary summary = new Summary(commands, failed, Duration.ofNanos(System.nanoTime() - start));
+        out.write(String.format("%d commands, %d failed, in %.3f s (%.0f commands/s).", summary.commands(), summary.failed(), summary.elapsed().toNanos() / 1e9, summary.commandsPerSecond()));
+        out.newLine();
+        out.flush();
+        return summary;
+    }
+
+    private void execute(List<String> arguments) throws IOException {
+        String command = arguments.get(0);
+        if (model == null && !command.equals("system")) {
+            throw new IllegalStateException("No system was started.");
+        }
+        switch (command) {
+            case "system" -> {
+                model = new Vintage(arguments.get(1), arguments.get(2), arguments.get(3), arguments.get(4));
+                userIds.clear();
+                shippingCompanyIds.clear();
+                productIds.clear();
+                orderIds.clear();
+                userId = null;
+                shippingCompanyId = null;
+            }
+            case "user" -> model.registerUser(arguments.get(1), arguments.get(2), arguments.get(3), arguments.get(4));
+            case "shipping" -> {
+                if (arguments.size() > 3) {
+                    model.registerPremiumShippingCompany(arguments.get(1), new BigDecimal(arguments.get(2)), new BigDecimal(arguments.get(3)));
+                } else {
+                    model.registerShippingCompany(arguments.get(1), new BigDecimal(arguments.get(2)));
+                }
+            }
+            case "import" -> {
+                BulkImporter.Report report = new BulkImporter(model).importFile(Path.of(arguments.get(1)));
+                for (String error : report.errors()) {
+                    out.write("  Rejected " + error);
+                    out.newLine();
+                }
+                out.write("Imported " + report.accepted() + " records, rejected " + report.rejected() + ".");
+                out.newLine();
+            }
+            case "generate" -> {
+                WorkloadGenerator.Config config = new WorkloadGenerator.Config(Integer.parseInt(arguments.get(1)), Integer.parseInt(arguments.get(2)), 0.25, Integer.parseInt(arguments.get(3)), Integer.parseInt(arguments.get(4)), Integer.parseInt(arguments.get(5)), Long.parseLong(arguments.get(6)));
+                WorkloadGenerator.Summary summary = new WorkloadGenerator(model, config).generate();
+                out.write("Generated " + summary.orders() + " orders (" + summary.expedited() + " expedited, " + summary.delivered() + " delivered, " + summary.returned() + " returned).");
+                out.newLine();
+            }
+            case "login" -> userId = userId(arguments.get(1));
+            case "company" -> shippingCompanyId = shippingCompanyId(arguments.get(1));
+            case "publish" -> {
+                String ref = arguments.get(1);
+                Map<String, String> fields = new HashMap<>();
+                for (String field : arguments.subList(4, arguments.size())) {
+                    int separator = field.indexOf('=');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Expected field=value but found '" + field + "'.");
+                    }
+                    fields.put(field.substring(0, separator), field.substring(separator + 1));
+                }
+                Product product = BulkImporter.newProduct(arguments.get(2), currentUser(), shippingCompanyId(arguments.get(3)), fields);
+                model.publishProduct(currentUser(), product);
+                productIds.put(ref, product.getId());
+            }
+            case "add" -> arguments.subList(1, arguments.size()).forEach(ref -> model.addProductToUserCart(currentUser(), productId(ref)));
+            case "remove" -> arguments.subList(1, arguments.size()).forEach(ref -> model.removeProductFromUserCart(currentUser(), productId(ref)));
+            case "order" -> {
+                List<Order> orders = model.orderUserCart(currentUser());
+                if (arguments.size() > 1) {
+                    orderIds.put(arguments.get(1), orders.stream().map(Order::getId).toList());
+                }
+            }
+            case "expedite" -> {
+                List<String> orders = arguments.size() > 1
+                        ? orderIds(arguments.get(1))
+                        : model.getShippingCompanyInitializedOrders(currentShippingCompany()).stream().map(Order::getId).toList();
+                orders.forEach(model::expediteOrder);
+            }
+            case "deliver" -> {
+                List<String> orders = arguments.size() > 1
+                        ? orderIds(arguments.get(1))
+                        : model.getShippingCompanyExpeditedOrders(currentShippingCompany()).stream().map(Order::getId).toList();
+                orders.forEach(model::deliverOrder);
+            }
+            case "return" -> orderIds(arguments.get(1)).forEach(model::returnOrder);
+            case "advance" -> TimeSimulation.advanceTime(Duration.parse(arguments.get(1)));
+            case "stats" -> {
+                out.write("Vintage revenue: " + model.getRevenue() + " €");
+                out.newLine();
+                out.write("All time best seller: " + model.userWithMostRevenue().map(User::getName).orElse("none"));
+                out.newLine();
+                out.write("Shipping company with most revenue: " + model.shippingCompanyMostRevenue().map(ShippingCompany::getName).orElse("none"));
+                out.newLine();
+            }
+            case "top" -> {
+                LocalDateTime from = LocalDateTime.parse(arguments.get(2));
+                LocalDateTime to = LocalDateTime.parse(arguments.get(3));
+                int limit = Integer.parseInt(arguments.get(4));
+                List<RankedUser> ranking = switch (arguments.get(1)) {
+                    case "sellers" -> model.topSellers(from, to, limit);
+                    case "buyers" -> model.topBuyers(from, to, limit);
+                    default -> throw new IllegalArgumentException("Expected sellers or buyers.");
+                };
+                int index = 1;
+                for (RankedUser ranked : ranking) {
+                    out.write(index++ + ". " + ranked.user().getName() + " - " + ranked.amount() + " €");
+                    out.newLine();
+                }
+            }
+            case "search" -> {
+                ProductQuery query = ProductQuery.all(Integer.parseInt(arguments.get(1)));
+                String text = null;
+                for (String argument : arguments.subList(2, arguments.size())) {
+                    int separator = argument.indexOf('=');
+                    if (separator < 0) {
+                        query = query.sortedBy(ProductQuery.Sort.valueOf(argument.toUpperCase()));
+                    } else if (argument.startsWith("after=")) {
+                        query = query.after(argument.substring(separator + 1));
+                    } else if (argument.startsWith("text=")) {
+                        text = argument.substring(separator + 1);
+                    } else if (argument.startsWith("min=")) {
+                        query = query.pricedBetween(new BigDecimal(argument.substring(separator + 1)), query.maxPrice());
+                    } else if (argument.startsWith("max=")) {
+                        query = query.pricedBetween(query.minPrice(), new BigDecimal(argument.substring(separator + 1)));
+                    } else {
+                        query = query.where(ProductFacet.valueOf(argument.substring(0, separator).toUpperCase()), argument.substring(separator + 1));
+                    }
+                }
+                Page<Product> page = text != null
+                        ? new Page<>(model.searchText(text, query), null)
+                        : model.searchProducts(query);
+                for (Product product : page.items()) {
+                    out.write(product.getId() + " " + product.show());
+                    out.newLine();
+                }
+                out.write("next: " + (page.hasNext() ? page.nextCursor() : "none"));
+                out.newLine();
+            }
+            default -> throw new IllegalArgumentException("Unknown command.");
+        }
+    }
+
+    private String currentUser() {
+        if (userId == null) {
+            throw new IllegalStateException("No user logged in.");
+        }
+        return userId;
+    }
+
+    private String currentShippingCompany() {
+        if (shippingCompanyId == null) {
+            throw new IllegalStateException("No shipping company logged in.");
+        }
+        return shippingCompanyId;
+    }
+
+    private String userId(String email) {
+        return userIds.computeIfAbsent(email, key -> model.getUserIdByEmail(key)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown user '" + key + "'.")));
+    }
+
+    private String shippingCompanyId(String name) {
+        return shippingCompanyIds.computeIfAbsent(name, key -> model.getShippingCompanyIdByName(key)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown shipping company '" + key + "'.")));
+    }
+
+    private String productId(String ref) {
+        return productIds.getOrDefault(ref, ref);
+    }
+
+    private List<String> orderIds(String ref) {
+        List<String> orders = orderIds.get(ref);
+        if (orders == null) {
+            throw new IllegalArgumentException("Unknown order '" + ref + "'.");
+        }
+        return orders;
+    }
+
+    /**
+     * Splits a line into its arguments, keeping text between double quotes together.
+     * Inside quotes, a backslash escapes the next character.
+     */
+    static List<String> tokenize(String line) {
+        List<String> arguments = new ArrayList<>();
+        StringBuilder argument = new StringBuilder();
+        boolean inArgument = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < line.length()) {
+                    argument.append(line.charAt(++i));
+                } else {
+                    argument.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                argument.append(c);
+                inArgument = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted argument.");
+        }
+        if (inArgument) {
+            arguments.add(argument.toString());
+        }
+        return arguments;
+    }
+
+    /**
+     * Outcome of a script run.
+     *
+     * @param commands Commands run
+     * @param failed   Commands that failed
+     * @param elapsed  Run duration
+     */
+    public record Summary(long commands, long failed, Duration elapsed) {
+        public double commandsPerSecond() {
+            return elapsed.isZero() ? 0 : commands * 1e9 / elapsed.toNanos();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package exceptions;
+
+public class DuplicateEmailException extends IllegalStateException {
+    public DuplicateEmailException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package exceptions;
+
+public class DuplicateShippingCompanyNameException extends IllegalStateException {
+    public DuplicateShippingCompanyNameException(String message) {
+        super(message);
+    }
+}
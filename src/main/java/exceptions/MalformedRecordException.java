@@ -0,0 +1,7 @@
+package exceptions;
+
+public class MalformedRecordException extends IllegalStateException {
+    public MalformedRecordException(String message) {
+        super(message);
+    }
+}
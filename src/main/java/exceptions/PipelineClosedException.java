@@ -0,0 +1,7 @@
+package exceptions;
+
+public class PipelineClosedException extends IllegalStateException {
+    public PipelineClosedException(String message) {
+        super(message);
+    }
+}
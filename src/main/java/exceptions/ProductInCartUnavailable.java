@@ -1,7 +1,26 @@
 package exceptions;
 
+import java.util.List;
+
 public class ProductInCartUnavailable extends IllegalStateException {
+    private final List<String> unavailableProductIds;
+
     public ProductInCartUnavailable(String message) {
+        this(message, List.of());
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param message               Detail message
+     * @param unavailableProductIds Identification codes of the cart products no longer on sale
+     */
+    public ProductInCartUnavailable(String message, List<String> unavailableProductIds) {
         super(message);
+        this.unavailableProductIds = List.copyOf(unavailableProductIds);
+    }
+
+    public List<String> getUnavailableProductIds() {
+        return unavailableProductIds;
     }
 }
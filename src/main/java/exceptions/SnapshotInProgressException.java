@@ -0,0 +1,7 @@
+package exceptions;
+
+public class SnapshotInProgressException extends IllegalStateException {
+    public SnapshotInProgressException(String message) {
+        super(message);
+    }
+}
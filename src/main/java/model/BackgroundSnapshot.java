@@ -0,0 +1,169 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of a Vintage written on a background thread while the Vintage keeps changing.
+ * <p>
+ * Starting it freezes the top-level maps of the Vintage in constant time, which fixes the set of entities the snapshot
+ * holds while the Vintage records its additions and removals on top of them (see {@link CaptureMap}). From then
+ * on the Vintage preserves a copy of every user, order and shipping company right before changing it for the first
+ * time, and the writer encodes that copy instead of the live entity. Entities are encoded one at a time under the same
+ * lock used to preserve them, so an entity is either written before it changes or preserved and written as it was.
+ * Changing an entity that is being encoded waits for that single entity only.
+ * <p>
+ * The Vintage must only be changed by the thread that starts the snapshot.
+ */
+public final class BackgroundSnapshot {
+    private static final Object WRITTEN = new Object();
+
+    private final Path path;
+    private final Vintage vintage;
+    private final SystemState capture;
+    private final Runnable onWritten;
+    private final Map<String, Object> orders;
+    private final Map<String, Object> users;
+    private final Map<String, Object> shippingCompanies;
+    private final long total;
+    private final CompletableFuture<Path> completion;
+    private volatile long written;
+
+    private BackgroundSnapshot(Path path, SystemState state, Runnable onWritten) {
+        this.path = path;
+        this.vintage = state.vintage();
+        this.onWritten = onWritten;
+        this.orders = new ConcurrentHashMap<>();
+        this.users = new ConcurrentHashMap<>();
+        this.shippingCompanies = new ConcurrentHashMap<>();
+        this.completion = new CompletableFuture<>();
+        Vintage captured = vintage.capture(this);
+        this.capture = new SystemState(state.clock(), captured, state.sequence());
+        this.total = captured.products().size() + captured.orders().size() + captured.shippingCompanies().size() + captured.users().size();
+    }
+
+    /**
+     * Captures a system state and starts writing it to a file on a background thread.
+     *
+     * @param path  Destination file
+     * @param state System state to save
+     * @return Running snapshot
+     */
+    public static BackgroundSnapshot start(Path path, SystemState state) {
+        return start(path, state, () -> {
+        });
+    }
+
+    /**
+     * @param onWritten Runs on the writer thread once the file is in place, before the snapshot completes
+     */
+    static BackgroundSnapshot start(Path path, SystemState state, Runnable onWritten) {
+        BackgroundSnapshot snapshot = new BackgroundSnapshot(path, state, onWritten);
+        Thread writer = new Thread(snapshot::run, "vintage-snapshot");
+        writer.setDaemon(true);
+        writer.start();
+        return snapshot;
+    }
+
+    private void run() {
+        try {
+            SnapshotCodec.write(path, capture, this);
+            onWritten.run();
+            completion.complete(path);
+        } catch (Throwable e) {
+            completion.completeExceptionally(e);
+        } finally {
+            vintage.release(this);
+        }
+    }
+
+    /**
+     * Fraction of the captured entities written so far.
+     *
+     * @return Progress between 0 and 1
+     */
+    public double progress() {
+        return total == 0 ? completion.isDone() ? 1 : 0 : (double) written / total;
+    }
+
+    /**
+     * Completes with the snapshot file once it has been written, or exceptionally if writing it failed.
+     *
+     * @return Completion of the snapshot
+     */
+    public CompletableFuture<Path> completion() {
+        return completion;
+    }
+
+    /**
+     * Sequence number of the last journal record the snapshot covers.
+     *
+     * @return Captured sequence number
+     */
+    public long sequence() {
+        return capture.sequence();
+    }
+
+    void preserve(Order order) {
+        if (capture.vintage().orders().get(order.getId()) == order) {
+            orders.computeIfAbsent(order.getId(), id -> order.clone());
+        }
+    }
+
+    void preserve(User user) {
+        if (capture.vintage().users().get(user.getId()) == user) {
+            users.computeIfAbsent(user.getId(), id -> user.clone());
+        }
+    }
+
+    void preserve(ShippingCompany shippingCompany) {
+        if (capture.vintage().shippingCompanies().get(shippingCompany.getId()) == shippingCompany) {
+            shippingCompanies.computeIfAbsent(shippingCompany.getId(), id -> shippingCompany.clone());
+        }
+    }
+
+    void write(SnapshotOutput output, Product product) throws IOException {
+        SnapshotCodec.writeProduct(output, product);
+        written++;
+    }
+
+    void write(SnapshotOutput output, Order order) throws IOException {
+        encode(orders, order.getId(), order, Order.class, preserved -> SnapshotCodec.writeOrder(output, preserved));
+    }
+
+    void write(SnapshotOutput output, ShippingCompany shippingCompany) throws IOException {
+        encode(shippingCompanies, shippingCompany.getId(), shippingCompany, ShippingCompany.class, preserved -> SnapshotCodec.writeShippingCompany(output, preserved));
+    }
+
+    void write(SnapshotOutput output, User user, Map<String, Product> catalog) throws IOException {
+        encode(users, user.getId(), user, User.class, preserved -> SnapshotCodec.writeUser(output, preserved, catalog));
+    }
+
+    /**
+     * Encodes the preserved copy of an entity, or the live entity if it has not changed, and marks it written so later
+     * changes no longer preserve it.
+     */
+    private <T> void encode(Map<String, Object> preserved, String id, T entity, Class<T> type, Encoder<T> encoder) throws IOException {
+        try {
+            preserved.compute(id, (key, copy) -> {
+                try {
+                    encoder.encode(copy == null ? entity : type.cast(copy));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return WRITTEN;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        written++;
+    }
+
+    private interface Encoder<T> {
+        void encode(T entity) throws IOException;
+    }
+}
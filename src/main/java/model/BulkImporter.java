@@ -0,0 +1,340 @@
+package model;
+
+import exceptions.MalformedRecordException;
+
+import java.awt.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Year;
+import java.util.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Loads users, shipping companies, products and orders into a Vintage from CSV or JSON Lines files.
+ * <p>
+ * Every record has a {@code type} field: {@code user} (email, name, address, tax_number), {@code shipping_company} or
+ * {@code premium_shipping_company} (name, profit_margin, premium_tax), {@code sneaker}, {@code premium_sneaker},
+ * {@code tshirt}, {@code handbag} or {@code premium_handbag}, and {@code order} (buyer, products). Products take the
+ * seller email and shipping company name, the common product fields (description, brand, price, previous_owners,
+ * state) and those of their type (size, color, laces, collection_year, discount, appreciation, pattern, dimension,
+ * material), plus an optional {@code ref} that orders of the same import can refer to instead of the product id.
+ * Orders list their products separated by {@code ';'} and are placed through the buyer cart.
+ * <p>
+ * Users, shipping companies and products are added to the Vintage in batches; a malformed or invalid record is
+ * reported and skipped.
+ */
+public final class BulkImporter {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final int MAX_ERRORS = 100;
+
+    private final Vintage vintage;
+    private final int batchSize;
+    private final Map<String, String> userIds;
+    private final Map<String, String> shippingCompanyIds;
+    private final Map<String, String> productIds;
+    private final List<User> users;
+    private final List<ShippingCompany> shippingCompanies;
+    private final List<Product> products;
+    private final Set<String> pendingProductIds;
+    private final List<PendingOrder> orders;
+    private Consumer<Progress> progressListener;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param vintage   Vintage to import into
+     * @param batchSize Number of records added to the Vintage at once
+     */
+    public BulkImporter(Vintage vintage, int batchSize) {
+        this.vintage = vintage;
+        this.batchSize = batchSize;
+        this.userIds = new HashMap<>(vintage.userIdsByEmail());
+        this.shippingCompanyIds = new HashMap<>();
+        this.productIds = new HashMap<>();
+        this.users = new ArrayList<>();
+        this.shippingCompanies = new ArrayList<>();
+        this.products = new ArrayList<>();
+        this.pendingProductIds = new HashSet<>();
+        this.orders = new ArrayList<>();
+        vintage.shippingCompanies().values().forEach(shippingCompany -> shippingCompanyIds.put(shippingCompany.getName(), shippingCompany.getId()));
+    }
+
+    public BulkImporter(Vintage vintage) {
+        this(vintage, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Sets a listener notified about once a second while importing.
+     *
+     * @param progressListener Progress listener, or null
+     */
+    public void setProgressListener(Consumer<Progress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports every record of a file.
+     *
+     * @param path CSV or JSON Lines file
+     * @return Import report
+     */
+    public Report importFile(Path path) throws IOException {
+        long start = System.nanoTime();
+        long lastReport = start;
+        long accepted = 0;
+        long rejected = 0;
+        List<String> errors = new ArrayList<>();
+
+        try (RecordReader reader = RecordReader.open(path)) {
+            while (true) {
+                try {
+                    Map<String, String> record = reader.next();
+                    if (record == null) {
+                        break;
+                    }
+                    add(record, reader.line());
+                    accepted++;
+                } catch (MalformedRecordException | IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.size() < MAX_ERRORS) {
+                        errors.add("line " + reader.line() + ": " + e.getMessage());
+                    }
+                }
+                if (users.size() + shippingCompanies.size() + products.size() + orders.size() >= batchSize) {
+                    List<String> failed = flush();
+                    accepted -= failed.size();
+                    rejected += failed.size();
+                    failed.stream().limit(Math.max(0, MAX_ERRORS - errors.size())).forEach(errors::add);
+                }
+
+                long now = System.nanoTime();
+                if (progressListener != null && now - lastReport >= 1_000_000_000L) {
+                    progressListener.accept(new Progress(accepted, rejected, rate(accepted + rejected, now - start)));
+                    lastReport = now;
+                }
+            }
+        }
+        List<String> failed = flush();
+        accepted -= failed.size();
+        rejected += failed.size();
+        failed.stream().limit(Math.max(0, MAX_ERRORS - errors.size())).forEach(errors::add);
+        return new Report(accepted, rejected, errors, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static double rate(long records, long nanos) {
+        return nanos == 0 ? 0 : records * 1e9 / nanos;
+    }
+
+    private void add(Map<String, String> record, long line) {
+        String type = required(record, "type");
+        switch (type) {
+            case "user" -> addUser(record);
+            case "shipping_company", "premium_shipping_company" -> addShippingCompany(record, type.startsWith("premium"));
+            case "sneaker", "premium_sneaker", "tshirt", "handbag", "premium_handbag" -> addProduct(record, type);
+            case "order" -> addOrder(record, line);
+            default -> throw new IllegalArgumentException("Unknown record type '" + type + "'.");
+        }
+    }
+
+    private void addUser(Map<String, String> record) {
+        String email = required(record, "email");
+        if (userIds.containsKey(email)) {
+            throw new IllegalArgumentException("Email '" + email + "' is already registered.");
+        }
+        User user = new User(email, required(record, "name"), required(record, "address"), required(record, "tax_number"));
+        userIds.put(email, user.getId());
+        users.add(user);
+    }
+
+    private void addShippingCompany(Map<String, String> record, boolean premium) {
+        String name = required(record, "name");
+        if (shippingCompanyIds.containsKey(name)) {
+            throw new IllegalArgumentException("Shipping company '" + name + "' is already registered.");
+        }
+        BigDecimal profitMargin = decimal(record, "profit_margin");
+        ShippingCompany shippingCompany = premium
+                ? new PremiumShippingCompany(name, vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), profitMargin, decimal(record, "premium_tax"))
+                : new ShippingCompany(name, vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), profitMargin);
+        shippingCompanyIds.put(name, shippingCompany.getId());
+        shippingCompanies.add(shippingCompany);
+    }
+
+    private void addProduct(Map<String, String> record, String type) {
+        String sellerId = reference(userIds, record, "seller", "user");
+        String shippingCompanyId = reference(shippingCompanyIds, record, "shipping_company", "shipping company");
+        Product product = newProduct(type, sellerId, shippingCompanyId, record);
+        String ref = record.get("ref");
+        if (ref != null) {
+            if (productIds.containsKey(ref)) {
+                throw new IllegalArgumentException("Product reference '" + ref + "' is already in use.");
+            }
+            productIds.put(ref, product.getId());
+        }
+        products.add(product);
+        pendingProductIds.add(product.getId());
+    }
+
+    /**
+     * Builds a product from the fields of a record of one of the product types.
+     *
+     * @param type              Product record type
+     * @param sellerId          Seller identification code
+     * @param shippingCompanyId Shipping company identification code
+     * @param record            Product fields
+     * @return New product
+     * @throws IllegalArgumentException If the type is unknown or a field is missing or invalid
+     */
+    public static Product newProduct(String type, String sellerId, String shippingCompanyId, Map<String, String> record) {
+        String description = required(record, "description");
+        String brand = required(record, "brand");
+        BigDecimal price = decimal(record, "price");
+        int previousOwners = integer(record, "previous_owners");
+        Product.State state = constant(Product.State.class, record, "state");
+
+        return switch (type) {
+            case "sneaker" -> new Sneaker(sellerId, shippingCompanyId, description, brand, price, previousOwners, state, integer(record, "size"), color(record), bool(record, "laces"), year(record), decimal(record, "discount"));
+            case "premium_sneaker" -> new PremiumSneaker(sellerId, shippingCompanyId, description, brand, price, previousOwners, state, integer(record, "size"), color(record), bool(record, "laces"), year(record), decimal(record, "appreciation"));
+            case "tshirt" -> new TShirt(sellerId, shippingCompanyId, description, brand, price, previousOwners, state, constant(Size.class, record, "size"), constant(TShirt.Pattern.class, record, "pattern"));
+            case "handbag" -> new Handbag(sellerId, shippingCompanyId, description, brand, price, previousOwners, state, decimal(record, "dimension"), constant(Handbag.Material.class, record, "material"), year(record));
+            case "premium_handbag" -> new PremiumHandbag(sellerId, shippingCompanyId, description, brand, price, previousOwners, state, decimal(record, "dimension"), constant(Handbag.Material.class, record, "material"), year(record), decimal(record, "appreciation"));
+            default -> throw new IllegalArgumentException("Unknown product type '" + type + "'.");
+        };
+    }
+
+    private void addOrder(Map<String, String> record, long line) {
+        String buyerId = reference(userIds, record, "buyer", "user");
+        List<String> ordered = new ArrayList<>();
+        for (String reference : required(record, "products").split(";")) {
+            String productId = productIds.getOrDefault(reference.trim(), reference.trim());
+            if (!vintage.products().containsKey(productId) && !pendingProductIds.contains(productId)) {
+                throw new IllegalArgumentException("Product '" + reference.trim() + "' is not available.");
+            }
+            ordered.add(productId);
+        }
+        orders.add(new PendingOrder(line, buyerId, ordered));
+    }
+
+    /**
+     * Adds the pending users, shipping companies and products to the Vintage, then places the pending orders.
+     *
+     * @return Reasons the orders that could not be placed were rejected
+     */
+    private List<String> flush() {
+        vintage.importBatch(users, shippingCompanies, products);
+        users.clear();
+        shippingCompanies.clear();
+        products.clear();
+        pendingProductIds.clear();
+        List<String> failed = new ArrayList<>();
+        for (PendingOrder order : orders) {
+            if (!vintage.users().get(order.buyerId()).cart().isEmpty()) {
+                failed.add("line " + order.line() + ": The buyer cart is not empty.");
+            } else if (!order.productIds().stream().allMatch(vintage.products()::containsKey)) {
+                failed.add("line " + order.line() + ": A product was sold by an earlier order.");
+            } else {
+                order.productIds().forEach(productId -> vintage.addProductToUserCart(order.buyerId(), productId));
+                vintage.orderUserCart(order.buyerId());
+            }
+        }
+        orders.clear();
+        return failed;
+    }
+
+    private static String required(Map<String, String> record, String field) {
+        String value = record.get(field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing field '" + field + "'.");
+        }
+        return value.trim();
+    }
+
+    private static String reference(Map<String, String> ids, Map<String, String> record, String field, String kind) {
+        String key = required(record, field);
+        String id = ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown " + kind + " '" + key + "'.");
+        }
+        return id;
+    }
+
+    private static BigDecimal decimal(Map<String, String> record, String field) {
+        try {
+            return new BigDecimal(required(record, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field '" + field + "' is not a number.");
+        }
+    }
+
+    private static int integer(Map<String, String> record, String field) {
+        try {
+            return Integer.parseInt(required(record, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field '" + field + "' is not an integer.");
+        }
+    }
+
+    private static boolean bool(Map<String, String> record, String field) {
+        String value = required(record, field).toLowerCase();
+        return switch (value) {
+            case "true", "yes", "y", "1" -> true;
+            case "false", "no", "n", "0" -> false;
+            default -> throw new IllegalArgumentException("Field '" + field + "' is not a boolean.");
+        };
+    }
+
+    private static Year year(Map<String, String> record) {
+        try {
+            return Year.of(integer(record, "collection_year"));
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Field 'collection_year' is out of range.");
+        }
+    }
+
+    private static Color color(Map<String, String> record) {
+        String value = required(record, "color");
+        return Color.decode(value.startsWith("#") ? value : "#" + value);
+    }
+
+    private static <E extends Enum<E>> E constant(Class<E> type, Map<String, String> record, String field) {
+        String value = required(record, field).toUpperCase().replace(' ', '_').replace('-', '_');
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be one of " + Arrays.toString(type.getEnumConstants()) + ".");
+        }
+    }
+
+    /**
+     * Order waiting for its batch to be added.
+     */
+    private record PendingOrder(long line, String buyerId, List<String> productIds) {
+    }
+
+    /**
+     * Import progress.
+     *
+     * @param accepted          Records imported so far
+     * @param rejected          Records rejected so far
+     * @param recordsPerSecond  Records read per second since the import started
+     */
+    public record Progress(long accepted, long rejected, double recordsPerSecond) {
+    }
+
+    /**
+     * Outcome of an import.
+     *
+     * @param accepted Records imported
+     * @param rejected Records rejected
+     * @param errors   Reasons for the first rejections, with their line numbers
+     * @param elapsed  Import duration
+     */
+    public record Report(long accepted, long rejected, List<String> errors, Duration elapsed) {
+        public double recordsPerSecond() {
+            return rate(accepted + rejected, elapsed.toNanos());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Top-level map of a Vintage that a background snapshot can freeze in constant time.
+ * <p>
+ * While frozen, the backing map is left as it was for the snapshot writer to read from another thread, and changes go
+ * to an overlay holding the entries added, replaced or removed since; reads look at the overlay first. Once the writer
+ * thaws the map, the next change folds the overlay back into the backing map, so the cost of a capture is proportional
+ * to the changes made during it. Only one thread may access the map, apart from the writer reading the frozen backing
+ * map.
+ *
+ * @param <V> Type of the values
+ */
+final class CaptureMap<V> extends AbstractMap<String, V> implements Serializable {
+    private static final Object REMOVED = new Object();
+
+    private final Map<String, V> base;
+    private transient Map<String, Object> overlay;
+    private transient volatile boolean frozen;
+    private int size;
+
+    CaptureMap(Map<String, V> base) {
+        this.base = base;
+    }
+
+    /**
+     * Freezes the backing map, folding the changes of the previous capture first.
+     *
+     * @return Backing map, which stays unchanged until {@link #thaw()}
+     */
+    Map<String, V> freeze() {
+        settle();
+        overlay = new LinkedHashMap<>();
+        size = base.size();
+        frozen = true;
+        return base;
+    }
+
+    /**
+     * Lets the next change fold the changes made while frozen back into the backing map. May be called from the
+     * snapshot writer once it no longer reads the backing map.
+     */
+    void thaw() {
+        frozen = false;
+    }
+
+    /**
+     * Values of the map, decoding the ones of a lazy backing map without keeping them.
+     */
+    Iterable<V> transientValues() {
+        if (overlay == null) {
+            return LazyMap.transientValues(base);
+        }
+        List<V> values = new ArrayList<>(size);
+        Iterable<Map.Entry<String, V>> entries = base instanceof LazyMap<V> lazy ? lazy.transientEntries() : base.entrySet();
+        for (Map.Entry<String, V> entry : entries) {
+            if (!overlay.containsKey(entry.getKey())) {
+                values.add(entry.getValue());
+            }
+        }
+        overlay.values().forEach(value -> {
+            if (value != REMOVED) {
+                values.add(cast(value));
+            }
+        });
+        return values;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (overlay != null) {
+            Object value = overlay.get(key);
+            if (value != null) {
+                return value == REMOVED ? null : cast(value);
+            }
+        }
+        return base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (overlay != null) {
+            Object value = overlay.get(key);
+            if (value != null) {
+                return value != REMOVED;
+            }
+        }
+        return base.containsKey(key);
+    }
+
+    @Override
+    public V put(String key, V value) {
+        settle();
+        if (overlay == null) {
+            return base.put(key, value);
+        }
+        boolean present = containsKey(key);
+        V previous = get(key);
+        overlay.put(key, value);
+        if (!present) {
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        settle();
+        if (overlay == null) {
+            return base.remove(key);
+        }
+        return mark((String) key);
+    }
+
+    // marked rather than removed, so iterations over the overlay are not disturbed
+    private V mark(String key) {
+        if (!containsKey(key)) {
+            return null;
+        }
+        V previous = get(key);
+        overlay.put(key, REMOVED);
+        size--;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return overlay == null ? base.size() : size;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return overlay == null ? base.entrySet() : new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return merged();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Iterates the backing entries not changed while frozen, with the replaced values, then the added entries.
+     */
+    private Iterator<Entry<String, V>> merged() {
+        Iterator<Entry<String, V>> backing = base.entrySet().iterator();
+        Iterator<Entry<String, Object>> added = overlay.entrySet().iterator();
+        return new Iterator<>() {
+            private Entry<String, V> next;
+            private String last;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && backing.hasNext()) {
+                    Entry<String, V> entry = backing.next();
+                    Object value = overlay.get(entry.getKey());
+                    if (value == null) {
+                        next = entry;
+                    } else if (value != REMOVED) {
+                        next = new SimpleImmutableEntry<>(entry.getKey(), cast(value));
+                    }
+                }
+                while (next == null && added.hasNext()) {
+                    Entry<String, Object> entry = added.next();
+                    if (entry.getValue() != REMOVED && !base.containsKey(entry.getKey())) {
+                        next = new SimpleImmutableEntry<>(entry.getKey(), cast(entry.getValue()));
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry<String, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<String, V> entry = next;
+                next = null;
+                last = entry.getKey();
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                mark(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Folds the changes made while frozen into the backing map once the writer is done with it. Only changes settle,
+     * as reads may run inside an iteration over the backing map.
+     */
+    private void settle() {
+        if (overlay != null && !frozen) {
+            overlay.forEach((key, value) -> {
+                if (value == REMOVED) {
+                    base.remove(key);
+                } else {
+                    base.put(key, cast(value));
+                }
+            });
+            overlay = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V cast(Object value) {
+        return (V) value;
+    }
+}
@@ -0,0 +1,72 @@
+package model;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Ids of the entities of a Vintage changed since its last saved snapshot.
+ * Catalog products are tracked by id whether they were published or removed from the catalog; orders keep the order
+ * they were first changed in, so new orders are saved in creation order.
+ */
+final class ChangeSet {
+    private final Set<String> products;
+    private final Set<String> orders;
+    private final Set<String> users;
+    private final Set<String> shippingCompanies;
+
+    ChangeSet() {
+        this.products = new HashSet<>();
+        this.orders = new LinkedHashSet<>();
+        this.users = new HashSet<>();
+        this.shippingCompanies = new HashSet<>();
+    }
+
+    void product(String id) {
+        products.add(id);
+    }
+
+    void order(String id) {
+        orders.add(id);
+    }
+
+    void user(String id) {
+        users.add(id);
+    }
+
+    void shippingCompany(String id) {
+        shippingCompanies.add(id);
+    }
+
+    /**
+     * Adds the changes of another set after the ones of this set.
+     *
+     * @param other Changes to add
+     */
+    void addAll(ChangeSet other) {
+        products.addAll(other.products);
+        orders.addAll(other.orders);
+        users.addAll(other.users);
+        shippingCompanies.addAll(other.shippingCompanies);
+    }
+
+    Set<String> products() {
+        return products;
+    }
+
+    Set<String> orders() {
+        return orders;
+    }
+
+    Set<String> users() {
+        return users;
+    }
+
+    Set<String> shippingCompanies() {
+        return shippingCompanies;
+    }
+
+    int size() {
+        return products.size() + orders.size() + users.size() + shippingCompanies.size();
+    }
+}
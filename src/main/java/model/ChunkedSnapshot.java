@@ -0,0 +1,323 @@
+package model;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed snapshot format split into independent chunks, encoded and decoded on a pool of worker threads.
+ * <p>
+ * Layout: header, journal sequence, random snapshot id, clock, Vintage settings and identification code counters, as in
+ * {@link SnapshotCodec}, then
+ * a sequence of chunks ended by a zero byte. A chunk holds up to {@value #CHUNK_SIZE} entities of one kind (catalog
+ * products, orders, shipping companies or users, in that order) encoded as in {@link SnapshotCodec} and deflated. Each
+ * chunk is framed as its kind, entity count, raw and compressed lengths and the CRC-32 of the raw bytes.
+ * <p>
+ * Loading decodes catalog and order chunks in parallel, then shipping company and user chunks, which are relinked to
+ * the orders and catalog products they refer to.
+ */
+public final class ChunkedSnapshot {
+    static final int MAGIC = 0x564E5443; // "VNTC"
+    static final int VERSION = 1;
+    static final int CHUNK_SIZE = 4096;
+
+    private static final byte END = 0;
+    private static final byte PRODUCTS = 1;
+    private static final byte ORDERS = 2;
+    private static final byte SHIPPING_COMPANIES = 3;
+    private static final byte USERS = 4;
+
+    private ChunkedSnapshot() {
+    }
+
+    /**
+     * Writes a system state to a file through a temporary file forced to the storage device and renamed over the
+     * destination, using one worker per available processor.
+     *
+     * @param path  Destination file
+     * @param state System state to save
+     */
+    public static void write(Path path, SystemState state) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(Channels.newOutputStream(channel), state, Runtime.getRuntime().availableProcessors());
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a system state to a stream. The stream is flushed but not closed.
+     *
+     * @param out     Destination stream
+     * @param state   System state to save
+     * @param threads Number of worker threads
+     */
+    public static void write(OutputStream out, SystemState state, int threads) throws IOException {
+        Vintage vintage = state.vintage();
+        SnapshotOutput output = new SnapshotOutput(out);
+        output.writeInt(MAGIC);
+        output.writeVarInt(VERSION);
+        output.writeVarLong(state.sequence());
+        output.writeLong(ThreadLocalRandom.current().nextLong());
+        SnapshotCodec.writeClock(output, state.clock());
+        SnapshotCodec.writeSettings(output, vintage);
+        SnapshotCodec.writeIdCounters(output);
+
+        Map<String, Product> catalog = vintage.products();
+        List<Callable<byte[]>> chunks = new ArrayList<>();
+        addChunks(chunks, PRODUCTS, new ArrayList<>(catalog.values()), SnapshotCodec::writeProduct);
+        addChunks(chunks, ORDERS, new ArrayList<>(vintage.orders().values()), SnapshotCodec::writeOrder);
+        addChunks(chunks, SHIPPING_COMPANIES, new ArrayList<>(vintage.shippingCompanies().values()), SnapshotCodec::writeShippingCompany);
+        addChunks(chunks, USERS, new ArrayList<>(vintage.users().values()), (chunk, user) -> SnapshotCodec.writeUser(chunk, user, catalog));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // keep a bounded window of chunks in flight and write them in order
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            Iterator<Callable<byte[]>> iterator = chunks.iterator();
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (iterator.hasNext() && pending.size() < threads * 2) {
+                    pending.add(pool.submit(iterator.next()));
+                }
+                output.writeBytes(await(pending.remove()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        output.writeByte(END);
+        output.flush();
+        out.flush();
+    }
+
+    /**
+     * Reads a system state from a file, using one worker per available processor.
+     *
+     * @param path Snapshot file
+     * @return Restored system state
+     */
+    public static SystemState read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Reads a system state from a stream.
+     *
+     * @param in      Snapshot stream
+     * @param threads Number of worker threads
+     * @return Restored system state
+     */
+    public static SystemState read(InputStream in, int threads) throws IOException {
+        SnapshotInput input = new SnapshotInput(in);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a chunked Vintage snapshot file.");
+        }
+        int version = input.readVarInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported chunked snapshot version " + version + ".");
+        }
+        long sequence = input.readVarLong();
+        input.readLong();
+        Clock clock = SnapshotCodec.readClock(input);
+        BigDecimal[] settings = SnapshotCodec.readSettings(input);
+        SnapshotCodec.readIdCounters(input);
+
+        Map<Byte, List<Chunk>> chunks = new HashMap<>();
+        byte kind;
+        while ((kind = input.readByte()) != END) {
+            int count = input.readVarInt();
+            int length = input.readVarInt();
+            byte[] compressed = new byte[input.readVarInt()];
+            int crc = input.readInt();
+            input.readBytes(compressed);
+            chunks.computeIfAbsent(kind, k -> new ArrayList<>()).add(new Chunk(count, length, crc, compressed));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // catalog products and orders are self-contained
+            List<Future<List<Product>>> productChunks = submit(pool, chunks.get(PRODUCTS), SnapshotCodec::readProduct);
+            List<Future<List<Order>>> orderChunks = submit(pool, chunks.get(ORDERS), SnapshotCodec::readOrder);
+            Map<String, Product> products = SnapshotCodec.newHashMap(count(chunks.get(PRODUCTS)));
+            for (Future<List<Product>> chunk : productChunks) {
+                for (Product product : await(chunk)) {
+                    products.put(product.getId(), product);
+                }
+            }
+            Map<String, Order> orders = new LinkedHashMap<>(SnapshotCodec.capacity(count(chunks.get(ORDERS))));
+            for (Future<List<Order>> chunk : orderChunks) {
+                for (Order order : await(chunk)) {
+                    orders.put(order.getId(), order);
+                }
+            }
+
+            // shipping companies and users refer to them
+            Function<List<String>, Map<String, Order>> orderReferences = ids -> SnapshotCodec.resolve(ids, orders);
+            List<Future<List<ShippingCompany>>> shippingCompanyChunks = submit(pool, chunks.get(SHIPPING_COMPANIES), chunk -> SnapshotCodec.readShippingCompany(chunk, orderReferences));
+            List<Future<List<User>>> userChunks = submit(pool, chunks.get(USERS), chunk -> SnapshotCodec.readUser(chunk, products, orderReferences));
+            Map<String, ShippingCompany> shippingCompanies = SnapshotCodec.newHashMap(count(chunks.get(SHIPPING_COMPANIES)));
+            for (Future<List<ShippingCompany>> chunk : shippingCompanyChunks) {
+                for (ShippingCompany shippingCompany : await(chunk)) {
+                    shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+                }
+            }
+            Map<String, User> users = SnapshotCodec.newHashMap(count(chunks.get(USERS)));
+            Map<String, String> userIdsByEmail = SnapshotCodec.newHashMap(count(chunks.get(USERS)));
+            for (Future<List<User>> chunk : userChunks) {
+                for (User user : await(chunk)) {
+                    users.put(user.getId(), user);
+                    userIdsByEmail.put(user.getEmail(), user.getId());
+                }
+            }
+
+            Vintage vintage = new Vintage(settings[0], settings[1], settings[2], settings[3], settings[4], products, users, userIdsByEmail, orders, shippingCompanies);
+            return new SystemState(clock, vintage, sequence);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits entities of one kind into chunk encoding tasks, each producing a framed chunk.
+     */
+    private static <T> void addChunks(List<Callable<byte[]>> chunks, byte kind, List<T> entities, Encoder<T> encoder) {
+        for (int from = 0; from < entities.size(); from += CHUNK_SIZE) {
+            List<T> range = entities.subList(from, Math.min(from + CHUNK_SIZE, entities.size()));
+            chunks.add(() -> {
+                SnapshotOutput raw = new SnapshotOutput();
+                for (T entity : range) {
+                    encoder.encode(raw, entity);
+                }
+                int length = (int) raw.position();
+                CRC32 crc = new CRC32();
+                crc.update(raw.buffer(), 0, length);
+
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                byte[] compressed;
+                try {
+                    deflater.setInput(raw.buffer(), 0, length);
+                    deflater.finish();
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2 + 64);
+                    byte[] block = new byte[1 << 16];
+                    while (!deflater.finished()) {
+                        bytes.write(block, 0, deflater.deflate(block));
+                    }
+                    compressed = bytes.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+
+                SnapshotOutput frame = new SnapshotOutput();
+                frame.writeByte(kind);
+                frame.writeVarInt(range.size());
+                frame.writeVarInt(length);
+                frame.writeVarInt(compressed.length);
+                frame.writeInt((int) crc.getValue());
+                frame.writeBytes(compressed);
+                return frame.toByteArray();
+            });
+        }
+    }
+
+    private static <T> List<Future<List<T>>> submit(ExecutorService pool, List<Chunk> chunks, Decoder<T> decoder) {
+        List<Future<List<T>>> futures = new ArrayList<>();
+        if (chunks == null) {
+            return futures;
+        }
+        for (Chunk chunk : chunks) {
+            futures.add(pool.submit(() -> {
+                SnapshotInput input = new SnapshotInput(chunk.inflate());
+                List<T> entities = new ArrayList<>(chunk.count());
+                for (int i = 0; i < chunk.count(); i++) {
+                    entities.add(decoder.decode(input));
+                }
+                return entities;
+            }));
+        }
+        return futures;
+    }
+
+    private static int count(List<Chunk> chunks) {
+        return chunks == null ? 0 : chunks.stream().mapToInt(Chunk::count).sum();
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a snapshot chunk.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private interface Encoder<T> {
+        void encode(SnapshotOutput output, T entity) throws IOException;
+    }
+
+    private interface Decoder<T> {
+        T decode(SnapshotInput input) throws IOException;
+    }
+
+    /**
+     * Compressed chunk read from a snapshot.
+     *
+     * @param count      Number of entities
+     * @param length     Raw length
+     * @param crc        CRC-32 of the raw bytes
+     * @param compressed Deflated bytes
+     */
+    private record Chunk(int count, int length, int crc, byte[] compressed) {
+        byte[] inflate() throws IOException {
+            byte[] raw = new byte[length];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                int inflated = 0;
+                while (inflated < length && !inflater.finished()) {
+                    int n = inflater.inflate(raw, inflated, length - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != length) {
+                    throw new IOException("Snapshot chunk is truncated.");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Snapshot chunk is corrupt.", e);
+            } finally {
+                inflater.end();
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(raw);
+            if ((int) checksum.getValue() != crc) {
+                throw new IOException("Snapshot chunk checksum mismatch.");
+            }
+            return raw;
+        }
+    }
+}
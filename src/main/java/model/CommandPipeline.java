@@ -0,0 +1,397 @@
+package model;
+
+import exceptions.PipelineClosedException;
+import util.TimeSimulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Vintage engine whose commands are all applied by a single writer thread, so the model needs no locking however many
+ * threads submit to it.
+ * <p>
+ * Every operation is a command put in a bounded queue, and returns a future completed with its result, or exceptionally
+ * with what it threw. Submitting blocks while the queue is full, which holds callers to the pace of the writer. The
+ * writer takes every waiting command, up to a maximum batch size, and applies them in submission order. When the
+ * Vintage is journaled, the records of a batch are written together and forced once in sync mode, and the futures of
+ * the batch complete only after that, so a completed mutation is as durable as the journal makes it.
+ * <p>
+ * Statistics need not wait in the queue: after every batch the writer publishes an immutable {@link ReadView}, which
+ * {@link #view()} returns right away.
+ * <p>
+ * Commands must not submit further commands, which could wait forever on a full queue.
+ * <p>
+ * If applying a batch fails outside of its commands, for instance because the journal cannot be written or the view
+ * cannot be published, every command of the batch and every command still queued completes exceptionally, and the
+ * pipeline closes: the Vintage may hold part of the batch and must not be trusted further.
+ */
+public final class CommandPipeline implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final Command<Void> STOP = new Command<>(vintage -> null);
+
+    private final Vintage vintage;
+    private final BlockingQueue<Command<?>> queue;
+    private final int batchSize;
+    private final ReadWriteLock gate;
+    private final Thread writer;
+    private volatile ReadView view;
+    private volatile boolean closed;
+    private volatile long commands;
+    private volatile long batches;
+
+    public CommandPipeline(Vintage vintage) {
+        this(vintage, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Parameterized constructor. Starts the writer thread, which owns the Vintage from then on: it must not be used
+     * directly, including attaching or detaching a journal, other than through {@link #submit(Function)}.
+     *
+     * @param vintage   Vintage to apply the commands to
+     * @param capacity  Number of commands that may wait in the queue
+     * @param batchSize Maximum number of commands applied in a batch
+     */
+    public CommandPipeline(Vintage vintage, int capacity, int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("The capacity and batch size must be positive.");
+        }
+        this.vintage = vintage;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.gate = new ReentrantReadWriteLock();
+        this.writer = new Thread(this::run, "vintage-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Submits a command, which may read as well as change the Vintage. It sees the effect of every command submitted
+     * before it.
+     *
+     * @param command Command to run on the writer thread
+     * @return Result of the command
+     */
+    public <T> CompletableFuture<T> submit(Function<Vintage, T> command) {
+        Command<T> submitted = new Command<>(command);
+        gate.readLock().lock();
+        try {
+            if (closed) {
+                throw new PipelineClosedException("The command pipeline is closed.");
+            }
+            queue.put(submitted);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            submitted.fail(e);
+        } finally {
+            gate.readLock().unlock();
+        }
+        return submitted.result;
+    }
+
+    public CompletableFuture<Void> registerUser(String email, String name, String address, String taxNumber) {
+        return submit(vintage -> {
+            vintage.registerUser(email, name, address, taxNumber);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> registerShippingCompany(String name, BigDecimal profitMargin) {
+        return submit(vintage -> {
+            vintage.registerShippingCompany(name, profitMargin);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> registerPremiumShippingCompany(String name, BigDecimal profitMargin, BigDecimal premiumTax) {
+        return submit(vintage -> {
+            vintage.registerPremiumShippingCompany(name, profitMargin, premiumTax);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> setUserEmail(String userId, String email) {
+        return submit(vintage -> {
+            vintage.setUserEmail(userId, email);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> publishProduct(String userId, Product product) {
+        return submit(vintage -> {
+            vintage.publishProduct(userId, product);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addProductToUserCart(String userId, String productId) {
+        return submit(vintage -> {
+            vintage.addProductToUserCart(userId, productId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> removeProductFromUserCart(String userId, String productId) {
+        return submit(vintage -> {
+            vintage.removeProductFromUserCart(userId, productId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Order>> orderUserCart(String buyerId) {
+        return submit(vintage -> vintage.orderUserCart(buyerId));
+    }
+
+    public CompletableFuture<Void> expediteOrder(String orderId) {
+        return submit(vintage -> {
+            vintage.expediteOrder(orderId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deliverOrder(String orderId) {
+        return submit(vintage -> {
+            vintage.deliverOrder(orderId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> returnOrder(String orderId) {
+        return submit(vintage -> {
+            vintage.returnOrder(orderId);
+            return null;
+        });
+    }
+
+    /**
+     * Advances the simulation clock between the commands submitted before and after it, which a journaled Vintage
+     * records as a time advance.
+     *
+     * @param duration Time to advance
+     */
+    public CompletableFuture<Void> advanceTime(Duration duration) {
+        return submit(vintage -> {
+            TimeSimulation.advanceTime(duration);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> setShippingCompanyProfitMargin(String shippingCompanyId, BigDecimal profitMargin) {
+        return submit(vintage -> {
+            vintage.setShippingCompanyProfitMargin(shippingCompanyId, profitMargin);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the statistics of the Vintage as of the last batch applied, without waiting for the writer. The first
+     * call goes through the queue to build the initial view; from then on the writer publishes a new version after every
+     * batch, before completing its futures.
+     *
+     * @return Latest read view
+     */
+    public ReadView view() {
+        ReadView view = this.view;
+        if (view != null) {
+            return view;
+        }
+        return submit(vintage -> this.view = vintage.publishView()).join();
+    }
+
+    /**
+     * @return Number of commands applied so far
+     */
+    public long commands() {
+        return commands;
+    }
+
+    /**
+     * @return Number of batches applied so far
+     */
+    public long batches() {
+        return batches;
+    }
+
+    /**
+     * Stops accepting commands, waits for the writer to apply the ones already submitted and stops it. The Vintage can
+     * be used directly again afterwards.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        gate.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            while (true) {
+                try {
+                    queue.put(STOP);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            gate.writeLock().unlock();
+        }
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            try {
+                running = apply(batch);
+            } catch (Throwable e) {
+                for (Command<?> command : batch) {
+                    command.fail(e);
+                }
+                abort(e);
+                return;
+            }
+            commands += running ? batch.size() : batch.size() - 1;
+            batches++;
+            batch.clear();
+        }
+    }
+
+    /**
+     * Applies a batch of commands and completes their futures.
+     *
+     * @return Whether the writer keeps running after the batch
+     */
+    private boolean apply(List<Command<?>> batch) {
+        boolean running = true;
+        Journal journal = vintage.journal();
+        if (journal != null) {
+            journal.beginBatch();
+        }
+        for (Command<?> command : batch) {
+            if (command == STOP) {
+                running = false;
+            } else {
+                command.apply(vintage);
+            }
+        }
+        Throwable unwritten = null;
+        if (journal != null) {
+            try {
+                journal.endBatch();
+            } catch (IOException e) {
+                unwritten = new UncheckedIOException(e);
+            }
+        }
+        if (view != null) {
+            view = vintage.publishView();
+        }
+
+        for (Command<?> command : batch) {
+            command.complete(unwritten);
+        }
+        return running;
+    }
+
+    /**
+     * Closes the pipeline after a failed batch and fails every command still queued. Submitters may be blocked on a
+     * full queue while holding the gate, so the queue is drained until the gate is free, after which no command can be
+     * queued any more.
+     */
+    private void abort(Throwable cause) {
+        closed = true;
+        PipelineClosedException closing = new PipelineClosedException("The command pipeline stopped after a failed batch.");
+        closing.initCause(cause);
+        while (true) {
+            failQueued(closing);
+            try {
+                if (gate.writeLock().tryLock(1, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // keep draining, or blocked submitters would never return
+            }
+        }
+        try {
+            failQueued(closing);
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    private void failQueued(Throwable cause) {
+        Command<?> command;
+        while ((command = queue.poll()) != null) {
+            command.fail(cause);
+        }
+    }
+
+    /**
+     * Command waiting in the queue, which holds on to its outcome until its batch is durable.
+     */
+    private static final class Command<T> {
+        private final Function<Vintage, T> action;
+        private final CompletableFuture<T> result;
+        private T value;
+        private Throwable failure;
+
+        private Command(Function<Vintage, T> action) {
+            this.action = action;
+            this.result = new CompletableFuture<>();
+        }
+
+        private void apply(Vintage vintage) {
+            try {
+                value = action.apply(vintage);
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * @param unwritten Failure to write the journal records of the batch, or null
+         */
+        private void complete(Throwable unwritten) {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else if (unwritten != null) {
+                result.completeExceptionally(unwritten);
+            } else {
+                result.complete(value);
+            }
+        }
+
+        private void fail(Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
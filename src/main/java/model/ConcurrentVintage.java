@@ -0,0 +1,261 @@
+package model;
+
+import exceptions.DuplicateEmailException;
+import exceptions.DuplicateShippingCompanyNameException;
+import exceptions.ProductInCartUnavailable;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Vintage engine that can be used by several threads at once, so that independent users can publish products, fill
+ * their carts and check out in parallel.
+ * <p>
+ * The engine keeps its entities in concurrent maps and guards them with locks striped by user and shipping company
+ * identification code. An operation locks every user and shipping company it changes, users first and in ascending
+ * stripe order within each kind, so operations on disjoint sellers, buyers and shipping companies proceed in parallel
+ * while overlapping ones are serialized. Every change to an order holds the locks of its buyer, seller and shipping
+ * company, so reading an order under any of them is consistent. Registrations, which check emails and names for
+ * uniqueness, take a lock of their own. Shared indexes and the revenue total are synchronized internally and only held
+ * for the update itself.
+ * <p>
+ * Products take no lock of their own. A checkout holds the locks of the sellers of its cart, so of several buyers racing
+ * for a product exactly one gets it, and it checks the whole cart is still on sale before removing any product from the
+ * concurrent products map, so a checkout that fails never hides products from buyers adding them to their carts.
+ * <p>
+ * Journaling and snapshots are not thread-safe. They, and the statistics not offered here, are available through
+ * {@link #vintage()} once no other thread uses the engine.
+ */
+public class ConcurrentVintage {
+    private static final int STRIPES = 256;
+
+    private final Vintage vintage;
+    private final StripedLocks userLocks;
+    private final StripedLocks shippingCompanyLocks;
+    private final ReentrantLock registrations;
+
+    public ConcurrentVintage(String baseValueSmall, String baseValueMedium, String baseValueBig, String orderFee) {
+        this(new Vintage(baseValueSmall, baseValueMedium, baseValueBig, orderFee));
+    }
+
+    /**
+     * Parameterized constructor. Takes over the state of a Vintage, which must not be used afterwards.
+     *
+     * @param vintage Vintage with the state to start from, without a journal
+     */
+    public ConcurrentVintage(Vintage vintage) {
+        this.vintage = new Vintage(vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), vintage.getRevenue(),
+                new ConcurrentHashMap<>(vintage.products()), new ConcurrentHashMap<>(vintage.users()), new ConcurrentHashMap<>(vintage.userIdsByEmail()),
+                new ConcurrentHashMap<>(vintage.orders()), new ConcurrentHashMap<>(vintage.shippingCompanies()));
+        this.vintage.buildIndexes();
+        this.userLocks = new StripedLocks(STRIPES);
+        this.shippingCompanyLocks = new StripedLocks(STRIPES);
+        this.registrations = new ReentrantLock();
+    }
+
+    public void registerUser(String email, String name, String address, String taxNumber) throws DuplicateEmailException {
+        registrations.lock();
+        try {
+            vintage.registerUser(email, name, address, taxNumber);
+        } finally {
+            registrations.unlock();
+        }
+    }
+
+    public void registerShippingCompany(String name, BigDecimal profitMargin) throws DuplicateShippingCompanyNameException {
+        registrations.lock();
+        try {
+            vintage.registerShippingCompany(name, profitMargin);
+        } finally {
+            registrations.unlock();
+        }
+    }
+
+    public void registerPremiumShippingCompany(String name, BigDecimal profitMargin, BigDecimal premiumTax) throws DuplicateShippingCompanyNameException {
+        registrations.lock();
+        try {
+            vintage.registerPremiumShippingCompany(name, profitMargin, premiumTax);
+        } finally {
+            registrations.unlock();
+        }
+    }
+
+    public void setUserEmail(String userId, String email) throws DuplicateEmailException {
+        registrations.lock();
+        try {
+            locked(List.of(userId), List.of(), () -> {
+                vintage.setUserEmail(userId, email);
+                return null;
+            });
+        } finally {
+            registrations.unlock();
+        }
+    }
+
+    public void publishProduct(String userId, Product product) {
+        locked(List.of(userId), List.of(), () -> {
+            vintage.publishProduct(userId, product);
+            return null;
+        });
+    }
+
+    public void addProductToUserCart(String userId, String productId) {
+        locked(List.of(userId), List.of(), () -> {
+            vintage.addProductToUserCart(userId, productId);
+            return null;
+        });
+    }
+
+    public void removeProductFromUserCart(String userId, String productId) {
+        locked(List.of(userId), List.of(), () -> {
+            vintage.removeProductFromUserCart(userId, productId);
+            return null;
+        });
+    }
+
+    /**
+     * Orders the cart of a user. The cart is read first to find the sellers and shipping companies to lock, and the
+     * checkout starts over if the cart changed before they were all locked.
+     *
+     * @param buyerId Buying user identification code
+     * @return Orders placed
+     */
+    public List<Order> orderUserCart(String buyerId) throws ProductInCartUnavailable {
+        while (true) {
+            List<Product> cart = locked(List.of(buyerId), List.of(), () -> vintage.users().get(buyerId).getCart());
+            Set<String> userIds = new HashSet<>();
+            Set<String> shippingCompanyIds = new HashSet<>();
+            userIds.add(buyerId);
+            for (Product product : cart) {
+                userIds.add(product.getSellerId());
+                shippingCompanyIds.add(product.getShippingCompanyId());
+            }
+            List<Order> orders = locked(userIds, shippingCompanyIds,
+                    () -> vintage.users().get(buyerId).getCart().equals(cart) ? vintage.orderUserCart(buyerId) : null);
+            if (orders != null) {
+                return orders;
+            }
+        }
+    }
+
+    public void expediteOrder(String orderId) {
+        Order order = vintage.orders().get(orderId);
+        if (order == null) {
+            return;
+        }
+        locked(List.of(order.getBuyerId(), order.getSellerId()), List.of(order.getShippingCompanyId()), () -> {
+            vintage.expediteOrder(orderId);
+            return null;
+        });
+    }
+
+    public void deliverOrder(String orderId) {
+        Order order = vintage.orders().get(orderId);
+        if (order == null) {
+            return;
+        }
+        locked(List.of(order.getBuyerId(), order.getSellerId()), List.of(order.getShippingCompanyId()), () -> {
+            vintage.deliverOrder(orderId);
+            return null;
+        });
+    }
+
+    public void returnOrder(String orderId) {
+        Order order = vintage.orders().get(orderId);
+        if (order == null) {
+            return;
+        }
+        locked(List.of(order.getBuyerId(), order.getSellerId()), List.of(order.getShippingCompanyId()), () -> {
+            vintage.returnOrder(orderId);
+            return null;
+        });
+    }
+
+    public void setShippingCompanyProfitMargin(String shippingCompanyId, BigDecimal profitMargin) {
+        locked(List.of(), List.of(shippingCompanyId), () -> {
+            vintage.setShippingCompanyProfitMargin(shippingCompanyId, profitMargin);
+            return null;
+        });
+    }
+
+    public Optional<String> getUserIdByEmail(String email) {
+        return vintage.getUserIdByEmail(email);
+    }
+
+    public Optional<String> getShippingCompanyIdByName(String name) {
+        return vintage.getShippingCompanyIdByName(name);
+    }
+
+    public Optional<User> getUser(String userId) {
+        return locked(List.of(userId), List.of(), () -> vintage.getUser(userId));
+    }
+
+    public Page<Product> searchProducts(ProductQuery query) {
+        return vintage.searchProducts(query);
+    }
+
+    public FacetCounts countProducts(ProductQuery query) {
+        return vintage.countProducts(query);
+    }
+
+    public List<Product> searchText(String text, ProductQuery query) {
+        return vintage.searchText(text, query);
+    }
+
+    public Page<ShippingCompanySummary> getShippingCompanySummaries(String cursor, int limit) {
+        return vintage.getShippingCompanySummaries(cursor, limit);
+    }
+
+    public Page<Order> getShippingCompanyInitializedOrders(String shippingCompanyId, String cursor, int limit) {
+        return locked(List.of(), List.of(shippingCompanyId), () -> vintage.getShippingCompanyInitializedOrders(shippingCompanyId, cursor, limit));
+    }
+
+    public Page<Order> getShippingCompanyExpeditedOrders(String shippingCompanyId, String cursor, int limit) {
+        return locked(List.of(), List.of(shippingCompanyId), () -> vintage.getShippingCompanyExpeditedOrders(shippingCompanyId, cursor, limit));
+    }
+
+    public Page<Order> userIssuedOrders(String userId, String cursor, int limit) {
+        return locked(List.of(userId), List.of(), () -> vintage.userIssuedOrders(userId, cursor, limit));
+    }
+
+    public Page<Order> userReceivedOrders(String userId, String cursor, int limit) {
+        return locked(List.of(userId), List.of(), () -> vintage.userReceivedOrders(userId, cursor, limit));
+    }
+
+    public List<Order> getUserReturnableOrders(String userId) {
+        return locked(List.of(userId), List.of(), () -> vintage.getUserReturnableOrders(userId));
+    }
+
+    public BigDecimal getRevenue() {
+        return vintage.getRevenue();
+    }
+
+    /**
+     * @return Underlying engine, to be used only while no other thread uses this one
+     */
+    public Vintage vintage() {
+        return vintage;
+    }
+
+    /**
+     * Runs an action holding the locks of some users and shipping companies.
+     */
+    private <T> T locked(Collection<String> userIds, Collection<String> shippingCompanyIds, Supplier<T> action) {
+        int[] users = userLocks.stripes(userIds);
+        int[] shippingCompanies = shippingCompanyLocks.stripes(shippingCompanyIds);
+        userLocks.lock(users);
+        try {
+            shippingCompanyLocks.lock(shippingCompanies);
+            try {
+                return action.get();
+            } finally {
+                shippingCompanyLocks.unlock(shippingCompanies);
+            }
+        } finally {
+            userLocks.unlock(users);
+        }
+    }
+}
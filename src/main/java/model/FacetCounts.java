@@ -0,0 +1,12 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * Number of products matching a search, and how many of them have each facet value.
+ *
+ * @param total  Products matching the search
+ * @param counts Products per value of each facet, values in ascending order
+ */
+public record FacetCounts(long total, Map<ProductFacet, Map<String, Long>> counts) {
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Year;
+import java.util.Map;
 
 public class Handbag extends Product implements Serializable {
     private final BigDecimal dimension;
@@ -17,6 +18,13 @@ public class Handbag extends Product implements Serializable {
         this.collectionYear = collectionYear;
     }
 
+    Handbag(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state, BigDecimal dimension, Material material, Year collectionYear) {
+        super(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state);
+        this.dimension = dimension;
+        this.material = material;
+        this.collectionYear = collectionYear;
+    }
+
     public BigDecimal getDimension() {
         return dimension;
     }
@@ -37,6 +45,14 @@ public class Handbag extends Product implements Serializable {
         return r;
     }
 
+    @Override
+    Map<ProductFacet, String> facets() {
+        Map<ProductFacet, String> facets = super.facets();
+        facets.put(ProductFacet.MATERIAL, material.name());
+        facets.put(ProductFacet.COLLECTION_YEAR, collectionYear.toString());
+        return facets;
+    }
+
     @Override
     public String show() {
         return "Handbag, " + super.show() + ", Dimension: " + dimension + "L, Material: " + material + "Collection year: " + collectionYear;
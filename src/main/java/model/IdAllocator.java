@@ -0,0 +1,108 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the identification codes of each kind of entity: a counter written in base 36, left-padded with zeros to
+ * a fixed width.
+ * <p>
+ * Allocation is a single atomic increment, so entities can be created from several threads without locking, and codes
+ * still follow allocation order, which the catalog relies on to sort by publication. Every entity restored with a known
+ * code moves the counter past it, so codes allocated after loading a snapshot, applying a delta or replaying a journal
+ * never collide with loaded ones. Snapshots also save the counters themselves, which covers entities that are never
+ * decoded, such as the orders of a memory-mapped snapshot.
+ */
+enum IdAllocator {
+    USER(6),
+    PRODUCT(8),
+    ORDER(8),
+    SHIPPING_COMPANY(4);
+
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int RADIX = 36;
+
+    private final int width;
+    private final AtomicLong next;
+
+    IdAllocator(int width) {
+        this.width = width;
+        this.next = new AtomicLong();
+    }
+
+    /**
+     * @return New identification code
+     */
+    String next() {
+        return encode(next.getAndIncrement(), width);
+    }
+
+    /**
+     * @return Counter value the next code is allocated from
+     */
+    long peek() {
+        return next.get();
+    }
+
+    /**
+     * Moves the counter forward to a value, if it is behind it.
+     *
+     * @param value Counter value the next code must be allocated from at the earliest
+     */
+    void advanceTo(long value) {
+        long current = next.get();
+        while (current < value && !next.compareAndSet(current, value)) {
+            current = next.get();
+        }
+    }
+
+    /**
+     * Moves the counter past an identification code in use. Codes not written in base 36 were not allocated here and
+     * are ignored.
+     *
+     * @param id Identification code of a restored entity
+     */
+    void advancePast(String id) {
+        long value = decode(id);
+        if (value >= 0) {
+            advanceTo(value + 1);
+        }
+    }
+
+    /**
+     * Writes a value in base 36 straight into the characters of the code, without intermediate strings.
+     *
+     * @param value Non-negative value
+     * @param width Minimum number of digits
+     * @return Code of the value
+     */
+    static String encode(long value, int width) {
+        int digits = 1;
+        for (long rest = value / RADIX; rest > 0; rest /= RADIX) {
+            digits++;
+        }
+        char[] chars = new char[Math.max(width, digits)];
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (value % RADIX)];
+            value /= RADIX;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return Value of a code, or -1 if it is not a base 36 number
+     */
+    static long decode(String id) {
+        if (id.isEmpty() || id.length() > 12) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            int digit = Character.digit(id.charAt(i), RADIX);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * RADIX + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,558 @@
+package model;
+
+import exceptions.SnapshotInProgressException;
+import util.TimeSimulation;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the mutations applied to a Vintage and of the simulation time advances.
+ * <p>
+ * Every record is framed as a varint payload length, the payload and the CRC-32 of the payload. The payload holds
+ * the record sequence number, its type, the simulation instant it was applied at and whatever is needed to redo it,
+ * including the ids of the entities it created, so replaying it on top of the previous snapshot yields the same state.
+ * A torn record at the end of the file, left by a crash in the middle of a write, is discarded when the journal is opened.
+ */
+public final class Journal implements Closeable {
+    private static final int MAGIC = 0x564E544A; // "VNTJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 5;
+
+    private static final byte REGISTER_USER = 1;
+    private static final byte REGISTER_SHIPPING_COMPANY = 2;
+    private static final byte PUBLISH_PRODUCT = 3;
+    private static final byte ADD_PRODUCT_TO_CART = 4;
+    private static final byte REMOVE_PRODUCT_FROM_CART = 5;
+    private static final byte ORDER_CART = 6;
+    private static final byte EXPEDITE_ORDER = 7;
+    private static final byte DELIVER_ORDER = 8;
+    private static final byte RETURN_ORDER = 9;
+    private static final byte PROFIT_MARGIN = 10;
+    private static final byte ADVANCE_TIME = 11;
+    private static final byte USER_EMAIL = 12;
+    private static final byte PRUNE_CART = 13;
+
+    private final Path path;
+    private final SnapshotOutput record;
+    private final CRC32 crc;
+    private final Vintage vintage;
+    private final Consumer<Duration> timeListener;
+    private FileChannel channel;
+    private SnapshotOutput output;
+    private BackgroundSnapshot pending;
+    private ChangeSet pendingChanges;
+    private boolean sync;
+    private boolean batching;
+    private long sequence;
+
+    private Journal(Path path, FileChannel channel, Vintage vintage, long sequence) {
+        this.path = path;
+        this.channel = channel;
+        this.output = new SnapshotOutput(Channels.newOutputStream(channel));
+        this.record = new SnapshotOutput();
+        this.crc = new CRC32();
+        this.vintage = vintage;
+        this.timeListener = this::advanceTime;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Opens a journal for appending and attaches it to the Vintage of a system state.
+     * The file is created if needed; a torn record at its end is truncated.
+     *
+     * @param path  Journal file
+     * @param state System state the journal records mutations of
+     * @return Journal attached to the state Vintage
+     */
+    public static Journal open(Path path, SystemState state) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long sequence = state.sequence();
+        try {
+            if (channel.size() < HEADER_LENGTH) {
+                channel.truncate(0);
+                SnapshotOutput header = new SnapshotOutput(Channels.newOutputStream(channel));
+                header.writeInt(MAGIC);
+                header.writeVarInt(VERSION);
+                header.flush();
+            } else {
+                long[] end = new long[1];
+                sequence = Math.max(sequence, scan(channel, payload -> {
+                }, end));
+                channel.truncate(end[0]);
+                channel.position(end[0]);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        Journal journal = new Journal(path, channel, state.vintage(), sequence);
+        state.vintage().setJournal(journal);
+        TimeSimulation.addListener(journal.timeListener);
+        return journal;
+    }
+
+    /**
+     * Restores a system from its latest snapshot and the journal records written after it.
+     * The simulation clock is set to the recovered clock.
+     *
+     * @param snapshot Snapshot file
+     * @param journal  Journal file, which may not exist
+     * @return Recovered system state
+     */
+    public static SystemState recover(Path snapshot, Path journal) throws IOException {
+        SystemState state = SnapshotChain.read(snapshot);
+        if (!Files.exists(journal)) {
+            TimeSimulation.setClock(state.clock());
+            return state;
+        }
+
+        Vintage vintage = state.vintage();
+        ZoneId zone = state.clock().getZone();
+        Duration[] advanced = {Duration.ZERO};
+        long sequence;
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            sequence = scan(channel, payload -> {
+                try {
+                    replay(payload, state.sequence(), vintage, zone, advanced);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, new long[1]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Clock clock = advanced[0].isZero() ? state.clock() : Clock.offset(state.clock(), advanced[0]);
+        TimeSimulation.setClock(clock);
+        return new SystemState(clock, vintage, Math.max(sequence, state.sequence()));
+    }
+
+    /**
+     * Reads every intact record of a journal.
+     *
+     * @param channel  Journal file
+     * @param consumer Receives the payload of each record
+     * @param end      Receives the position right after the last intact record
+     * @return Sequence number of the last intact record
+     */
+    private static long scan(FileChannel channel, Consumer<byte[]> consumer, long[] end) throws IOException {
+        channel.position(0);
+        SnapshotInput input = new SnapshotInput(Channels.newInputStream(channel));
+        if (input.readInt() != MAGIC || input.readVarInt() != VERSION) {
+            throw new IOException("Not a Vintage journal file.");
+        }
+        CRC32 crc = new CRC32();
+        long sequence = 0;
+        end[0] = input.position();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = input.readVarInt();
+                if (length < 0 || length > channel.size() - input.position()) {
+                    break;
+                }
+                payload = new byte[length];
+                input.readBytes(payload);
+                crc.reset();
+                crc.update(payload);
+                if (input.readInt() != (int) crc.getValue()) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            sequence = new SnapshotInput(payload).readVarLong();
+            consumer.accept(payload);
+            end[0] = input.position();
+        }
+        return sequence;
+    }
+
+    private static void replay(byte[] payload, long after, Vintage vintage, ZoneId zone, Duration[] advanced) throws IOException {
+        SnapshotInput input = new SnapshotInput(payload);
+        if (input.readVarLong() <= after) {
+            return;
+        }
+        byte type = input.readByte();
+        Instant instant = Instant.ofEpochSecond(input.readSignedVarLong(), input.readVarInt());
+        TimeSimulation.setClock(Clock.fixed(instant, zone));
+
+        switch (type) {
+            case REGISTER_USER -> {
+                String id = input.readId();
+                String email = input.readString();
+                String name = input.readString();
+                String address = input.readString();
+                String taxNumber = input.readString();
+                vintage.register(new User(id, email, name, address, taxNumber, BigDecimal.ZERO, BigDecimal.ZERO, new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>()));
+            }
+            case REGISTER_SHIPPING_COMPANY -> vintage.register(SnapshotCodec.readShippingCompany(input, ids -> new HashMap<>()));
+            case PUBLISH_PRODUCT -> {
+                String userId = input.readId();
+                vintage.publishProduct(userId, SnapshotCodec.readProduct(input));
+            }
+            case ADD_PRODUCT_TO_CART -> vintage.addProductToUserCart(input.readId(), input.readId());
+            case REMOVE_PRODUCT_FROM_CART -> vintage.removeProductFromUserCart(input.readId(), input.readId());
+            case ORDER_CART -> {
+                String buyerId = input.readId();
+                int count = input.readVarInt();
+                Map<String, String> orderIds = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String orderId = input.readId();
+                    orderIds.put(input.readId() + '\0' + input.readId(), orderId);
+                }
+                vintage.orderUserCart(buyerId, (sellerId, shippingCompanyId) -> orderIds.get(sellerId + '\0' + shippingCompanyId));
+            }
+            case EXPEDITE_ORDER -> vintage.expediteOrder(input.readId());
+            case DELIVER_ORDER -> vintage.deliverOrder(input.readId());
+            case RETURN_ORDER -> vintage.returnOrder(input.readId());
+            case PROFIT_MARGIN -> vintage.setShippingCompanyProfitMargin(input.readId(), input.readDecimal());
+            case USER_EMAIL -> vintage.setUserEmail(input.readId(), input.readString());
+            case PRUNE_CART -> {
+                String userId = input.readId();
+                int count = input.readVarInt();
+                List<String> productIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    productIds.add(input.readId());
+                }
+                vintage.pruneUserCart(userId, productIds);
+            }
+            case ADVANCE_TIME -> advanced[0] = advanced[0].plus(Duration.ofSeconds(input.readSignedVarLong(), input.readVarInt()));
+            default -> throw new IOException("Unknown journal record type " + type + ".");
+        }
+    }
+
+    /**
+     * Sequence number of the last record written.
+     *
+     * @return Last sequence number
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets whether every record is forced to the storage device before returning.
+     * Without it records reach the operating system on every write but may be lost on power failure.
+     *
+     * @param sync Whether to force every write
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Writes a snapshot of the attached Vintage covering every record written so far and empties the journal.
+     * The snapshot replaces the previous one atomically; if the process stops before the journal is emptied,
+     * recovery skips the records the snapshot already includes.
+     *
+     * @param snapshot Snapshot file
+     */
+    public void checkpoint(Path snapshot) throws IOException, SnapshotInProgressException {
+        if (pending != null && !pending.completion().isDone()) {
+            throw new SnapshotInProgressException("A checkpoint is already being written.");
+        }
+        settlePending();
+        SnapshotChain.writeBase(snapshot, new SystemState(TimeSimulation.getClock(), vintage, sequence));
+        synchronized (this) {
+            output.flush();
+            channel.truncate(HEADER_LENGTH);
+            channel.position(HEADER_LENGTH);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes the entities changed since the last checkpoint as a delta of a snapshot chain and empties the journal.
+     *
+     * @param snapshot Base snapshot file of the chain
+     * @return File written, the base itself when the chain was merged
+     * @see SnapshotChain#writeDelta(Path, SystemState)
+     */
+    public Path checkpointDelta(Path snapshot) throws IOException, SnapshotInProgressException {
+        if (pending != null && !pending.completion().isDone()) {
+            throw new SnapshotInProgressException("A checkpoint is already being written.");
+        }
+        settlePending();
+        Path written = SnapshotChain.writeDelta(snapshot, new SystemState(TimeSimulation.getClock(), vintage, sequence));
+        synchronized (this) {
+            output.flush();
+            channel.truncate(HEADER_LENGTH);
+            channel.position(HEADER_LENGTH);
+            channel.force(true);
+        }
+        return written;
+    }
+
+    /**
+     * Starts writing a snapshot of the attached Vintage covering every record written so far on a background thread.
+     * Mutations keep being journaled meanwhile; once the snapshot is in place the journal is rewritten to hold only the
+     * records written after it was started.
+     *
+     * @param snapshot Snapshot file
+     * @return Running snapshot
+     */
+    public BackgroundSnapshot checkpointInBackground(Path snapshot) throws SnapshotInProgressException {
+        if (pending != null && !pending.completion().isDone()) {
+            throw new SnapshotInProgressException("A checkpoint is already being written.");
+        }
+        settlePending();
+        long position;
+        try {
+            synchronized (this) {
+                output.flush();
+                position = channel.position();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending = BackgroundSnapshot.start(snapshot, new SystemState(TimeSimulation.getClock(), vintage, sequence), () -> {
+            try {
+                SnapshotChain.deleteDeltas(snapshot);
+                discardBefore(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // changes from here on belong in the deltas following the new base; the earlier ones are kept in case it fails
+        pendingChanges = vintage.trackChanges();
+        return pending;
+    }
+
+    /**
+     * Forgets a finished background checkpoint. If it failed, the deltas and journal it was to replace remain, so the
+     * changes tracked before it started are put back for the next delta to cover. Runs on the thread that changes the
+     * Vintage, as change tracking is not synchronized.
+     */
+    private void settlePending() {
+        if (pending != null) {
+            if (pending.completion().isCompletedExceptionally()) {
+                vintage.restoreChanges(pendingChanges);
+            }
+            pending = null;
+            pendingChanges = null;
+        }
+    }
+
+    /**
+     * Replaces the journal with a copy holding only the records from a position on. The copy is renamed over the
+     * journal, so a crash leaves either the whole journal or the copy.
+     *
+     * @param position Position of the first record to keep
+     */
+    private synchronized void discardBefore(long position) throws IOException {
+        long end = channel.position();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel copy = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotOutput header = new SnapshotOutput(Channels.newOutputStream(copy));
+            header.writeInt(MAGIC);
+            header.writeVarInt(VERSION);
+            header.flush();
+            long transferred = 0;
+            while (transferred < end - position) {
+                transferred += channel.transferTo(position + transferred, end - position - transferred, copy);
+            }
+            copy.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        output = new SnapshotOutput(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Waits for a background checkpoint, detaches the journal from its Vintage and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (pending != null) {
+            pending.completion().exceptionally(e -> null).join();
+        }
+        vintage.setJournal(null);
+        TimeSimulation.removeListener(timeListener);
+        synchronized (this) {
+            batching = false;
+            output.flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Holds records back in memory until {@link #endBatch()}, so a batch of mutations is written at once and forced
+     * only once in sync mode.
+     */
+    synchronized void beginBatch() {
+        batching = true;
+    }
+
+    /**
+     * Writes the records held back since {@link #beginBatch()} and, in sync mode, forces them.
+     */
+    synchronized void endBatch() throws IOException {
+        if (!batching) {
+            return;
+        }
+        batching = false;
+        output.flush();
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    void registerUser(User user) {
+        append(REGISTER_USER, record -> {
+            record.writeId(user.getId());
+            record.writeString(user.getEmail());
+            record.writeString(user.getName());
+            record.writeString(user.getAddress());
+            record.writeString(user.getTaxNumber());
+        });
+    }
+
+    void registerShippingCompany(ShippingCompany shippingCompany) {
+        append(REGISTER_SHIPPING_COMPANY, record -> SnapshotCodec.writeShippingCompany(record, shippingCompany));
+    }
+
+    void publishProduct(String userId, Product product) {
+        append(PUBLISH_PRODUCT, record -> {
+            record.writeId(userId);
+            SnapshotCodec.writeProduct(record, product);
+        });
+    }
+
+    void addProductToUserCart(String userId, String productId) {
+        writeIds(ADD_PRODUCT_TO_CART, userId, productId);
+    }
+
+    void removeProductFromUserCart(String userId, String productId) {
+        writeIds(REMOVE_PRODUCT_FROM_CART, userId, productId);
+    }
+
+    void orderUserCart(String buyerId, List<Order> orders, Instant instant) {
+        append(ORDER_CART, instant, record -> {
+            record.writeId(buyerId);
+            record.writeVarInt(orders.size());
+            for (Order order : orders) {
+                record.writeId(order.getId());
+                record.writeId(order.getSellerId());
+                record.writeId(order.getShippingCompanyId());
+            }
+        });
+    }
+
+    void pruneUserCart(String userId, List<String> productIds) {
+        append(PRUNE_CART, record -> {
+            record.writeId(userId);
+            record.writeVarInt(productIds.size());
+            for (String productId : productIds) {
+                record.writeId(productId);
+            }
+        });
+    }
+
+    void expediteOrder(String orderId) {
+        writeIds(EXPEDITE_ORDER, orderId);
+    }
+
+    void deliverOrder(String orderId, Instant instant) {
+        append(DELIVER_ORDER, instant, record -> record.writeId(orderId));
+    }
+
+    void returnOrder(String orderId) {
+        writeIds(RETURN_ORDER, orderId);
+    }
+
+    void setShippingCompanyProfitMargin(String shippingCompanyId, BigDecimal profitMargin) {
+        append(PROFIT_MARGIN, record -> {
+            record.writeId(shippingCompanyId);
+            record.writeDecimal(profitMargin);
+        });
+    }
+
+    void setUserEmail(String userId, String email) {
+        append(USER_EMAIL, record -> {
+            record.writeId(userId);
+            record.writeString(email);
+        });
+    }
+
+    private void advanceTime(Duration duration) {
+        append(ADVANCE_TIME, record -> {
+            record.writeSignedVarLong(duration.getSeconds());
+            record.writeVarInt(duration.getNano());
+        });
+    }
+
+    private void writeIds(byte type, String... ids) {
+        append(type, record -> {
+            for (String id : ids) {
+                record.writeId(id);
+            }
+        });
+    }
+
+    /**
+     * Fields of a record after its header.
+     */
+    private interface Body {
+        void write(SnapshotOutput record) throws IOException;
+    }
+
+    private void append(byte type, Body body) {
+        append(type, null, body);
+    }
+
+    /**
+     * Builds and writes a record applied at the given simulation instant, or at the current one if null. Replay runs
+     * the record with the clock fixed at it. The whole record is built and written holding the lock, as time advances
+     * are journaled from whichever thread advances the simulation clock.
+     */
+    private synchronized void append(byte type, Instant instant, Body body) {
+        if (instant == null) {
+            instant = TimeSimulation.getClock().instant();
+        }
+        try {
+            record.reset();
+            record.writeVarLong(sequence + 1);
+            record.writeByte(type);
+            record.writeSignedVarLong(instant.getEpochSecond());
+            record.writeVarInt(instant.getNano());
+            body.write(record);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void commit() throws IOException {
+        int length = (int) record.position();
+        crc.reset();
+        crc.update(record.buffer(), 0, length);
+        output.writeVarInt(length);
+        output.writeBytes(record.buffer(), 0, length);
+        output.writeInt((int) crc.getValue());
+        if (!batching) {
+            output.flush();
+            if (sync) {
+                channel.force(false);
+            }
+        }
+        sequence++;
+    }
+}
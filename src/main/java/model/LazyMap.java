@@ -0,0 +1,173 @@
+package model;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Map whose values are materialized the first time they are read.
+ * Entries not yet loaded hold a placeholder (e.g. the offset of the value in a snapshot) that is handed to the loader
+ * together with the key. Keys, size and containment never load values; iteration order is that of the backing map.
+ *
+ * @param <V> Type of the loaded values
+ */
+final class LazyMap<V> extends AbstractMap<String, V> {
+    private final Map<String, Object> entries;
+    private final Class<V> type;
+    private final BiFunction<String, Object, V> loader;
+
+    /**
+     * @param entries Backing map, holding either loaded values or placeholders
+     * @param type    Type of the loaded values, used to tell them apart from placeholders
+     * @param loader  Loads the value of a key from its placeholder
+     */
+    LazyMap(Map<String, Object> entries, Class<V> type, BiFunction<String, Object, V> loader) {
+        this.entries = entries;
+        this.type = type;
+        this.loader = loader;
+    }
+
+    private V resolve(String key, Object value) {
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        V loaded = loader.apply(key, value);
+        entries.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Number of values that have been loaded or added so far.
+     *
+     * @return Loaded values
+     */
+    int loaded() {
+        return (int) entries.values().stream().filter(type::isInstance).count();
+    }
+
+    /**
+     * Entries of the map, loading the values not loaded yet without keeping them, so a pass over all entries leaves
+     * the map as hydrated as it was.
+     *
+     * @return Entries in iteration order
+     */
+    Iterable<Entry<String, V>> transientEntries() {
+        return () -> new Iterator<>() {
+            private final Iterator<Entry<String, Object>> iterator = entries.entrySet().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Entry<String, V> next() {
+                Entry<String, Object> entry = iterator.next();
+                Object value = entry.getValue();
+                return new SimpleImmutableEntry<>(entry.getKey(), value == null || type.isInstance(value) ? type.cast(value) : loader.apply(entry.getKey(), value));
+            }
+        };
+    }
+
+    /**
+     * Values of a map, decoding the ones of a lazy map, or of a captured lazy map, without keeping them.
+     *
+     * @param map Map of a Vintage
+     * @return Values in iteration order
+     */
+    static <V> Iterable<V> transientValues(Map<String, V> map) {
+        if (map instanceof CaptureMap<V> captured) {
+            return captured.transientValues();
+        }
+        if (map instanceof LazyMap<V> lazy) {
+            return () -> new Iterator<>() {
+                private final Iterator<Entry<String, V>> iterator = lazy.transientEntries().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    return iterator.next().getValue();
+                }
+            };
+        }
+        return map.values();
+    }
+
+    @Override
+    public V get(Object key) {
+        Object value = entries.get(key);
+        return value == null ? null : resolve((String) key, value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public V put(String key, V value) {
+        Object previous = entries.put(key, value);
+        return previous == null || type.isInstance(previous) ? type.cast(previous) : null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Object previous = entries.remove(key);
+        return previous == null ? null : type.isInstance(previous) ? type.cast(previous) : loader.apply((String) key, previous);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return entries.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                Iterator<Entry<String, Object>> iterator = entries.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        Entry<String, Object> entry = iterator.next();
+                        Object value = entry.getValue();
+                        if (value != null && !type.isInstance(value)) {
+                            value = loader.apply(entry.getKey(), value);
+                            entry.setValue(value);
+                        }
+                        return new SimpleImmutableEntry<>(entry.getKey(), type.cast(value));
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+}
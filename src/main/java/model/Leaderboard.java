@@ -0,0 +1,120 @@
+package model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Amounts per user in daily and hourly buckets, answering which users have the largest total in a time interval.
+ * <p>
+ * Every amount is added to the bucket of its day, to the bucket of its hour and to the entries of that hour. An
+ * interval query sums whole days, then the whole hours at the ends that do not fill a day, then the entries of the
+ * partial hours at the edges, so its cost depends on the activity within the interval rather than on the number of
+ * users. Corrections, such as returns, are added as negative amounts at the original date. Methods are synchronized,
+ * so checkouts and returns of unrelated users may update a leaderboard concurrently.
+ */
+final class Leaderboard {
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long HOURS_PER_DAY = 24;
+
+    private final NavigableMap<Long, Map<String, BigDecimal>> days;
+    private final NavigableMap<Long, Hour> hours;
+
+    private record Amount(String userId, LocalDateTime date, BigDecimal amount) {
+    }
+
+    private record Hour(Map<String, BigDecimal> totals, List<Amount> amounts) {
+    }
+
+    Leaderboard() {
+        this.days = new TreeMap<>();
+        this.hours = new TreeMap<>();
+    }
+
+    /**
+     * Adds an amount to a user at a date.
+     *
+     * @param userId User identification code
+     * @param date   Date the amount belongs to
+     * @param amount Amount to add, negative to correct an earlier one
+     */
+    synchronized void add(String userId, LocalDateTime date, BigDecimal amount) {
+        long hour = hour(date);
+        days.computeIfAbsent(Math.floorDiv(hour, HOURS_PER_DAY), k -> new HashMap<>()).merge(userId, amount, BigDecimal::add);
+        Hour bucket = hours.computeIfAbsent(hour, k -> new Hour(new HashMap<>(), new ArrayList<>()));
+        bucket.totals().merge(userId, amount, BigDecimal::add);
+        bucket.amounts().add(new Amount(userId, date, amount));
+    }
+
+    /**
+     * Finds the users with the largest positive totals strictly between two dates.
+     *
+     * @param from  Start of the interval, excluded
+     * @param to    End of the interval, excluded
+     * @param limit Maximum number of users
+     * @return Identification codes and totals of the users, largest total first
+     */
+    synchronized List<Map.Entry<String, BigDecimal>> top(LocalDateTime from, LocalDateTime to, int limit) {
+        if (limit <= 0 || !from.isBefore(to)) {
+            return List.of();
+        }
+        Map<String, BigDecimal> totals = new HashMap<>();
+        long firstHour = hour(from);
+        long lastHour = hour(to);
+        if (firstHour == lastHour) {
+            addAmounts(totals, firstHour, from, to);
+        } else {
+            addAmounts(totals, firstHour, from, to);
+            addAmounts(totals, lastHour, from, to);
+            long start = firstHour + 1;
+            long firstDay = Math.floorDiv(start + HOURS_PER_DAY - 1, HOURS_PER_DAY);
+            long lastDay = Math.floorDiv(lastHour, HOURS_PER_DAY);
+            if (firstDay < lastDay) {
+                addHours(totals, start, firstDay * HOURS_PER_DAY);
+                days.subMap(firstDay, lastDay).values().forEach(day -> day.forEach((userId, amount) -> totals.merge(userId, amount, BigDecimal::add)));
+                addHours(totals, lastDay * HOURS_PER_DAY, lastHour);
+            } else {
+                addHours(totals, start, lastHour);
+            }
+        }
+
+        Comparator<Map.Entry<String, BigDecimal>> order = Map.Entry.<String, BigDecimal>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<String, BigDecimal>> heap = new PriorityQueue<>(order);
+        for (Map.Entry<String, BigDecimal> total : totals.entrySet()) {
+            if (total.getValue().signum() <= 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(total);
+            } else if (order.compare(total, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(total);
+            }
+        }
+        List<Map.Entry<String, BigDecimal>> top = new ArrayList<>(heap);
+        top.sort(order.reversed());
+        return top;
+    }
+
+    private void addHours(Map<String, BigDecimal> totals, long from, long to) {
+        if (from < to) {
+            hours.subMap(from, to).values().forEach(hour -> hour.totals().forEach((userId, amount) -> totals.merge(userId, amount, BigDecimal::add)));
+        }
+    }
+
+    private void addAmounts(Map<String, BigDecimal> totals, long hour, LocalDateTime from, LocalDateTime to) {
+        Hour bucket = hours.get(hour);
+        if (bucket != null) {
+            for (Amount amount : bucket.amounts()) {
+                if (amount.date().isAfter(from) && amount.date().isBefore(to)) {
+                    totals.merge(amount.userId(), amount.amount(), BigDecimal::add);
+                }
+            }
+        }
+    }
+
+    private static long hour(LocalDateTime date) {
+        return Math.floorDiv(date.toEpochSecond(ZoneOffset.UTC), SECONDS_PER_HOUR);
+    }
+}
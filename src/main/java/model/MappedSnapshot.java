@@ -0,0 +1,141 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Lazily hydrated view of a memory-mapped snapshot file.
+ * Loading decodes the catalog, the shipping companies, the users and the order index from the footer; every order
+ * map of the restored Vintage is a {@link LazyMap} that decodes an order from the mapping the first time it is read.
+ * All maps share the Vintage orders map, so each order is decoded once and stays linked everywhere it is referenced.
+ */
+final class MappedSnapshot {
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final Boolean REFERENCE = Boolean.TRUE;
+
+    private final ByteBuffer[] segments;
+
+    private MappedSnapshot(ByteBuffer[] segments) {
+        this.segments = segments;
+    }
+
+    static SystemState load(Path path) throws IOException {
+        MappedSnapshot snapshot;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = i * SEGMENT_SIZE;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+                segments[i] = segment;
+            }
+            snapshot = new MappedSnapshot(segments);
+        }
+
+        SnapshotInput input = snapshot.input(0);
+        SnapshotCodec.readHeader(input, SnapshotCodec.MAGIC);
+        long sequence = input.readVarLong();
+        input.readLong();
+        Clock clock = SnapshotCodec.readClock(input);
+        BigDecimal[] settings = SnapshotCodec.readSettings(input);
+        SnapshotCodec.readIdCounters(input);
+        int productCount = input.readVarInt();
+        Map<String, Product> products = SnapshotCodec.newHashMap(productCount);
+        for (int i = 0; i < productCount; i++) {
+            Product product = SnapshotCodec.readProduct(input);
+            products.put(product.getId(), product);
+        }
+
+        SnapshotInput trailer = snapshot.input(size - 8);
+        SnapshotInput footer = snapshot.input(trailer.readLong());
+        long shippingCompaniesOffset = footer.readVarLong();
+        long usersOffset = footer.readVarLong();
+        int orderCount = footer.readVarInt();
+        Map<String, Object> orderOffsets = new LinkedHashMap<>(SnapshotCodec.capacity(orderCount));
+        long offset = 0;
+        for (int i = 0; i < orderCount; i++) {
+            String id = footer.readId();
+            offset += footer.readVarLong();
+            orderOffsets.put(id, offset);
+        }
+        Map<String, Order> orders = new LazyMap<>(orderOffsets, Order.class, snapshot::readOrder);
+        Function<List<String>, Map<String, Order>> orderReferences = ids -> {
+            Map<String, Object> references = SnapshotCodec.newHashMap(ids.size());
+            for (String id : ids) {
+                references.put(id, REFERENCE);
+            }
+            return new LazyMap<>(references, Order.class, (id, reference) -> orders.get(id));
+        };
+
+        input = snapshot.input(shippingCompaniesOffset);
+        int shippingCompanyCount = input.readVarInt();
+        Map<String, ShippingCompany> shippingCompanies = SnapshotCodec.newHashMap(shippingCompanyCount);
+        for (int i = 0; i < shippingCompanyCount; i++) {
+            ShippingCompany shippingCompany = SnapshotCodec.readShippingCompany(input, orderReferences);
+            shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+        }
+
+        input = snapshot.input(usersOffset);
+        int userCount = input.readVarInt();
+        Map<String, User> users = SnapshotCodec.newHashMap(userCount);
+        Map<String, String> userIdsByEmail = SnapshotCodec.newHashMap(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = SnapshotCodec.readUser(input, products, orderReferences);
+            users.put(user.getId(), user);
+            userIdsByEmail.put(user.getEmail(), user.getId());
+        }
+
+        Vintage vintage = new Vintage(settings[0], settings[1], settings[2], settings[3], settings[4], products, users, userIdsByEmail, orders, shippingCompanies);
+        return new SystemState(clock, vintage, sequence);
+    }
+
+    private Order readOrder(String id, Object offset) {
+        try {
+            return SnapshotCodec.readOrder(input((Long) offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load order " + id + " from snapshot.", e);
+        }
+    }
+
+    private SnapshotInput input(long position) {
+        return new Input(segments, position);
+    }
+
+    /**
+     * Reader over the mapped segments, moving to the next segment when one is exhausted.
+     */
+    private static final class Input extends SnapshotInput {
+        private final ByteBuffer[] segments;
+        private int segment;
+
+        Input(ByteBuffer[] segments, long position) {
+            super(segments[(int) (position / SEGMENT_SIZE)].duplicate().position((int) (position % SEGMENT_SIZE)));
+            this.segments = segments;
+            this.segment = (int) (position / SEGMENT_SIZE);
+        }
+
+        @Override
+        protected boolean refill() {
+            if (segment + 1 >= segments.length) {
+                return false;
+            }
+            buffer = segments[++segment].duplicate();
+            return true;
+        }
+
+        @Override
+        long position() {
+            return segment * SEGMENT_SIZE + buffer.position();
+        }
+    }
+}
@@ -6,8 +6,8 @@ import util.TimeSimulation;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -15,7 +15,7 @@ import java.util.stream.Collectors;
 public class Order implements Serializable {
     private static final BigDecimal NEW_FEE = new BigDecimal("0.5");
     private static final BigDecimal USED_FEE = new BigDecimal("0.25");
-    private static long numberOfProducts = 0;
+    private static final Duration RETURN_WINDOW = Duration.ofHours(48);
     private final String id;
     private final String buyerId;
     private final String sellerId;
@@ -30,12 +30,17 @@ public class Order implements Serializable {
     private Status status;
 
     public Order(Collection<Product> products, String buyerId, String sellerId, String shippingCompanyId, BigDecimal shippingCost) {
-        this.id = nextAlphanumericId();
+        this(nextAlphanumericId(), products, buyerId, sellerId, shippingCompanyId, shippingCost, LocalDateTime.now(TimeSimulation.getClock()));
+    }
+
+    Order(String id, Collection<Product> products, String buyerId, String sellerId, String shippingCompanyId, BigDecimal shippingCost, LocalDateTime creationDate) {
+        IdAllocator.ORDER.advancePast(id);
+        this.id = id;
         this.buyerId = buyerId;
         this.sellerId = sellerId;
         this.shippingCompanyId = shippingCompanyId;
         this.products = products.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
-        this.creationDate = LocalDateTime.now(TimeSimulation.getClock());
+        this.creationDate = creationDate;
         this.productsCost = products.stream().map(Product::price).reduce(BigDecimal.ZERO, BigDecimal::add);
         this.shippingCost = shippingCost;
         this.vintageFees = products.stream()
@@ -45,6 +50,22 @@ public class Order implements Serializable {
         this.status = Status.INITIALIZED;
     }
 
+    Order(String id, String buyerId, String sellerId, String shippingCompanyId, Map<String, Product> products, LocalDateTime creationDate, LocalDateTime deliveryDateTime, BigDecimal productsCost, BigDecimal shippingCost, BigDecimal vintageFees, Status status) {
+        IdAllocator.ORDER.advancePast(id);
+        this.id = id;
+        this.buyerId = buyerId;
+        this.sellerId = sellerId;
+        this.shippingCompanyId = shippingCompanyId;
+        this.products = products;
+        this.creationDate = creationDate;
+        this.deliveryDateTime = deliveryDateTime;
+        this.productsCost = productsCost;
+        this.shippingCost = shippingCost;
+        this.vintageFees = vintageFees;
+        this.totalCost = productsCost.add(shippingCost).add(vintageFees);
+        this.status = status;
+    }
+
     private Order(Order other) {
         this.id = other.id;
         this.buyerId = other.buyerId;
@@ -68,6 +89,10 @@ public class Order implements Serializable {
         return new ArrayList<>(products.values());
     }
 
+    Map<String, Product> products() {
+        return products;
+    }
+
     public LocalDateTime getCreationDate() {
         return creationDate;
     }
@@ -76,6 +101,15 @@ public class Order implements Serializable {
         return deliveryDateTime;
     }
 
+    /**
+     * Returns the last date the Order can be returned, 48 hours after its delivery.
+     *
+     * @return Return deadline, or null if the Order was not delivered
+     */
+    public LocalDateTime returnDeadline() {
+        return deliveryDateTime != null ? deliveryDateTime.plus(RETURN_WINDOW) : null;
+    }
+
     public String getSellerId() {
         return sellerId;
     }
@@ -105,10 +139,14 @@ public class Order implements Serializable {
     }
 
     public void deliver() throws StatusOrderException {
+        deliver(LocalDateTime.now(TimeSimulation.getClock()));
+    }
+
+    void deliver(LocalDateTime deliveryDateTime) throws StatusOrderException {
         if (status != Status.EXPEDITED) {
             throw new StatusOrderException("Trying to deliver " + status.name() + "order.\nOnly expedited orders can be delivered.");
         }
-        deliveryDateTime = LocalDateTime.now(TimeSimulation.getClock());
+        this.deliveryDateTime = deliveryDateTime;
         status = Status.DELIVERED;
     }
 
@@ -116,7 +154,7 @@ public class Order implements Serializable {
         if (status != Status.DELIVERED) {
             throw new StatusOrderException("Trying to return " + status.name() + "order.\nOnly delivered orders can be returned.");
         }
-        if (deliveryDateTime.until(LocalDateTime.now(TimeSimulation.getClock()), ChronoUnit.HOURS) > 48) {
+        if (LocalDateTime.now(TimeSimulation.getClock()).isAfter(returnDeadline())) {
             throw new LateReturnException("Trying to return order past return deadline.");
         }
         status = Status.RETURNED;
@@ -139,8 +177,7 @@ public class Order implements Serializable {
     }
 
     public boolean isReturnable() {
-        var twoDaysMillis = 172800000;
-        return status == Status.DELIVERED && creationDate.until(deliveryDateTime, ChronoUnit.MILLIS) < twoDaysMillis;
+        return status == Status.DELIVERED && !LocalDateTime.now(TimeSimulation.getClock()).isAfter(returnDeadline());
     }
 
     public BigDecimal totalCost() {
@@ -163,8 +200,8 @@ public class Order implements Serializable {
         return status != Status.RETURNED ? productsCost : BigDecimal.ZERO;
     }
 
-    private String nextAlphanumericId() {
-        return String.format("%8s", Long.toString(numberOfProducts++, 36)).replace(' ', '0');
+    static String nextAlphanumericId() {
+        return IdAllocator.ORDER.next();
     }
 
     @Override
@@ -0,0 +1,219 @@
+package model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders sorted by creation date and then identification code, with a Fenwick tree over their seller revenue so that
+ * the revenue of the orders created in a time interval takes two binary searches and two prefix sums.
+ * <p>
+ * Orders are expected to arrive in creation order and are appended in logarithmic time; an order that sorts before
+ * the last one is inserted in place and the nodes after it are recomputed. Returning an order corrects its entry in
+ * logarithmic time.
+ */
+final class OrderTimeline {
+    private LocalDateTime[] dates;
+    private String[] ids;
+    private BigDecimal[] values;
+    private BigDecimal[] tree; // 1-based: tree[i] holds the sum of values (i - lowbit(i), i]
+    private int size;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param orders Initial orders, in any order
+     */
+    OrderTimeline(Collection<Order> orders) {
+        Order[] sorted = orders.toArray(new Order[0]);
+        Arrays.sort(sorted, Comparator.comparing(Order::getCreationDate).thenComparing(Order::getId));
+        int capacity = Math.max(8, sorted.length);
+        this.dates = new LocalDateTime[capacity];
+        this.ids = new String[capacity];
+        this.values = new BigDecimal[capacity];
+        this.tree = new BigDecimal[capacity + 1];
+        for (Order order : sorted) {
+            dates[size] = order.getCreationDate();
+            ids[size] = order.getId();
+            values[size] = order.sellerRevenue();
+            size++;
+        }
+        rebuild();
+    }
+
+    /**
+     * Adds an order with its current seller revenue.
+     *
+     * @param order New order
+     */
+    void add(Order order) {
+        if (size == dates.length) {
+            int capacity = dates.length * 2;
+            dates = Arrays.copyOf(dates, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            values = Arrays.copyOf(values, capacity);
+            tree = Arrays.copyOf(tree, capacity + 1);
+        }
+        LocalDateTime date = order.getCreationDate();
+        String id = order.getId();
+        if (size > 0 && (date.isBefore(dates[size - 1]) || date.isEqual(dates[size - 1]) && id.compareTo(ids[size - 1]) < 0)) {
+            int index = upperBound(date, id);
+            System.arraycopy(dates, index, dates, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            dates[index] = date;
+            ids[index] = id;
+            values[index] = order.sellerRevenue();
+            size++;
+            rebuildFrom(index + 1);
+            return;
+        }
+        dates[size] = date;
+        ids[size] = id;
+        values[size] = order.sellerRevenue();
+        size++;
+        // the new node covers its own value and the values (size - lowbit(size), size - 1]
+        int i = size;
+        tree[i] = values[i - 1].add(prefix(i - 1)).subtract(prefix(i - (i & -i)));
+    }
+
+    /**
+     * Adds an amount to the value of an order, as when it is returned.
+     *
+     * @param order  Order of this timeline
+     * @param amount Amount to add
+     */
+    void correct(Order order, BigDecimal amount) {
+        int index = lowerBound(order.getCreationDate());
+        while (index < size && !ids[index].equals(order.getId())) {
+            index++;
+        }
+        if (index == size) {
+            return;
+        }
+        values[index] = values[index].add(amount);
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] = tree[i].add(amount);
+        }
+    }
+
+    /**
+     * Sums the values of the orders created strictly between two dates.
+     *
+     * @param from Start of the interval, excluded
+     * @param to   End of the interval, excluded
+     * @return Sum of the order values in the interval
+     */
+    BigDecimal sum(LocalDateTime from, LocalDateTime to) {
+        int first = upperBound(from);
+        int last = lowerBound(to);
+        if (last <= first) {
+            return BigDecimal.ZERO;
+        }
+        return prefix(last).subtract(prefix(first));
+    }
+
+    /**
+     * Recomputes the nodes from a node on after the values from it on moved, each from its value and the nodes below
+     * it, so an insertion near the end costs little more than an append.
+     *
+     * @param from 1-based node
+     */
+    private void rebuildFrom(int from) {
+        for (int i = from; i <= size; i++) {
+            BigDecimal sum = values[i - 1];
+            for (int j = i - 1; j > i - (i & -i); j -= j & -j) {
+                sum = sum.add(tree[j]);
+            }
+            tree[i] = sum;
+        }
+    }
+
+    /**
+     * Returns the identification codes of the orders that follow an order, in creation order.
+     *
+     * @param after Order of this timeline to start after, or null to start at the first order
+     * @param limit Maximum number of identification codes
+     * @return Identification codes of the next orders
+     */
+    List<String> idsAfter(Order after, int limit) {
+        int index = after == null ? 0 : upperBound(after.getCreationDate(), after.getId());
+        return Arrays.asList(Arrays.copyOfRange(ids, index, Math.min(size, index + limit)));
+    }
+
+    /**
+     * @return Sum of the first n values
+     */
+    private BigDecimal prefix(int n) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = n; i > 0; i -= i & -i) {
+            sum = sum.add(tree[i]);
+        }
+        return sum;
+    }
+
+    private void rebuild() {
+        Arrays.fill(tree, BigDecimal.ZERO);
+        for (int i = 1; i <= size; i++) {
+            tree[i] = tree[i].add(values[i - 1]);
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] = tree[parent].add(tree[i]);
+            }
+        }
+    }
+
+    /**
+     * @return Index of the first order created at or after the date
+     */
+    private int lowerBound(LocalDateTime date) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[middle].isBefore(date)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Index of the first order created after the date, or created at the date with a greater identification code
+     */
+    private int upperBound(LocalDateTime date, String id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[middle].isAfter(date) || dates[middle].isEqual(date) && ids[middle].compareTo(id) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Index of the first order created after the date
+     */
+    private int upperBound(LocalDateTime date) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[middle].isAfter(date)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
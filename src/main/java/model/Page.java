@@ -0,0 +1,77 @@
+package model;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * One page of a listing.
+ *
+ * @param items      Items of the page
+ * @param nextCursor Cursor the next page starts after, or null if this is the last page
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Pages through sorted identification codes, which are their own cursors.
+     *
+     * @param ids    Sorted identification codes
+     * @param cursor Identification code the page starts after, or null for the first page
+     * @param limit  Maximum items per page
+     * @param item   Item, or copy of the item, of an identification code
+     * @return Page with the items of the next identification codes
+     */
+    static <T> Page<T> of(NavigableSet<String> ids, String cursor, int limit, Function<String, T> item) {
+        checkLimit(limit);
+        Iterator<String> iterator = (cursor == null ? ids : ids.tailSet(cursor, false)).iterator();
+        List<T> items = new ArrayList<>(Math.min(limit, ids.size()));
+        String last = null;
+        while (items.size() < limit && iterator.hasNext()) {
+            last = iterator.next();
+            items.add(item.apply(last));
+        }
+        return new Page<>(items, iterator.hasNext() ? last : null);
+    }
+
+    /**
+     * Pages through a map in identification code order without sorting it, keeping only one more identification code
+     * than the page.
+     *
+     * @param map    Items by identification code
+     * @param cursor Identification code the page starts after, or null for the first page
+     * @param limit  Maximum items per page
+     * @param copy   Copy of an item
+     * @return Page with copies of the items of the next identification codes
+     */
+    static <V, T> Page<T> scan(Map<String, V> map, String cursor, int limit, Function<V, T> copy) {
+        checkLimit(limit);
+        PriorityQueue<String> heap = new PriorityQueue<>(Comparator.reverseOrder());
+        for (String id : map.keySet()) {
+            if (cursor != null && id.compareTo(cursor) <= 0) {
+                continue;
+            }
+            if (heap.size() <= limit) {
+                heap.add(id);
+            } else if (id.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+        boolean hasNext = heap.size() > limit;
+        if (hasNext) {
+            heap.poll();
+        }
+        String[] ids = heap.toArray(new String[0]);
+        Arrays.sort(ids);
+        List<T> items = Arrays.stream(ids).map(map::get).map(copy).toList();
+        return new Page<>(items, hasNext ? ids[ids.length - 1] : null);
+    }
+
+    static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("A page holds at least one item.");
+        }
+    }
+}
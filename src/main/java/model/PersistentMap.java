@@ -0,0 +1,150 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map whose updates return a new map sharing all but the changed path with the old one.
+ * <p>
+ * It is a hash array mapped trie: every level takes five bits of the key hash and keeps only the slots in use, each
+ * holding an entry or a node of the next level, so an update copies one small array per level, about log32 of the size
+ * many. Keys with the same full hash are chained in one entry.
+ */
+final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private record Node(int bitmap, Object[] slots) {
+    }
+
+    private record Entry(int hash, Object key, Object value, Entry next) {
+    }
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Value of a key, or null if the map does not hold it
+     */
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        int hash = hash(key);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Node child) {
+                node = child;
+                continue;
+            }
+            for (Entry entry = (Entry) slot; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.key.equals(key)) {
+                    return (V) entry.value;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return Map holding the key with the value, and every other key of this one
+     */
+    PersistentMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(key);
+        boolean[] added = new boolean[1];
+        Node root = put(this.root, 0, hash(key), key, value, added);
+        return new PersistentMap<>(root, added[0] ? size + 1 : size);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(root, (BiConsumer<Object, Object>) action);
+    }
+
+    private static void forEach(Node node, BiConsumer<Object, Object> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node child) {
+                forEach(child, action);
+            } else {
+                for (Entry entry = (Entry) slot; entry != null; entry = entry.next) {
+                    action.accept(entry.key, entry.value);
+                }
+            }
+        }
+    }
+
+    private static Node put(Node node, int shift, int hash, Object key, Object value, boolean[] added) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = new Entry(hash, key, value, null);
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            added[0] = true;
+            return new Node(node.bitmap | bit, slots);
+        }
+
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node child) {
+            replacement = put(child, shift + BITS, hash, key, value, added);
+        } else {
+            Entry entry = (Entry) slot;
+            if (entry.hash == hash) {
+                replacement = chain(entry, key, value, added);
+            } else {
+                // two hashes share this slot, so both move one level down, where they eventually part
+                Node below = new Node(1 << ((entry.hash >>> (shift + BITS)) & MASK), new Object[]{entry});
+                replacement = put(below, shift + BITS, hash, key, value, added);
+            }
+        }
+        Object[] slots = Arrays.copyOf(node.slots, node.slots.length);
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Replaces the value of a key in a chain of entries with the same hash, or adds the key in front.
+     */
+    private static Entry chain(Entry first, Object key, Object value, boolean[] added) {
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            if (entry.key.equals(key)) {
+                return replace(first, entry, value);
+            }
+        }
+        added[0] = true;
+        return new Entry(first.hash, key, value, first);
+    }
+
+    private static Entry replace(Entry entry, Entry target, Object value) {
+        if (entry == target) {
+            return new Entry(entry.hash, entry.key, value, entry.next);
+        }
+        return new Entry(entry.hash, entry.key, entry.value, replace(entry.next, target, value));
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -15,6 +15,11 @@ public class PremiumHandbag extends Handbag implements Premium, Serializable {
         this.appreciationRate = appreciationRate;
     }
 
+    PremiumHandbag(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state, BigDecimal dimension, Material material, Year collectionYear, BigDecimal appreciationRate) {
+        super(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, dimension, material, collectionYear);
+        this.appreciationRate = appreciationRate;
+    }
+
     public BigDecimal getAppreciationRate() {
         return appreciationRate;
     }
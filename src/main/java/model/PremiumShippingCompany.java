@@ -2,6 +2,7 @@ package model;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Map;
 
 public class PremiumShippingCompany extends ShippingCompany implements Premium, Serializable {
     private BigDecimal premiumTax;
@@ -11,6 +12,11 @@ public class PremiumShippingCompany extends ShippingCompany implements Premium,
         this.premiumTax = premiumTax;
     }
 
+    PremiumShippingCompany(String id, String name, BigDecimal baseValueSmall, BigDecimal baseValueMedium, BigDecimal baseValueBig, BigDecimal fee, BigDecimal revenue, BigDecimal profitMargin, Map<String, Order> orders, BigDecimal premiumTax) {
+        super(id, name, baseValueSmall, baseValueMedium, baseValueBig, fee, revenue, profitMargin, orders);
+        this.premiumTax = premiumTax;
+    }
+
     public PremiumShippingCompany(PremiumShippingCompany other) {
         super(other);
         this.premiumTax = other.premiumTax;
@@ -32,6 +32,10 @@ public class PremiumSneaker extends Sneaker implements Premium, Serializable {
         super(sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, size, color, laces, collectionYear, appreciation);
     }
 
+    PremiumSneaker(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state, int size, Color color, boolean laces, Year collectionYear, BigDecimal appreciation) {
+        super(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, size, color, laces, collectionYear, appreciation);
+    }
+
     /**
      * Returns the price correction.
      * Price correction is calculated with the appreciation rate set by the seller.
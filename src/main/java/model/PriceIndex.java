@@ -0,0 +1,106 @@
+package model;
+
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.time.Year;
+import java.util.*;
+
+/**
+ * Products on sale ordered by price and then identification code, so a price range comes out in either direction in
+ * O(log n + k).
+ * <p>
+ * Prices are taken once, when a product is added. Only premium prices change, once per simulated year, so the premium
+ * products are repriced when the index is used in a year other than the one it was last priced in. Checking the year
+ * on use also covers clocks replaced with {@link TimeSimulation#setClock}, which time advance listeners do not see.
+ */
+final class PriceIndex {
+    private static final String AFTER_EVERY_ID = "\uffff";
+
+    private final NavigableSet<Entry> entries;
+    private final Map<String, Entry> entriesById;
+    private final Map<String, Product> timeDependent;
+    private Year year;
+
+    /**
+     * Price and identification code of a product, or a position between them.
+     */
+    record Entry(BigDecimal price, String id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byPrice = price.compareTo(other.price);
+            return byPrice != 0 ? byPrice : id.compareTo(other.id);
+        }
+    }
+
+    PriceIndex() {
+        this.entries = new TreeSet<>();
+        this.entriesById = new HashMap<>();
+        this.timeDependent = new HashMap<>();
+        this.year = Year.now(TimeSimulation.getClock());
+    }
+
+    void add(Product product) {
+        refresh();
+        Entry entry = new Entry(product.price(), product.getId());
+        Entry replaced = entriesById.put(product.getId(), entry);
+        if (replaced != null) {
+            entries.remove(replaced);
+        }
+        entries.add(entry);
+        if (product.hasTimeDependentPrice()) {
+            timeDependent.put(product.getId(), product);
+        } else {
+            timeDependent.remove(product.getId());
+        }
+    }
+
+    void remove(Product product) {
+        Entry entry = entriesById.remove(product.getId());
+        if (entry != null) {
+            entries.remove(entry);
+            timeDependent.remove(product.getId());
+        }
+    }
+
+    /**
+     * Returns the products priced within a range, after a position, in price order.
+     *
+     * @param min        Minimum price, or null for no minimum
+     * @param max        Maximum price, or null for no maximum
+     * @param descending Whether the most expensive products come first
+     * @param after      Position the range starts after, or null to start at its first product
+     * @return Entries of the products in the range
+     */
+    NavigableSet<Entry> range(BigDecimal min, BigDecimal max, boolean descending, Entry after) {
+        refresh();
+        NavigableSet<Entry> range = entries;
+        if (min != null && max != null) {
+            range = range.subSet(new Entry(min, ""), true, new Entry(max, AFTER_EVERY_ID), true);
+        } else if (min != null) {
+            range = range.tailSet(new Entry(min, ""), true);
+        } else if (max != null) {
+            range = range.headSet(new Entry(max, AFTER_EVERY_ID), true);
+        }
+        if (descending) {
+            range = range.descendingSet();
+        }
+        return after != null ? range.tailSet(after, false) : range;
+    }
+
+    /**
+     * Reprices the premium products if the simulated year changed since they were last priced.
+     */
+    private void refresh() {
+        Year now = Year.now(TimeSimulation.getClock());
+        if (now.equals(year)) {
+            return;
+        }
+        year = now;
+        for (Product product : timeDependent.values()) {
+            Entry entry = new Entry(product.price(), product.getId());
+            entries.remove(entriesById.put(product.getId(), entry));
+            entries.add(entry);
+        }
+    }
+}
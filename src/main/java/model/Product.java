@@ -1,14 +1,18 @@
 package model;
 
+import util.TimeSimulation;
+
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.time.Year;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Abstract product class.
  */
 public abstract class Product implements Serializable {
-    private static long numberOfProducts = 0;
-
     private final String id;
     private final String sellerId;
     private final String shippingCompanyId;
@@ -17,6 +21,13 @@ public abstract class Product implements Serializable {
     private final BigDecimal basePrice;
     private final int numberOfPreviousOwners;
     private final State state;
+    private transient PriceCache priceCache;
+
+    /**
+     * Computed price, with the year it was computed for if it depends on the simulated time.
+     */
+    private record PriceCache(Year year, BigDecimal price) {
+    }
 
     /**
      * Parameterized constructor.
@@ -30,7 +41,24 @@ public abstract class Product implements Serializable {
      * @param state                  Product state
      */
     public Product(String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state) {
-        this.id = nextAlphanumericId();
+        this(IdAllocator.PRODUCT.next(), sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state);
+    }
+
+    /**
+     * Constructor for a Product with a known identification code, used when restoring a saved system.
+     *
+     * @param id                     Product identification code
+     * @param sellerId               Seller identification code
+     * @param shippingCompanyId      Product assigned shipping company
+     * @param description            Product description
+     * @param brand                  Product brand
+     * @param basePrice              Product base price
+     * @param numberOfPreviousOwners Product number of previous owners
+     * @param state                  Product state
+     */
+    protected Product(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state) {
+        IdAllocator.PRODUCT.advancePast(id);
+        this.id = id;
         this.sellerId = sellerId;
         this.shippingCompanyId = shippingCompanyId;
         this.description = description;
@@ -100,15 +128,42 @@ public abstract class Product implements Serializable {
 
     /**
      * Returns the price of the Product as a BigDecimal.
+     * The price is computed once, or once per simulated year for premium products, whose price appreciates yearly.
      *
      * @return Price of Product as a BigDecimal
      */
     public BigDecimal price() {
-        return basePrice.multiply(priceCorrection());
+        Year year = hasTimeDependentPrice() ? Year.now(TimeSimulation.getClock()) : null;
+        PriceCache cache = priceCache;
+        if (cache == null || !Objects.equals(cache.year(), year)) {
+            cache = new PriceCache(year, basePrice.multiply(priceCorrection()));
+            priceCache = cache;
+        }
+        return cache.price();
     }
 
-    private String nextAlphanumericId() {
-        return String.format("%8s", Long.toString(numberOfProducts++, 36)).replace(' ', '0');
+    /**
+     * Checks if the price of the Product changes with the simulated year.
+     *
+     * @return Returns whether the Product is premium
+     */
+    public boolean hasTimeDependentPrice() {
+        return this instanceof Premium;
+    }
+
+    /**
+     * Returns the values of the Product for the indexed search facets.
+     * The price range is left out, as the price of premium products changes with time.
+     *
+     * @return Value of each facet the Product has
+     */
+    Map<ProductFacet, String> facets() {
+        Map<ProductFacet, String> facets = new EnumMap<>(ProductFacet.class);
+        facets.put(ProductFacet.TYPE, getClass().getSimpleName());
+        facets.put(ProductFacet.BRAND, brand);
+        facets.put(ProductFacet.STATE, state.name());
+        facets.put(ProductFacet.CONDITION, isNew() ? "new" : "used");
+        return facets;
     }
 
     public String show() {
@@ -0,0 +1,236 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Inverted indexes over the products on sale: for every value of every indexed facet, the sorted identification codes
+ * of the products that have it.
+ * <p>
+ * A search walks the smallest set among its filters and checks the others by membership. Since identification codes
+ * follow publication order, a page sorted by publication stops walking as soon as it is full. A price-ordered search
+ * without facet filters walks the {@link PriceIndex} from the cursor; with them, it prices the candidates, whose prices
+ * are cached.
+ * <p>
+ * The {@link TextIndex} over brands and descriptions is built on the first text search and kept up to date afterwards,
+ * so catalogs only searched by facet do not pay for it.
+ * <p>
+ * Methods are synchronized, so products can be published and sold concurrently while the catalog is searched.
+ */
+final class ProductCatalog {
+    private final Map<String, Product> products;
+    private final NavigableSet<String> all;
+    private final Map<ProductFacet, Map<String, NavigableSet<String>>> postings;
+    private final PriceIndex prices;
+    private TextIndex text;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param products Products on sale, looked up by the searches
+     */
+    ProductCatalog(Map<String, Product> products) {
+        this.products = products;
+        this.all = new TreeSet<>();
+        this.postings = new EnumMap<>(ProductFacet.class);
+        this.prices = new PriceIndex();
+        products.values().forEach(this::add);
+    }
+
+    synchronized void add(Product product) {
+        all.add(product.getId());
+        prices.add(product);
+        if (text != null) {
+            text.add(product);
+        }
+        product.facets().forEach((facet, value) -> postings.computeIfAbsent(facet, k -> new HashMap<>())
+                .computeIfAbsent(value, k -> new TreeSet<>())
+                .add(product.getId()));
+    }
+
+    synchronized void remove(Product product) {
+        if (!all.remove(product.getId())) {
+            return;
+        }
+        prices.remove(product);
+        if (text != null) {
+            text.remove(product.getId());
+        }
+        product.facets().forEach((facet, value) -> {
+            Map<String, NavigableSet<String>> values = postings.get(facet);
+            NavigableSet<String> ids = values.get(value);
+            ids.remove(product.getId());
+            if (ids.isEmpty()) {
+                values.remove(value);
+            }
+        });
+    }
+
+    /**
+     * Finds a page of the products matching a query.
+     *
+     * @param query Product search
+     * @return Matching products after the query cursor, in the query order
+     */
+    synchronized Page<Product> search(ProductQuery query) {
+        return switch (query.sort()) {
+            case NEWEST, OLDEST -> searchByPublication(query);
+            case PRICE_ASCENDING, PRICE_DESCENDING -> searchByPrice(query);
+        };
+    }
+
+    /**
+     * Counts the products matching a query, ignoring its cursor, and the values of their facets.
+     *
+     * @param query Product search
+     * @return Matching products and facet value counts
+     */
+    synchronized FacetCounts count(ProductQuery query) {
+        long total = 0;
+        Map<ProductFacet, Map<String, Long>> counts = new EnumMap<>(ProductFacet.class);
+        for (String id : candidates(query)) {
+            Product product = products.get(id);
+            if (matches(query, product)) {
+                total++;
+                Map<ProductFacet, String> facets = product.facets();
+                facets.put(ProductFacet.PRICE_RANGE, ProductFacet.priceRange(product.price()));
+                facets.forEach((facet, value) -> counts.computeIfAbsent(facet, k -> new TreeMap<>()).merge(value, 1L, Long::sum));
+            }
+        }
+        return new FacetCounts(total, counts);
+    }
+
+    /**
+     * Finds the products whose brand and description best match a text, among those matching a query.
+     *
+     * @param words Text to look for
+     * @param query Product search, whose sort and cursor are ignored
+     * @return At most the query limit of matching products, best match first
+     */
+    synchronized List<Product> searchText(String words, ProductQuery query) {
+        if (text == null) {
+            text = new TextIndex();
+            all.forEach(id -> text.add(products.get(id)));
+        }
+        return text.search(words, id -> matches(query, products.get(id)), query.limit()).stream()
+                .map(products::get)
+                .toList();
+    }
+
+    private Page<Product> searchByPublication(ProductQuery query) {
+        NavigableSet<String> candidates = candidates(query);
+        if (query.sort() == ProductQuery.Sort.NEWEST) {
+            candidates = candidates.descendingSet();
+        }
+        if (query.cursor() != null) {
+            candidates = candidates.tailSet(query.cursor(), false);
+        }
+        List<Product> page = new ArrayList<>(query.limit());
+        for (String id : candidates) {
+            Product product = products.get(id);
+            if (matches(query, product)) {
+                if (page.size() == query.limit()) {
+                    return new Page<>(page, page.get(page.size() - 1).getId());
+                }
+                page.add(product);
+            }
+        }
+        return new Page<>(page, null);
+    }
+
+    /**
+     * Walks the price index when no facet narrows the candidates. Otherwise keeps the first matches after the cursor in
+     * a heap bounded to one more than the page, so a page costs a pass over the candidates rather than sorting them.
+     */
+    private Page<Product> searchByPrice(ProductQuery query) {
+        boolean descending = query.sort() == ProductQuery.Sort.PRICE_DESCENDING;
+        PriceIndex.Entry after = query.cursor() != null ? parsePriceCursor(query.cursor()) : null;
+        NavigableSet<String> candidates = candidates(query);
+        List<PriceIndex.Entry> page = new ArrayList<>(query.limit() + 1);
+        if (candidates == all) {
+            for (PriceIndex.Entry entry : prices.range(query.minPrice(), query.maxPrice(), descending, after)) {
+                if (matches(query, products.get(entry.id()))) {
+                    page.add(entry);
+                    if (page.size() > query.limit()) {
+                        break;
+                    }
+                }
+            }
+        } else {
+            Comparator<PriceIndex.Entry> order = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            PriorityQueue<PriceIndex.Entry> heap = new PriorityQueue<>(order.reversed());
+            for (String id : candidates) {
+                Product product = products.get(id);
+                if (!matches(query, product)) {
+                    continue;
+                }
+                PriceIndex.Entry entry = new PriceIndex.Entry(product.price(), id);
+                if (after != null && order.compare(entry, after) <= 0) {
+                    continue;
+                }
+                if (heap.size() <= query.limit()) {
+                    heap.add(entry);
+                } else if (order.compare(entry, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(entry);
+                }
+            }
+            page.addAll(heap);
+            page.sort(order);
+        }
+        if (page.size() <= query.limit()) {
+            return new Page<>(page.stream().map(entry -> products.get(entry.id())).toList(), null);
+        }
+        PriceIndex.Entry last = page.get(query.limit() - 1);
+        return new Page<>(page.subList(0, query.limit()).stream().map(entry -> products.get(entry.id())).toList(), last.price().toPlainString() + "/" + last.id());
+    }
+
+    /**
+     * @return Smallest indexed set among the query filters, or every product if no indexed facet is filtered
+     */
+    private NavigableSet<String> candidates(ProductQuery query) {
+        NavigableSet<String> smallest = all;
+        for (Map.Entry<ProductFacet, String> filter : query.filters().entrySet()) {
+            if (filter.getKey() == ProductFacet.PRICE_RANGE) {
+                continue;
+            }
+            NavigableSet<String> ids = postings(filter.getKey(), filter.getValue());
+            if (ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+
+    private boolean matches(ProductQuery query, Product product) {
+        if (product.getSellerId().equals(query.excludedSellerId())) {
+            return false;
+        }
+        if (query.minPrice() != null && product.price().compareTo(query.minPrice()) < 0
+                || query.maxPrice() != null && product.price().compareTo(query.maxPrice()) > 0) {
+            return false;
+        }
+        for (Map.Entry<ProductFacet, String> filter : query.filters().entrySet()) {
+            boolean match = filter.getKey() == ProductFacet.PRICE_RANGE
+                    ? ProductFacet.priceRange(product.price()).equals(filter.getValue())
+                    : postings(filter.getKey(), filter.getValue()).contains(product.getId());
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private NavigableSet<String> postings(ProductFacet facet, String value) {
+        NavigableSet<String> ids = postings.getOrDefault(facet, Map.of()).get(value);
+        return ids != null ? ids : Collections.emptyNavigableSet();
+    }
+
+    private static PriceIndex.Entry parsePriceCursor(String cursor) {
+        int separator = cursor.lastIndexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'.");
+        }
+        return new PriceIndex.Entry(new BigDecimal(cursor.substring(0, separator)), cursor.substring(separator + 1));
+    }
+}
@@ -0,0 +1,43 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * Attributes the product catalog can be searched and counted by.
+ * <p>
+ * Every facet value is a string: the simple class name for {@link #TYPE}, the brand as published for {@link #BRAND},
+ * the constant name for the enum attributes, {@code new} or {@code used} for {@link #CONDITION} and the number for
+ * sizes and years. {@link #PRICE_RANGE} values are the ranges of {@link #priceRange(BigDecimal)}.
+ */
+public enum ProductFacet {
+    TYPE,
+    BRAND,
+    STATE,
+    CONDITION,
+    SNEAKER_SIZE,
+    TSHIRT_SIZE,
+    PATTERN,
+    MATERIAL,
+    COLLECTION_YEAR,
+    PRICE_RANGE;
+
+    private static final int[] PRICE_BOUNDS = {25, 50, 100, 200};
+
+    /**
+     * Returns the price range a price falls in, such as {@code 25-50} for a price of at least 25 and less than 50, or
+     * {@code 200+} for the highest range.
+     *
+     * @param price Product price
+     * @return Price range
+     */
+    public static String priceRange(BigDecimal price) {
+        int lower = 0;
+        for (int bound : PRICE_BOUNDS) {
+            if (price.compareTo(BigDecimal.valueOf(bound)) < 0) {
+                return lower + "-" + bound;
+            }
+            lower = bound;
+        }
+        return lower + "+";
+    }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Search over the products on sale.
+ * <p>
+ * A product matches when it has every filtered facet value, is priced within the price bounds and is not sold by the
+ * excluded seller. Results come in
+ * pages of at most {@code limit} products; the next page is requested with {@link #after(String)} and the cursor of
+ * the previous page, under the same filters and sort.
+ *
+ * @param filters          Required value of each filtered facet
+ * @param minPrice         Minimum price, or null for no minimum
+ * @param maxPrice         Maximum price, or null for no maximum
+ * @param excludedSellerId Seller whose products are left out, or null
+ * @param sort             Result order
+ * @param limit            Maximum products per page
+ * @param cursor           Cursor the page starts after, or null for the first page
+ */
+public record ProductQuery(Map<ProductFacet, String> filters, BigDecimal minPrice, BigDecimal maxPrice, String excludedSellerId, Sort sort, int limit, String cursor) {
+    public ProductQuery {
+        Page.checkLimit(limit);
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("The minimum price is above the maximum price.");
+        }
+        filters = Map.copyOf(filters);
+    }
+
+    /**
+     * Result order. Publication order follows product identification codes.
+     */
+    public enum Sort {
+        NEWEST, OLDEST, PRICE_ASCENDING, PRICE_DESCENDING
+    }
+
+    /**
+     * Query for every product on sale, newest first.
+     *
+     * @param limit Maximum products per page
+     * @return New query
+     */
+    public static ProductQuery all(int limit) {
+        return new ProductQuery(Map.of(), null, null, null, Sort.NEWEST, limit, null);
+    }
+
+    public ProductQuery where(ProductFacet facet, String value) {
+        Map<ProductFacet, String> filters = new EnumMap<>(ProductFacet.class);
+        filters.putAll(this.filters);
+        filters.put(facet, value);
+        return new ProductQuery(filters, minPrice, maxPrice, excludedSellerId, sort, limit, cursor);
+    }
+
+    /**
+     * @param minPrice Minimum price, or null for no minimum
+     * @param maxPrice Maximum price, or null for no maximum
+     * @return Query for the products priced between the two prices, both included
+     */
+    public ProductQuery pricedBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        return new ProductQuery(filters, minPrice, maxPrice, excludedSellerId, sort, limit, cursor);
+    }
+
+    public ProductQuery excludingSeller(String sellerId) {
+        return new ProductQuery(filters, minPrice, maxPrice, sellerId, sort, limit, cursor);
+    }
+
+    public ProductQuery sortedBy(Sort sort) {
+        return new ProductQuery(filters, minPrice, maxPrice, excludedSellerId, sort, limit, cursor);
+    }
+
+    public ProductQuery after(String cursor) {
+        return new ProductQuery(filters, minPrice, maxPrice, excludedSellerId, sort, limit, cursor);
+    }
+}
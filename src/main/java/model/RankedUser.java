@@ -0,0 +1,12 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * User of a leaderboard with the amount it was ranked by.
+ *
+ * @param user   Copy of the user
+ * @param amount Revenue or spending of the user in the leaderboard interval
+ */
+public record RankedUser(User user, BigDecimal amount) {
+}
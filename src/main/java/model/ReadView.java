@@ -0,0 +1,200 @@
+package model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Immutable view of the statistics of a Vintage at one version, which reports may read from any thread and for as
+ * long as they need while the Vintage keeps changing.
+ * <p>
+ * A view holds the amounts of every user and shipping company and a frozen copy of every order, in persistent maps.
+ * The next version copies only the entities changed since this one and shares everything else with it, so publishing
+ * costs in proportion to the changes rather than to the size of the Vintage, and readers still holding an older
+ * version keep a consistent state.
+ */
+public final class ReadView {
+    private final long version;
+    private final BigDecimal revenue;
+    private final PersistentMap<String, UserStatistics> users;
+    private final PersistentMap<String, ShippingCompanyStatistics> shippingCompanies;
+    private final PersistentMap<String, Order> orders;
+    private final PersistentMap<String, PersistentMap<String, Order>> ordersMade;
+
+    private ReadView(long version, BigDecimal revenue, PersistentMap<String, UserStatistics> users, PersistentMap<String, ShippingCompanyStatistics> shippingCompanies,
+                     PersistentMap<String, Order> orders, PersistentMap<String, PersistentMap<String, Order>> ordersMade) {
+        this.version = version;
+        this.revenue = revenue;
+        this.users = users;
+        this.shippingCompanies = shippingCompanies;
+        this.orders = orders;
+        this.ordersMade = ordersMade;
+    }
+
+    /**
+     * Builds the first view of a Vintage from all its entities.
+     */
+    static ReadView of(Vintage vintage) {
+        ReadView empty = new ReadView(0, BigDecimal.ZERO, PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty());
+        return empty.next(vintage, vintage.users().keySet(), vintage.shippingCompanies().keySet(), vintage.orders().keySet());
+    }
+
+    /**
+     * Builds the next version of this view.
+     *
+     * @param vintage Vintage this view was built from
+     * @param changes Entities changed since this view was built
+     * @return Next view
+     */
+    ReadView next(Vintage vintage, ChangeSet changes) {
+        return next(vintage, changes.users(), changes.shippingCompanies(), changes.orders());
+    }
+
+    private ReadView next(Vintage vintage, Collection<String> userIds, Collection<String> shippingCompanyIds, Collection<String> orderIds) {
+        PersistentMap<String, UserStatistics> users = this.users;
+        for (String id : userIds) {
+            User user = vintage.users().get(id);
+            if (user != null) {
+                users = users.with(id, new UserStatistics(id, user.getName(), user.getEmail(), user.getRevenue(), user.getSpending()));
+            }
+        }
+        PersistentMap<String, ShippingCompanyStatistics> shippingCompanies = this.shippingCompanies;
+        for (String id : shippingCompanyIds) {
+            ShippingCompany shippingCompany = vintage.shippingCompanies().get(id);
+            if (shippingCompany != null) {
+                shippingCompanies = shippingCompanies.with(id, new ShippingCompanyStatistics(id, shippingCompany.getName(), shippingCompany.getRevenue()));
+            }
+        }
+        PersistentMap<String, Order> orders = this.orders;
+        PersistentMap<String, PersistentMap<String, Order>> ordersMade = this.ordersMade;
+        for (String id : orderIds) {
+            Order order = vintage.orders().get(id);
+            if (order != null) {
+                Order frozen = order.clone();
+                orders = orders.with(id, frozen);
+                PersistentMap<String, Order> made = ordersMade.get(order.getBuyerId());
+                ordersMade = ordersMade.with(order.getBuyerId(), (made != null ? made : PersistentMap.<String, Order>empty()).with(id, frozen));
+            }
+        }
+        return new ReadView(version + 1, vintage.getRevenue(), users, shippingCompanies, orders, ordersMade);
+    }
+
+    /**
+     * @return Version of this view, one more than the view it was built from
+     */
+    public long version() {
+        return version;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public Optional<UserStatistics> userWithMostRevenue() {
+        UserStatistics[] best = new UserStatistics[1];
+        users.forEach((id, user) -> {
+            if (best[0] == null || user.revenue().compareTo(best[0].revenue()) > 0) {
+                best[0] = user;
+            }
+        });
+        return Optional.ofNullable(best[0]);
+    }
+
+    /**
+     * Finds the seller with the most revenue from the orders created strictly between two dates.
+     *
+     * @param from Start of the interval
+     * @param to   End of the interval
+     * @return Seller with its revenue and spending in the interval, or empty if no seller had revenue in it
+     */
+    public Optional<UserStatistics> userWithMostRevenue(LocalDateTime from, LocalDateTime to) {
+        return topSellers(from, to, 1).stream().findFirst();
+    }
+
+    /**
+     * Finds the sellers with the most revenue from the orders created strictly between two dates.
+     *
+     * @param from  Start of the interval
+     * @param to    End of the interval
+     * @param limit Maximum number of sellers
+     * @return Sellers with their revenue and spending in the interval, most revenue first
+     */
+    public List<UserStatistics> topSellers(LocalDateTime from, LocalDateTime to, int limit) {
+        return ranked(from, to, limit, UserStatistics::revenue);
+    }
+
+    /**
+     * Finds the buyers with the most spending on the orders created strictly between two dates.
+     *
+     * @param from  Start of the interval
+     * @param to    End of the interval
+     * @param limit Maximum number of buyers
+     * @return Buyers with their revenue and spending in the interval, most spending first
+     */
+    public List<UserStatistics> topBuyers(LocalDateTime from, LocalDateTime to, int limit) {
+        return ranked(from, to, limit, UserStatistics::spending);
+    }
+
+    public Optional<ShippingCompanyStatistics> shippingCompanyMostRevenue() {
+        ShippingCompanyStatistics[] best = new ShippingCompanyStatistics[1];
+        shippingCompanies.forEach((id, shippingCompany) -> {
+            if (best[0] == null || shippingCompany.revenue().compareTo(best[0].revenue()) > 0) {
+                best[0] = shippingCompany;
+            }
+        });
+        return Optional.ofNullable(best[0]);
+    }
+
+    /**
+     * @param userId User identification code
+     * @return Copies of the orders the user made, oldest first
+     */
+    public List<Order> userIssuedOrders(String userId) {
+        PersistentMap<String, Order> made = ordersMade.get(userId);
+        if (made == null) {
+            return List.of();
+        }
+        List<Order> copies = new ArrayList<>(made.size());
+        made.forEach((id, order) -> copies.add(order.clone()));
+        copies.sort(Comparator.comparing(Order::getCreationDate).thenComparing(Order::getId));
+        return copies;
+    }
+
+    public Optional<UserStatistics> getUser(String userId) {
+        return Optional.ofNullable(users.get(userId));
+    }
+
+    /**
+     * Sums the revenue and spending of every user over the orders created strictly between two dates, in one pass over
+     * the orders, and ranks the users with a positive amount.
+     */
+    private List<UserStatistics> ranked(LocalDateTime from, LocalDateTime to, int limit, Function<UserStatistics, BigDecimal> amount) {
+        if (limit <= 0 || !from.isBefore(to)) {
+            return List.of();
+        }
+        Map<String, BigDecimal[]> amounts = new HashMap<>();
+        orders.forEach((id, order) -> {
+            LocalDateTime date = order.getCreationDate();
+            if (date.isAfter(from) && date.isBefore(to)) {
+                BigDecimal value = order.sellerRevenue();
+                BigDecimal[] seller = amounts.computeIfAbsent(order.getSellerId(), k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+                seller[0] = seller[0].add(value);
+                BigDecimal[] buyer = amounts.computeIfAbsent(order.getBuyerId(), k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+                buyer[1] = buyer[1].add(value);
+            }
+        });
+        List<UserStatistics> ranked = new ArrayList<>();
+        amounts.forEach((userId, totals) -> {
+            UserStatistics user = users.get(userId);
+            if (user != null) {
+                UserStatistics inInterval = new UserStatistics(userId, user.name(), user.email(), totals[0], totals[1]);
+                if (amount.apply(inInterval).signum() > 0) {
+                    ranked.add(inInterval);
+                }
+            }
+        });
+        ranked.sort(Comparator.comparing(amount).reversed().thenComparing(UserStatistics::id));
+        return List.copyOf(ranked.subList(0, Math.min(limit, ranked.size())));
+    }
+}
@@ -0,0 +1,291 @@
+package model;
+
+import exceptions.MalformedRecordException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader of flat records, each a map from field name to text value.
+ * CSV files take their field names from the header line; JSON Lines files hold one flat object per line, whose arrays
+ * of scalars are joined with {@code ';'}. Null values and empty CSV fields are left out of the record.
+ */
+abstract class RecordReader implements Closeable {
+    protected final BufferedReader reader;
+    protected long lines;
+    protected long line;
+
+    private RecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a CSV file, or a JSON Lines file when the name ends in .jsonl, .ndjson or .json.
+     *
+     * @param path Records file
+     * @return Reader of the file records
+     */
+    static RecordReader open(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+            return new JsonLines(reader);
+        }
+        return new Csv(reader);
+    }
+
+    /**
+     * Reads the next record. A malformed record is skipped, so reading may go on after the exception.
+     *
+     * @return Next record, or null at the end of the file
+     * @throws MalformedRecordException If the record cannot be parsed
+     */
+    abstract Map<String, String> next() throws IOException, MalformedRecordException;
+
+    /**
+     * @return Line the last record read started at
+     */
+    long line() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static final class Csv extends RecordReader {
+        private String[] header;
+
+        Csv(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            if (header == null) {
+                List<String> names = readFields();
+                if (names == null) {
+                    return null;
+                }
+                header = names.stream().map(String::trim).toArray(String[]::new);
+            }
+            List<String> fields = readFields();
+            if (fields == null) {
+                return null;
+            }
+            if (fields.size() != header.length) {
+                throw new MalformedRecordException("Expected " + header.length + " fields but found " + fields.size() + ".");
+            }
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                if (!fields.get(i).isEmpty()) {
+                    record.put(header[i], fields.get(i));
+                }
+            }
+            return record;
+        }
+
+        /**
+         * Reads the fields of the next non-blank line, following quoted fields across line breaks.
+         */
+        private List<String> readFields() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                lines++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            line = lines;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    text = reader.readLine();
+                    lines++;
+                    if (text == null) {
+                        throw new MalformedRecordException("Unterminated quoted field.");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = text.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static final class JsonLines extends RecordReader {
+        private String text;
+        private int position;
+
+        JsonLines(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            do {
+                text = reader.readLine();
+                lines++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            line = lines;
+            position = 0;
+
+            Map<String, String> record = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    String name = readString();
+                    expect(':');
+                    String value = readValue();
+                    if (value != null) {
+                        record.put(name, value);
+                    }
+                } while (accept(','));
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw malformed("Unexpected text after the object");
+            }
+            return record;
+        }
+
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '[') {
+                position++;
+                List<String> values = new ArrayList<>();
+                if (!accept(']')) {
+                    do {
+                        values.add(readValue());
+                    } while (accept(','));
+                    expect(']');
+                }
+                return String.join(";", values);
+            }
+            int start = position;
+            while (position < text.length() && ",}] \t".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return literal;
+            }
+            throw malformed("Invalid value '" + literal + "'");
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw malformed("Unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    throw malformed("Unterminated string");
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw malformed("Invalid unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw malformed("Invalid unicode escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw malformed("Invalid escape '\\" + escaped + "'");
+                }
+            }
+        }
+
+        private char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private boolean accept(char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw malformed("Expected '" + c + "'");
+            }
+        }
+
+        private MalformedRecordException malformed(String message) {
+            return new MalformedRecordException(message + " at column " + (position + 1) + ".");
+        }
+    }
+}
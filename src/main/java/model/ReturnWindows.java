@@ -0,0 +1,131 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Delivered orders still within their return window, ordered by return deadline, globally and per buyer.
+ * <p>
+ * Windows open when an order is delivered and close when it is returned or when the time passes its deadline. Closed
+ * windows are swept from the head of the global order, so expiring k windows costs O(k log n) however many are open,
+ * and listing the returnable orders of a buyer costs O(returnable) after the sweep, once its windows are built. The
+ * simulated time is assumed to move forward: a window that was swept does not reopen if the clock is set back. Methods
+ * are synchronized, so orders of different shipping companies may be delivered and returned concurrently.
+ * <p>
+ * The windows of a buyer are built from its orders the first time they are listed, so only the orders of buyers that
+ * were listed are ever read, and a memory-mapped snapshot is not hydrated as a whole. Until then, deliveries to the
+ * buyer open no window, since building them picks the delivered orders up.
+ */
+final class ReturnWindows {
+    private final NavigableSet<Window> windows;
+    private final Map<String, NavigableSet<Window>> windowsByBuyer;
+    private final Map<String, Window> windowsByOrder;
+    private final Set<String> buyers;
+    private final Function<String, Collection<Order>> ordersMade;
+
+    private record Window(LocalDateTime deadline, String orderId, String buyerId) implements Comparable<Window> {
+        @Override
+        public int compareTo(Window other) {
+            int byDeadline = deadline.compareTo(other.deadline);
+            return byDeadline != 0 ? byDeadline : orderId.compareTo(other.orderId);
+        }
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param ordersMade Orders made by a buyer, of which the delivered ones open a window
+     */
+    ReturnWindows(Function<String, Collection<Order>> ordersMade) {
+        this.windows = new TreeSet<>();
+        this.windowsByBuyer = new HashMap<>();
+        this.windowsByOrder = new HashMap<>();
+        this.buyers = new HashSet<>();
+        this.ordersMade = ordersMade;
+    }
+
+    /**
+     * Opens the return window of a delivered order, if the windows of its buyer were built.
+     *
+     * @param order Delivered order
+     */
+    synchronized void open(Order order) {
+        if (buyers.contains(order.getBuyerId())) {
+            add(order);
+        }
+    }
+
+    private void add(Order order) {
+        Window window = new Window(order.returnDeadline(), order.getId(), order.getBuyerId());
+        close(order.getId());
+        windows.add(window);
+        windowsByBuyer.computeIfAbsent(window.buyerId(), k -> new TreeSet<>()).add(window);
+        windowsByOrder.put(window.orderId(), window);
+    }
+
+    /**
+     * Closes the return window of an order, as when it is returned.
+     *
+     * @param orderId Order identification code
+     */
+    synchronized void close(String orderId) {
+        Window window = windowsByOrder.remove(orderId);
+        if (window != null) {
+            windows.remove(window);
+            remove(window);
+        }
+    }
+
+    /**
+     * Closes every window, of the buyers whose windows were built, whose deadline is before a date.
+     *
+     * @param now Current date
+     * @return Number of windows closed
+     */
+    synchronized int expire(LocalDateTime now) {
+        int expired = 0;
+        while (!windows.isEmpty() && windows.first().deadline().isBefore(now)) {
+            Window window = windows.pollFirst();
+            windowsByOrder.remove(window.orderId());
+            remove(window);
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the orders of a buyer that can still be returned, closing the expired windows first.
+     *
+     * @param buyerId Buyer identification code
+     * @param now     Current date
+     * @return Identification codes of the returnable orders, earliest deadline first
+     */
+    synchronized List<String> returnable(String buyerId, LocalDateTime now) {
+        expire(now);
+        if (buyers.add(buyerId)) {
+            for (Order order : ordersMade.apply(buyerId)) {
+                if (order.isDelivered() && !now.isAfter(order.returnDeadline())) {
+                    add(order);
+                }
+            }
+        }
+        NavigableSet<Window> buyerWindows = windowsByBuyer.get(buyerId);
+        return buyerWindows == null ? List.of() : buyerWindows.stream().map(Window::orderId).toList();
+    }
+
+    /**
+     * @return Number of open windows
+     */
+    synchronized int size() {
+        return windows.size();
+    }
+
+    private void remove(Window window) {
+        NavigableSet<Window> buyerWindows = windowsByBuyer.get(window.buyerId());
+        buyerWindows.remove(window);
+        if (buyerWindows.isEmpty()) {
+            windowsByBuyer.remove(window.buyerId());
+        }
+    }
+}
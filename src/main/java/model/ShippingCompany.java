@@ -5,8 +5,6 @@ import java.math.BigDecimal;
 import java.util.*;
 
 public class ShippingCompany implements Serializable {
-    private static long numberOfProducts = 0;
-
     private final String id;
     private final String name;
     private final Map<String, Order> orders;
@@ -16,9 +14,10 @@ public class ShippingCompany implements Serializable {
     private final BigDecimal fee;
     private BigDecimal revenue;
     private BigDecimal profitMargin;
+    private transient Map<Order.Status, NavigableSet<String>> ordersByStatus;
 
     public ShippingCompany(String name, BigDecimal baseValueSmall, BigDecimal baseValueMedium, BigDecimal baseValueBig, BigDecimal fee, BigDecimal profitMargin) {
-        this.id = nextAlphanumericId();
+        this.id = IdAllocator.SHIPPING_COMPANY.next();
         this.name = name;
         this.baseValueSmall = baseValueSmall;
         this.baseValueMedium = baseValueMedium;
@@ -29,6 +28,19 @@ public class ShippingCompany implements Serializable {
         this.profitMargin = profitMargin;
     }
 
+    ShippingCompany(String id, String name, BigDecimal baseValueSmall, BigDecimal baseValueMedium, BigDecimal baseValueBig, BigDecimal fee, BigDecimal revenue, BigDecimal profitMargin, Map<String, Order> orders) {
+        IdAllocator.SHIPPING_COMPANY.advancePast(id);
+        this.id = id;
+        this.name = name;
+        this.baseValueSmall = baseValueSmall;
+        this.baseValueMedium = baseValueMedium;
+        this.baseValueBig = baseValueBig;
+        this.fee = fee;
+        this.revenue = revenue;
+        this.orders = orders;
+        this.profitMargin = profitMargin;
+    }
+
     protected ShippingCompany(ShippingCompany other) {
         this.id = other.id;
         this.name = other.name;
@@ -59,25 +71,102 @@ public class ShippingCompany implements Serializable {
 
     public void addOrder(Order order) {
         orders.put(order.getId(), order);
+        if (ordersByStatus != null) {
+            ordersByStatus.get(order.getStatus()).add(order.getId());
+        }
         revenue = revenue.add(shippingCost(order));
     }
 
+    /**
+     * Moves an order of this shipping company to the bucket of its current status.
+     *
+     * @param order    Order whose status changed
+     * @param previous Status the order had before
+     */
+    void statusChanged(Order order, Order.Status previous) {
+        if (ordersByStatus != null && previous != order.getStatus() && ordersByStatus.get(previous).remove(order.getId())) {
+            ordersByStatus.get(order.getStatus()).add(order.getId());
+        }
+    }
+
     public List<Order> getOrders() {
         return orders.values().stream().map(Order::clone).toList();
     }
 
     public List<Order> getExpeditedOrders() {
-        return orders.values().stream().filter(Order::isExpedited).map(Order::clone).toList();
+        return getOrders(Order.Status.EXPEDITED);
     }
 
     public List<Order> getInitializedOrders() {
-        return orders.values().stream().filter(Order::isInitialized).map(Order::clone).toList();
+        return getOrders(Order.Status.INITIALIZED);
+    }
+
+    /**
+     * Returns the orders with a given status, oldest first, in time proportional to their number.
+     *
+     * @param status Order status
+     * @return Copies of the orders with the status
+     */
+    public List<Order> getOrders(Order.Status status) {
+        return ordersByStatus().get(status).stream().map(orders::get).map(Order::clone).toList();
+    }
+
+    /**
+     * Returns a page of the orders with a given status, oldest first, copying only the orders of the page.
+     *
+     * @param status Order status
+     * @param cursor Identification code of the order the page starts after, or null for the first page
+     * @param limit  Maximum orders per page
+     * @return Page of copies of the orders with the status
+     */
+    public Page<Order> getOrders(Order.Status status, String cursor, int limit) {
+        if (cursor != null && !orders.containsKey(cursor)) {
+            throw new IllegalArgumentException("Unknown cursor '" + cursor + "'.");
+        }
+        return Page.of(ordersByStatus().get(status), cursor, limit, id -> orders.get(id).clone());
+    }
+
+    /**
+     * Ids of the orders by status, sorted by creation date and then id, built from the orders on first use so loading
+     * a snapshot does not go through them.
+     */
+    private Map<Order.Status, NavigableSet<String>> ordersByStatus() {
+        if (ordersByStatus == null) {
+            Comparator<String> byCreation = Comparator.comparing((String id) -> orders.get(id).getCreationDate()).thenComparing(Comparator.naturalOrder());
+            Map<Order.Status, NavigableSet<String>> buckets = new EnumMap<>(Order.Status.class);
+            for (Order.Status status : Order.Status.values()) {
+                buckets.put(status, new TreeSet<>(byCreation));
+            }
+            orders.values().forEach(order -> buckets.get(order.getStatus()).add(order.getId()));
+            ordersByStatus = buckets;
+        }
+        return ordersByStatus;
     }
 
     public BigDecimal getRevenue() {
         return revenue;
     }
 
+    BigDecimal getBaseValueSmall() {
+        return baseValueSmall;
+    }
+
+    BigDecimal getBaseValueMedium() {
+        return baseValueMedium;
+    }
+
+    BigDecimal getBaseValueBig() {
+        return baseValueBig;
+    }
+
+    BigDecimal getFee() {
+        return fee;
+    }
+
+    Map<String, Order> orders() {
+        return orders;
+    }
+
 
     public BigDecimal shippingCost(long numberOfProducts) {
         return (numberOfProducts == 1 ? baseValueSmall : numberOfProducts < 5 ? baseValueMedium : baseValueBig).multiply(profitMargin)
@@ -85,13 +174,7 @@ public class ShippingCompany implements Serializable {
     }
 
     public BigDecimal shippingCost(Order order) {
-        return (order.getProducts()
-                .size() == 1 ? baseValueSmall : numberOfProducts < 5 ? baseValueMedium : baseValueBig).multiply(profitMargin)
-                .multiply(BigDecimal.ONE.add(fee)).multiply(BigDecimal.valueOf(0.9));
-    }
-
-    private String nextAlphanumericId() {
-        return String.format("%4s", Long.toString(numberOfProducts++, 36)).replace(' ', '0');
+        return shippingCost(order.getProducts().size());
     }
 
     @Override
@@ -141,6 +224,13 @@ public class ShippingCompany implements Serializable {
         return result;
     }
 
+    /**
+     * @return Directory entry of the shipping company
+     */
+    public ShippingCompanySummary summary() {
+        return new ShippingCompanySummary(id, name, this instanceof Premium);
+    }
+
     public ShippingCompany clone() {
         return new ShippingCompany(this);
     }
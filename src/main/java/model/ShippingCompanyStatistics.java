@@ -0,0 +1,13 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * Revenue of a shipping company in a read view.
+ *
+ * @param id      Shipping company identification code
+ * @param name    Shipping company name
+ * @param revenue Revenue of the shipping company over all time
+ */
+public record ShippingCompanyStatistics(String id, String name, BigDecimal revenue) {
+}
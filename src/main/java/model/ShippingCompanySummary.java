@@ -0,0 +1,11 @@
+package model;
+
+/**
+ * Entry of the shipping company directory, enough to pick a shipping company without copying its orders.
+ *
+ * @param id      Shipping company identification code
+ * @param name    Shipping company name
+ * @param premium Whether the shipping company handles premium products
+ */
+public record ShippingCompanySummary(String id, String name, boolean premium) {
+}
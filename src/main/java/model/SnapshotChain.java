@@ -0,0 +1,294 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Base snapshot followed by delta snapshots holding only the entities changed since the previous file of the chain.
+ * <p>
+ * The deltas of a base file {@code vintage.snapshot} are named {@code vintage.snapshot.1}, {@code vintage.snapshot.2}
+ * and so on. A delta holds the id of its base, its position in the chain, the journal sequence, the clock, the Vintage
+ * revenue and every changed catalog entry, order, shipping company and user in full; a catalog entry removed since the
+ * previous file is written as its id alone. Deltas left behind by an older base are ignored.
+ * <p>
+ * Once the deltas of a chain add up to half the size of its base, the next delta is replaced by a new base.
+ */
+public final class SnapshotChain {
+    private static final int DELTA_MAGIC = 0x564E5444; // "VNTD"
+    private static final int DELTA_VERSION = 1;
+
+    private static final byte REMOVED = 0;
+    private static final byte PRESENT = 1;
+
+    private SnapshotChain() {
+    }
+
+    /**
+     * Writes a full snapshot as the base of a new chain, drops the deltas of the previous one and starts tracking the
+     * changes for the next delta.
+     *
+     * @param base  Base snapshot file
+     * @param state System state to save
+     */
+    public static void writeBase(Path base, SystemState state) throws IOException {
+        writeBase(base, state, false);
+    }
+
+    /**
+     * @param chunked Whether to write the base in the compressed {@link ChunkedSnapshot} format
+     */
+    public static void writeBase(Path base, SystemState state, boolean chunked) throws IOException {
+        if (chunked) {
+            ChunkedSnapshot.write(base, state);
+        } else {
+            SnapshotCodec.write(base, state);
+        }
+        state.vintage().trackChanges();
+        deleteDeltas(base);
+    }
+
+    /**
+     * Writes the entities changed since the last file of a chain as a new delta. A full base is written instead when
+     * there is no base yet, when changes were not being tracked, or when the chain has grown large enough to merge.
+     *
+     * @param base  Base snapshot file
+     * @param state System state to save
+     * @return File written
+     */
+    public static Path writeDelta(Path base, SystemState state) throws IOException {
+        Vintage vintage = state.vintage();
+        ChangeSet changes = vintage.changes();
+        long baseId = Files.exists(base) ? SnapshotCodec.readSnapshotId(base) : 0;
+        if (changes == null || baseId == 0) {
+            writeBase(base, state);
+            return base;
+        }
+
+        int index = 1;
+        long chainSize = 0;
+        while (isDelta(delta(base, index), baseId, index)) {
+            chainSize += Files.size(delta(base, index));
+            index++;
+        }
+        if (chainSize > Files.size(base) / 2) {
+            writeBase(base, state, isChunked(base));
+            return base;
+        }
+
+        Path delta = delta(base, index);
+        Path temporary = delta.resolveSibling(delta.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotOutput output = new SnapshotOutput(Channels.newOutputStream(channel));
+            writeDelta(output, state, changes, baseId, index);
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, delta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        vintage.trackChanges();
+        return delta;
+    }
+
+    /**
+     * Reads a base snapshot and applies its deltas in order. Changes are tracked on the restored Vintage from then on.
+     *
+     * @param base Base snapshot file
+     * @return Restored system state
+     */
+    public static SystemState read(Path base) throws IOException {
+        SystemState state = SnapshotCodec.read(base);
+        long baseId = SnapshotCodec.readSnapshotId(base);
+        Vintage vintage = state.vintage();
+        Map<String, Product> products = vintage.products();
+        Map<String, Order> orders = vintage.orders();
+        Map<String, ShippingCompany> shippingCompanies = vintage.shippingCompanies();
+        Map<String, User> users = vintage.users();
+        Map<String, String> userIdsByEmail = vintage.userIdsByEmail();
+        Function<List<String>, Map<String, Order>> orderReferences = ids -> SnapshotCodec.resolve(ids, orders);
+        Clock clock = state.clock();
+        long sequence = state.sequence();
+        BigDecimal revenue = vintage.getRevenue();
+
+        int index = 1;
+        for (; baseId != 0 && Files.exists(delta(base, index)); index++) {
+            try (InputStream in = Files.newInputStream(delta(base, index))) {
+                SnapshotInput input = new SnapshotInput(in);
+                if (!readDeltaHeader(input, baseId, index)) {
+                    break;
+                }
+                sequence = input.readVarLong();
+                clock = SnapshotCodec.readClock(input);
+                revenue = input.readDecimal();
+
+                int productCount = input.readVarInt();
+                for (int i = 0; i < productCount; i++) {
+                    if (input.readByte() == REMOVED) {
+                        products.remove(input.readId());
+                    } else {
+                        Product product = SnapshotCodec.readProduct(input);
+                        products.put(product.getId(), product);
+                    }
+                }
+                int orderCount = input.readVarInt();
+                for (int i = 0; i < orderCount; i++) {
+                    Order order = SnapshotCodec.readOrder(input);
+                    orders.put(order.getId(), order);
+                }
+                int shippingCompanyCount = input.readVarInt();
+                for (int i = 0; i < shippingCompanyCount; i++) {
+                    ShippingCompany shippingCompany = SnapshotCodec.readShippingCompany(input, orderReferences);
+                    shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+                }
+                int userCount = input.readVarInt();
+                for (int i = 0; i < userCount; i++) {
+                    User user = SnapshotCodec.readUser(input, products, orderReferences);
+                    User replaced = users.put(user.getId(), user);
+                    if (replaced != null) {
+                        userIdsByEmail.remove(replaced.getEmail(), user.getId());
+                    }
+                    userIdsByEmail.put(user.getEmail(), user.getId());
+                }
+            }
+        }
+
+        if (index > 1) {
+            // entities left untouched by the deltas still refer to the orders they replaced
+            for (User user : users.values()) {
+                user.ordersMade().replaceAll((id, order) -> orders.get(id));
+                user.ordersReceived().replaceAll((id, order) -> orders.get(id));
+            }
+            for (ShippingCompany shippingCompany : shippingCompanies.values()) {
+                shippingCompany.orders().replaceAll((id, order) -> orders.get(id));
+            }
+        }
+        Vintage restored = new Vintage(vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), revenue, products, users, userIdsByEmail, orders, shippingCompanies);
+        restored.trackChanges();
+        return new SystemState(clock, restored, sequence);
+    }
+
+    /**
+     * Reads a chain and writes it back as a single base snapshot.
+     *
+     * @param base Base snapshot file
+     * @return Restored system state
+     */
+    public static SystemState merge(Path base) throws IOException {
+        SystemState state = read(base);
+        writeBase(base, state, isChunked(base));
+        return state;
+    }
+
+    /**
+     * Checks whether deltas follow a base snapshot, in which case only {@link #read(Path)} restores the latest state.
+     *
+     * @param base Base snapshot file
+     * @return Whether the base has deltas
+     */
+    public static boolean hasDeltas(Path base) throws IOException {
+        long baseId = SnapshotCodec.readSnapshotId(base);
+        return baseId != 0 && isDelta(delta(base, 1), baseId, 1);
+    }
+
+    /**
+     * Checks whether {@link SnapshotCodec#map(Path)} can load a base snapshot, which holds for an indexed sequential
+     * snapshot without deltas.
+     *
+     * @param base Base snapshot file
+     * @return Whether the base can be memory-mapped
+     */
+    public static boolean canMap(Path base) throws IOException {
+        return !isChunked(base) && !hasDeltas(base);
+    }
+
+    /**
+     * Deletes the deltas following a base snapshot.
+     *
+     * @param base Base snapshot file
+     */
+    static void deleteDeltas(Path base) throws IOException {
+        int index = 1;
+        while (Files.deleteIfExists(delta(base, index))) {
+            index++;
+        }
+    }
+
+    private static boolean isChunked(Path base) throws IOException {
+        return SnapshotCodec.readMagic(base) == ChunkedSnapshot.MAGIC;
+    }
+
+    static Path delta(Path base, int index) {
+        return base.resolveSibling(base.getFileName() + "." + index);
+    }
+
+    private static void writeDelta(SnapshotOutput output, SystemState state, ChangeSet changes, long baseId, int index) throws IOException {
+        Vintage vintage = state.vintage();
+        output.writeInt(DELTA_MAGIC);
+        output.writeVarInt(DELTA_VERSION);
+        output.writeLong(baseId);
+        output.writeVarInt(index);
+        output.writeVarLong(state.sequence());
+        SnapshotCodec.writeClock(output, state.clock());
+        output.writeDecimal(vintage.getRevenue());
+
+        output.writeVarInt(changes.products().size());
+        for (String id : changes.products()) {
+            Product product = vintage.products().get(id);
+            if (product == null) {
+                output.writeByte(REMOVED);
+                output.writeId(id);
+            } else {
+                output.writeByte(PRESENT);
+                SnapshotCodec.writeProduct(output, product);
+            }
+        }
+        List<Order> orders = changes.orders().stream().map(vintage.orders()::get).filter(Objects::nonNull).toList();
+        output.writeVarInt(orders.size());
+        for (Order order : orders) {
+            SnapshotCodec.writeOrder(output, order);
+        }
+        List<ShippingCompany> shippingCompanies = changes.shippingCompanies().stream().map(vintage.shippingCompanies()::get).filter(Objects::nonNull).toList();
+        output.writeVarInt(shippingCompanies.size());
+        for (ShippingCompany shippingCompany : shippingCompanies) {
+            SnapshotCodec.writeShippingCompany(output, shippingCompany);
+        }
+        List<User> users = changes.users().stream().map(vintage.users()::get).filter(Objects::nonNull).toList();
+        output.writeVarInt(users.size());
+        for (User user : users) {
+            SnapshotCodec.writeUser(output, user, vintage.products());
+        }
+    }
+
+    private static boolean isDelta(Path delta, long baseId, int index) throws IOException {
+        if (!Files.exists(delta)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(delta)) {
+            return readDeltaHeader(new SnapshotInput(in), baseId, index);
+        }
+    }
+
+    /**
+     * @return Whether the delta belongs to the given base at the given position
+     */
+    private static boolean readDeltaHeader(SnapshotInput input, long baseId, int index) throws IOException {
+        if (input.readInt() != DELTA_MAGIC) {
+            throw new IOException("Not a Vintage delta snapshot file.");
+        }
+        int version = input.readVarInt();
+        if (version != DELTA_VERSION) {
+            throw new IOException("Unsupported delta snapshot version " + version + ".");
+        }
+        return input.readLong() == baseId && input.readVarInt() == index;
+    }
+}
@@ -0,0 +1,598 @@
+package model;
+
+import java.awt.*;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Binary snapshot format for a whole system state.
+ * <p>
+ * Layout: header, journal sequence, random snapshot id, clock, Vintage settings, identification code counters,
+ * catalog products, orders (with the products they sold inline), shipping companies and users. Shipping companies and
+ * users refer to orders and catalog products by id, so every object is written once and the loader relinks the
+ * references while reading.
+ * <p>
+ * A footer with the offsets of the shipping company and user sections and of every order follows the users, and the
+ * file ends with the offset of that footer. Sequential loading ignores it; {@link #map(Path)} uses it to decode orders
+ * only when they are first read.
+ */
+public final class SnapshotCodec {
+    static final int MAGIC = 0x564E5431; // "VNT1"
+    static final int VERSION = 1;
+
+    static final byte SNEAKER = 1;
+    static final byte PREMIUM_SNEAKER = 2;
+    static final byte T_SHIRT = 3;
+    static final byte HANDBAG = 4;
+    static final byte PREMIUM_HANDBAG = 5;
+
+    static final byte SHIPPING_COMPANY = 1;
+    static final byte PREMIUM_SHIPPING_COMPANY = 2;
+
+    private static final byte CATALOG_REFERENCE = 0;
+    private static final byte INLINE_PRODUCT = 1;
+
+    private static final Order.Status[] STATUSES = Order.Status.values();
+    private static final Product.State[] STATES = Product.State.values();
+    private static final Size[] SIZES = Size.values();
+    private static final TShirt.Pattern[] PATTERNS = TShirt.Pattern.values();
+    private static final Handbag.Material[] MATERIALS = Handbag.Material.values();
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Writes a system state to a file, replacing any previous content.
+     *
+     * @param path  Destination file
+     * @param state System state to save
+     */
+    public static void write(Path path, SystemState state) throws IOException {
+        write(path, state, null);
+    }
+
+    /**
+     * Writes a system state to a file through a temporary file forced to the storage device and renamed over the
+     * destination, so a crash never leaves a partial snapshot behind.
+     *
+     * @param capture Background snapshot whose preserved entities are written instead of the live ones, or null
+     */
+    static void write(Path path, SystemState state, BackgroundSnapshot capture) throws IOException {
+        // write aside and rename, a snapshot being replaced may still be memory-mapped
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(Channels.newOutputStream(channel), state, capture);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a system state to a stream. The stream is flushed but not closed.
+     *
+     * @param out   Destination stream
+     * @param state System state to save
+     */
+    public static void write(OutputStream out, SystemState state) throws IOException {
+        write(out, state, null);
+    }
+
+    static void write(OutputStream out, SystemState state, BackgroundSnapshot capture) throws IOException {
+        SnapshotOutput output = new SnapshotOutput(out);
+        Vintage vintage = state.vintage();
+
+        output.writeInt(MAGIC);
+        output.writeVarInt(VERSION);
+        output.writeVarLong(state.sequence());
+        output.writeLong(ThreadLocalRandom.current().nextLong());
+        writeClock(output, state.clock());
+        writeSettings(output, vintage);
+        writeIdCounters(output);
+
+        output.writeVarInt(vintage.products().size());
+        for (Product product : vintage.products().values()) {
+            if (capture == null) {
+                writeProduct(output, product);
+            } else {
+                capture.write(output, product);
+            }
+        }
+        int orderCount = vintage.orders().size();
+        String[] orderIds = new String[orderCount];
+        long[] orderOffsets = new long[orderCount];
+        output.writeVarInt(orderCount);
+        int index = 0;
+        for (Order order : LazyMap.transientValues(vintage.orders())) {
+            orderIds[index] = order.getId();
+            orderOffsets[index++] = output.position();
+            if (capture == null) {
+                writeOrder(output, order);
+            } else {
+                capture.write(output, order);
+            }
+        }
+        long shippingCompaniesOffset = output.position();
+        output.writeVarInt(vintage.shippingCompanies().size());
+        for (ShippingCompany shippingCompany : vintage.shippingCompanies().values()) {
+            if (capture == null) {
+                writeShippingCompany(output, shippingCompany);
+            } else {
+                capture.write(output, shippingCompany);
+            }
+        }
+        long usersOffset = output.position();
+        output.writeVarInt(vintage.users().size());
+        for (User user : vintage.users().values()) {
+            if (capture == null) {
+                writeUser(output, user, vintage.products());
+            } else {
+                capture.write(output, user, vintage.products());
+            }
+        }
+
+        long footerOffset = output.position();
+        output.writeVarLong(shippingCompaniesOffset);
+        output.writeVarLong(usersOffset);
+        output.writeVarInt(orderCount);
+        long previous = 0;
+        for (int i = 0; i < orderCount; i++) {
+            output.writeId(orderIds[i]);
+            output.writeVarLong(orderOffsets[i] - previous);
+            previous = orderOffsets[i];
+        }
+        output.writeLong(footerOffset);
+        output.flush();
+        out.flush();
+    }
+
+    /**
+     * Reads a system state from a file, in this format or the {@link ChunkedSnapshot} one.
+     *
+     * @param path Snapshot file
+     * @return Restored system state
+     */
+    public static SystemState read(Path path) throws IOException {
+        if (readMagic(path) == ChunkedSnapshot.MAGIC) {
+            return ChunkedSnapshot.read(path);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a system state from a stream.
+     *
+     * @param in Snapshot stream
+     * @return Restored system state
+     */
+    public static SystemState read(InputStream in) throws IOException {
+        SnapshotInput input = new SnapshotInput(in);
+        readHeader(input, MAGIC);
+        long sequence = input.readVarLong();
+        input.readLong();
+        Clock clock = readClock(input);
+        BigDecimal[] settings = readSettings(input);
+        readIdCounters(input);
+
+        int productCount = input.readVarInt();
+        Map<String, Product> products = newHashMap(productCount);
+        for (int i = 0; i < productCount; i++) {
+            Product product = readProduct(input);
+            products.put(product.getId(), product);
+        }
+        int orderCount = input.readVarInt();
+        Map<String, Order> orders = new LinkedHashMap<>(capacity(orderCount));
+        for (int i = 0; i < orderCount; i++) {
+            Order order = readOrder(input);
+            orders.put(order.getId(), order);
+        }
+        int shippingCompanyCount = input.readVarInt();
+        Map<String, ShippingCompany> shippingCompanies = newHashMap(shippingCompanyCount);
+        Function<List<String>, Map<String, Order>> orderReferences = ids -> resolve(ids, orders);
+        for (int i = 0; i < shippingCompanyCount; i++) {
+            ShippingCompany shippingCompany = readShippingCompany(input, orderReferences);
+            shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+        }
+        int userCount = input.readVarInt();
+        Map<String, User> users = newHashMap(userCount);
+        Map<String, String> userIdsByEmail = newHashMap(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = readUser(input, products, orderReferences);
+            users.put(user.getId(), user);
+            userIdsByEmail.put(user.getEmail(), user.getId());
+        }
+
+        Vintage vintage = new Vintage(settings[0], settings[1], settings[2], settings[3], settings[4], products, users, userIdsByEmail, orders, shippingCompanies);
+        return new SystemState(clock, vintage, sequence);
+    }
+
+    /**
+     * Memory-maps a snapshot file and decodes only the catalog, users and shipping companies.
+     * Orders, and the products they sold, are decoded the first time they are read. The file must not be
+     * modified while the returned state is in use. Chunked snapshots are refused, as is a base followed by deltas,
+     * which mapping alone would restore to an older state; {@link SnapshotChain#read(Path)} loads both.
+     *
+     * @param path Snapshot file
+     * @return Restored system state
+     */
+    public static SystemState map(Path path) throws IOException {
+        if (readMagic(path) == ChunkedSnapshot.MAGIC) {
+            throw new IOException("Chunked snapshots cannot be memory-mapped, load it sequentially.");
+        }
+        if (SnapshotChain.hasDeltas(path)) {
+            throw new IOException("Snapshot has deltas, load it sequentially.");
+        }
+        return MappedSnapshot.load(path);
+    }
+
+    /**
+     * Reads the random id a snapshot file was written with, which delta snapshots use to refer to their base.
+     *
+     * @param path Snapshot file
+     * @return Snapshot id
+     */
+    static long readSnapshotId(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            SnapshotInput input = new SnapshotInput(in);
+            int magic = input.readInt();
+            if (magic != MAGIC && magic != ChunkedSnapshot.MAGIC) {
+                throw new IOException("Not a Vintage snapshot file.");
+            }
+            input.readVarInt();
+            input.readVarLong();
+            return input.readLong();
+        }
+    }
+
+    static int readMagic(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return new SnapshotInput(in).readInt();
+        }
+    }
+
+    static void readHeader(SnapshotInput input, int magic) throws IOException {
+        if (input.readInt() != magic) {
+            throw new IOException("Not a Vintage snapshot file.");
+        }
+        int version = input.readVarInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ".");
+        }
+    }
+
+    /**
+     * The simulation clock is stored as its zone and its offset from the system clock, rounded to the millisecond.
+     */
+    static void writeClock(SnapshotOutput output, Clock clock) throws IOException {
+        output.writeString(clock.getZone().getId());
+        output.writeSignedVarLong(Duration.between(Instant.now(), clock.instant()).plusNanos(500_000).toMillis());
+    }
+
+    static Clock readClock(SnapshotInput input) throws IOException {
+        ZoneId zone = ZoneId.of(input.readString());
+        long offset = input.readSignedVarLong();
+        Clock system = Clock.system(zone);
+        return offset == 0 ? system : Clock.offset(system, Duration.ofMillis(offset));
+    }
+
+    static void writeSettings(SnapshotOutput output, Vintage vintage) throws IOException {
+        output.writeDecimal(vintage.getBaseValueSmall());
+        output.writeDecimal(vintage.getBaseValueMedium());
+        output.writeDecimal(vintage.getBaseValueBig());
+        output.writeDecimal(vintage.getOrderFee());
+        output.writeDecimal(vintage.getRevenue());
+    }
+
+    /**
+     * @return Small, medium and big base values, order fee and revenue
+     */
+    static BigDecimal[] readSettings(SnapshotInput input) throws IOException {
+        BigDecimal[] settings = new BigDecimal[5];
+        for (int i = 0; i < settings.length; i++) {
+            settings[i] = input.readDecimal();
+        }
+        return settings;
+    }
+
+    /**
+     * Saves the identification code counters, which are at or past the code of every entity in the snapshot.
+     */
+    static void writeIdCounters(SnapshotOutput output) throws IOException {
+        IdAllocator[] allocators = IdAllocator.values();
+        output.writeVarInt(allocators.length);
+        for (IdAllocator allocator : allocators) {
+            output.writeVarLong(allocator.peek());
+        }
+    }
+
+    /**
+     * Moves the identification code counters forward to the saved ones, so new codes do not collide with loaded ones.
+     */
+    static void readIdCounters(SnapshotInput input) throws IOException {
+        IdAllocator[] allocators = IdAllocator.values();
+        int count = input.readVarInt();
+        for (int i = 0; i < count; i++) {
+            long next = input.readVarLong();
+            if (i < allocators.length) {
+                allocators[i].advanceTo(next);
+            }
+        }
+    }
+
+    static void writeProduct(SnapshotOutput output, Product product) throws IOException {
+        Class<?> type = product.getClass();
+        byte tag;
+        if (type == Sneaker.class) {
+            tag = SNEAKER;
+        } else if (type == PremiumSneaker.class) {
+            tag = PREMIUM_SNEAKER;
+        } else if (type == TShirt.class) {
+            tag = T_SHIRT;
+        } else if (type == Handbag.class) {
+            tag = HANDBAG;
+        } else if (type == PremiumHandbag.class) {
+            tag = PREMIUM_HANDBAG;
+        } else {
+            throw new IOException("Unsupported product type " + type.getName() + ".");
+        }
+
+        output.writeByte(tag);
+        output.writeId(product.getId());
+        output.writeId(product.getSellerId());
+        output.writeId(product.getShippingCompanyId());
+        output.writeString(product.getDescription());
+        output.writeString(product.getBrand());
+        output.writeDecimal(product.getBasePrice());
+        output.writeVarInt(product.getNumberOfPreviousOwners());
+        output.writeByte(product.getState().ordinal());
+
+        switch (tag) {
+            case SNEAKER, PREMIUM_SNEAKER -> {
+                Sneaker sneaker = (Sneaker) product;
+                output.writeVarInt(sneaker.getSize());
+                output.writeInt(sneaker.getColor().getRGB());
+                output.writeBoolean(sneaker.hasLaces());
+                output.writeSignedVarLong(sneaker.getCollectionYear().getValue());
+                output.writeDecimal(sneaker.getSellerPriceCorrection());
+            }
+            case T_SHIRT -> {
+                TShirt tShirt = (TShirt) product;
+                output.writeByte(tShirt.getSize().ordinal());
+                output.writeByte(tShirt.getPattern().ordinal());
+            }
+            default -> {
+                Handbag handbag = (Handbag) product;
+                output.writeDecimal(handbag.getDimension());
+                output.writeByte(handbag.getMaterial().ordinal());
+                output.writeSignedVarLong(handbag.getCollectionYear().getValue());
+                if (tag == PREMIUM_HANDBAG) {
+                    output.writeDecimal(((PremiumHandbag) handbag).getAppreciationRate());
+                }
+            }
+        }
+    }
+
+    static Product readProduct(SnapshotInput input) throws IOException {
+        byte tag = input.readByte();
+        String id = input.readId();
+        String sellerId = input.readId();
+        String shippingCompanyId = input.readId();
+        String description = input.readString();
+        String brand = input.readString();
+        BigDecimal basePrice = input.readDecimal();
+        int numberOfPreviousOwners = input.readVarInt();
+        Product.State state = STATES[input.readByte()];
+
+        switch (tag) {
+            case SNEAKER, PREMIUM_SNEAKER -> {
+                int size = input.readVarInt();
+                Color color = new Color(input.readInt(), true);
+                boolean laces = input.readBoolean();
+                Year collectionYear = Year.of((int) input.readSignedVarLong());
+                BigDecimal correction = input.readDecimal();
+                return tag == SNEAKER
+                        ? new Sneaker(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, size, color, laces, collectionYear, correction)
+                        : new PremiumSneaker(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, size, color, laces, collectionYear, correction);
+            }
+            case T_SHIRT -> {
+                Size size = SIZES[input.readByte()];
+                TShirt.Pattern pattern = PATTERNS[input.readByte()];
+                return new TShirt(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, size, pattern);
+            }
+            case HANDBAG, PREMIUM_HANDBAG -> {
+                BigDecimal dimension = input.readDecimal();
+                Handbag.Material material = MATERIALS[input.readByte()];
+                Year collectionYear = Year.of((int) input.readSignedVarLong());
+                return tag == HANDBAG
+                        ? new Handbag(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, dimension, material, collectionYear)
+                        : new PremiumHandbag(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state, dimension, material, collectionYear, input.readDecimal());
+            }
+            default -> throw new IOException("Unknown product type tag " + tag + ".");
+        }
+    }
+
+    static void writeOrder(SnapshotOutput output, Order order) throws IOException {
+        output.writeId(order.getId());
+        output.writeId(order.getBuyerId());
+        output.writeId(order.getSellerId());
+        output.writeId(order.getShippingCompanyId());
+        output.writeDateTime(order.getCreationDate());
+        output.writeByte(order.getStatus().ordinal() << 1 | (order.getDeliveryDateTime() != null ? 1 : 0));
+        if (order.getDeliveryDateTime() != null) {
+            output.writeDateTime(order.getDeliveryDateTime());
+        }
+        output.writeDecimal(order.productsCost());
+        output.writeDecimal(order.shippingCost());
+        output.writeDecimal(order.vintageFees());
+        Collection<Product> products = order.products().values();
+        output.writeVarInt(products.size());
+        for (Product product : products) {
+            writeProduct(output, product);
+        }
+    }
+
+    static Order readOrder(SnapshotInput input) throws IOException {
+        String id = input.readId();
+        String buyerId = input.readId();
+        String sellerId = input.readId();
+        String shippingCompanyId = input.readId();
+        LocalDateTime creationDate = input.readDateTime();
+        int flags = input.readByte();
+        LocalDateTime deliveryDateTime = (flags & 1) != 0 ? input.readDateTime() : null;
+        BigDecimal productsCost = input.readDecimal();
+        BigDecimal shippingCost = input.readDecimal();
+        BigDecimal vintageFees = input.readDecimal();
+        int productCount = input.readVarInt();
+        Map<String, Product> products = newHashMap(productCount);
+        for (int i = 0; i < productCount; i++) {
+            Product product = readProduct(input);
+            products.put(product.getId(), product);
+        }
+        return new Order(id, buyerId, sellerId, shippingCompanyId, products, creationDate, deliveryDateTime, productsCost, shippingCost, vintageFees, STATUSES[flags >> 1]);
+    }
+
+    static void writeShippingCompany(SnapshotOutput output, ShippingCompany shippingCompany) throws IOException {
+        boolean premium = shippingCompany instanceof PremiumShippingCompany;
+        output.writeByte(premium ? PREMIUM_SHIPPING_COMPANY : SHIPPING_COMPANY);
+        output.writeId(shippingCompany.getId());
+        output.writeString(shippingCompany.getName());
+        output.writeDecimal(shippingCompany.getBaseValueSmall());
+        output.writeDecimal(shippingCompany.getBaseValueMedium());
+        output.writeDecimal(shippingCompany.getBaseValueBig());
+        output.writeDecimal(shippingCompany.getFee());
+        output.writeDecimal(shippingCompany.getRevenue());
+        output.writeDecimal(shippingCompany.getProfitMargin());
+        if (premium) {
+            output.writeDecimal(((PremiumShippingCompany) shippingCompany).getPremiumTax());
+        }
+        writeIds(output, shippingCompany.orders().keySet());
+    }
+
+    /**
+     * @param orderReferences Builds the orders map of the shipping company from the ids of its orders
+     */
+    static ShippingCompany readShippingCompany(SnapshotInput input, Function<List<String>, Map<String, Order>> orderReferences) throws IOException {
+        byte tag = input.readByte();
+        String id = input.readId();
+        String name = input.readString();
+        BigDecimal baseValueSmall = input.readDecimal();
+        BigDecimal baseValueMedium = input.readDecimal();
+        BigDecimal baseValueBig = input.readDecimal();
+        BigDecimal fee = input.readDecimal();
+        BigDecimal revenue = input.readDecimal();
+        BigDecimal profitMargin = input.readDecimal();
+        BigDecimal premiumTax = tag == PREMIUM_SHIPPING_COMPANY ? input.readDecimal() : null;
+        Map<String, Order> shippingCompanyOrders = orderReferences.apply(readIds(input));
+        return tag == PREMIUM_SHIPPING_COMPANY
+                ? new PremiumShippingCompany(id, name, baseValueSmall, baseValueMedium, baseValueBig, fee, revenue, profitMargin, shippingCompanyOrders, premiumTax)
+                : new ShippingCompany(id, name, baseValueSmall, baseValueMedium, baseValueBig, fee, revenue, profitMargin, shippingCompanyOrders);
+    }
+
+    static void writeUser(SnapshotOutput output, User user, Map<String, Product> catalog) throws IOException {
+        output.writeId(user.getId());
+        output.writeString(user.getEmail());
+        output.writeString(user.getName());
+        output.writeString(user.getAddress());
+        output.writeString(user.getTaxNumber());
+        output.writeDecimal(user.getRevenue());
+        output.writeDecimal(user.getSpending());
+        writeProductReferences(output, user.productsSelling().values(), catalog);
+        writeIds(output, user.ordersMade().keySet());
+        writeIds(output, user.ordersReceived().keySet());
+        writeProductReferences(output, user.cart().values(), catalog);
+    }
+
+    /**
+     * @param orderReferences Builds the order maps of the user from the ids of their orders
+     */
+    static User readUser(SnapshotInput input, Map<String, Product> catalog, Function<List<String>, Map<String, Order>> orderReferences) throws IOException {
+        String id = input.readId();
+        String email = input.readString();
+        String name = input.readString();
+        String address = input.readString();
+        String taxNumber = input.readString();
+        BigDecimal revenue = input.readDecimal();
+        BigDecimal spending = input.readDecimal();
+        Map<String, Product> products = readProductReferences(input, catalog);
+        Map<String, Order> ordersMade = orderReferences.apply(readIds(input));
+        Map<String, Order> ordersReceived = orderReferences.apply(readIds(input));
+        Map<String, Product> cart = readProductReferences(input, catalog);
+        return new User(id, email, name, address, taxNumber, revenue, spending, products, ordersMade, ordersReceived, cart);
+    }
+
+    static void writeIds(SnapshotOutput output, Collection<String> ids) throws IOException {
+        output.writeVarInt(ids.size());
+        for (String id : ids) {
+            output.writeId(id);
+        }
+    }
+
+    static List<String> readIds(SnapshotInput input) throws IOException {
+        int count = input.readVarInt();
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(input.readId());
+        }
+        return ids;
+    }
+
+    static Map<String, Order> resolve(List<String> ids, Map<String, Order> orders) {
+        Map<String, Order> references = newHashMap(ids.size());
+        for (String id : ids) {
+            Order order = orders.get(id);
+            if (order != null) {
+                references.put(id, order);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Products still listed in the catalog are written as references, anything else (e.g. a cart
+     * entry that has since been sold to another user) is written inline.
+     */
+    private static void writeProductReferences(SnapshotOutput output, Collection<Product> products, Map<String, Product> catalog) throws IOException {
+        output.writeVarInt(products.size());
+        for (Product product : products) {
+            if (catalog.get(product.getId()) == product) {
+                output.writeByte(CATALOG_REFERENCE);
+                output.writeId(product.getId());
+            } else {
+                output.writeByte(INLINE_PRODUCT);
+                writeProduct(output, product);
+            }
+        }
+    }
+
+    static Map<String, Product> readProductReferences(SnapshotInput input, Map<String, Product> catalog) throws IOException {
+        int count = input.readVarInt();
+        Map<String, Product> products = newHashMap(count);
+        for (int i = 0; i < count; i++) {
+            Product product = input.readByte() == CATALOG_REFERENCE ? catalog.get(input.readId()) : readProduct(input);
+            if (product != null) {
+                products.put(product.getId(), product);
+            }
+        }
+        return products;
+    }
+
+    static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    static <V> Map<String, V> newHashMap(int size) {
+        return new HashMap<>(capacity(size));
+    }
+}
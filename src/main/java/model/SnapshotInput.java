@@ -0,0 +1,160 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary decoder matching {@link SnapshotOutput}.
+ * Reads either from a stream, refilling an internal buffer as needed, or from an in-memory byte array.
+ */
+class SnapshotInput {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String[] PADDING = {"", "0", "00", "000", "0000", "00000", "000000", "0000000", "00000000", "000000000", "0000000000", "00000000000"};
+
+    private final InputStream in;
+    protected ByteBuffer buffer;
+    private long consumed;
+
+    SnapshotInput(InputStream in) {
+        this.in = in;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+    }
+
+    SnapshotInput(byte[] bytes) {
+        this.in = null;
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    protected SnapshotInput(ByteBuffer buffer) {
+        this.in = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Makes at least one more byte available in the buffer.
+     *
+     * @return Whether more bytes are available
+     */
+    protected boolean refill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        consumed += buffer.position();
+        buffer.compact();
+        int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+        if (read > 0) {
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Number of bytes read so far.
+     *
+     * @return Current read position
+     */
+    long position() {
+        return consumed + buffer.position();
+    }
+
+    byte readByte() throws IOException {
+        if (!buffer.hasRemaining() && !refill()) {
+            throw new EOFException("Unexpected end of snapshot.");
+        }
+        return buffer.get();
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    void readBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining() && !refill()) {
+                throw new EOFException("Unexpected end of snapshot.");
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    int readInt() throws IOException {
+        if (buffer.remaining() >= 4) {
+            return buffer.getInt();
+        }
+        return ((readByte() & 0xFF) << 24) | ((readByte() & 0xFF) << 16) | ((readByte() & 0xFF) << 8) | (readByte() & 0xFF);
+    }
+
+    long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot.");
+    }
+
+    int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    long readSignedVarLong() throws IOException {
+        long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    String readString() throws IOException {
+        int length = readVarInt();
+        if (buffer.hasArray() && buffer.remaining() >= length) {
+            int position = buffer.position();
+            buffer.position(position + length);
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    String readId() throws IOException {
+        int width = readByte();
+        if (width == 0) {
+            return readString();
+        }
+        String digits = Long.toString(readVarLong(), 36);
+        return digits.length() >= width ? digits : PADDING[width - digits.length()] + digits;
+    }
+
+    BigDecimal readDecimal() throws IOException {
+        long header = readSignedVarLong();
+        int scale = (int) (header >> 1);
+        if ((header & 1) == 0) {
+            return BigDecimal.valueOf(readSignedVarLong(), scale);
+        }
+        byte[] bytes = new byte[readVarInt()];
+        readBytes(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    LocalDateTime readDateTime() throws IOException {
+        long seconds = readSignedVarLong();
+        int nanos = readVarInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
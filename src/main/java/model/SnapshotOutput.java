@@ -0,0 +1,213 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Buffered binary encoder used by the snapshot formats.
+ * Integers are written as little-endian base-128 varints, signed values zig-zag encoded.
+ * When no stream is given the bytes are kept in memory and can be retrieved with {@link #toByteArray()}.
+ */
+final class SnapshotOutput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+    private long flushed;
+
+    SnapshotOutput(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    SnapshotOutput() {
+        this(null);
+    }
+
+    /**
+     * Number of bytes written so far, including the ones still buffered.
+     *
+     * @return Current write position
+     */
+    long position() {
+        return flushed + count;
+    }
+
+    void writeByte(int b) throws IOException {
+        ensure(1);
+        buffer[count++] = (byte) b;
+    }
+
+    void writeBoolean(boolean b) throws IOException {
+        writeByte(b ? 1 : 0);
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (out != null && length > buffer.length) {
+            flush();
+            out.write(bytes, offset, length);
+            flushed += length;
+            return;
+        }
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    void writeInt(int v) throws IOException {
+        ensure(4);
+        buffer[count++] = (byte) (v >>> 24);
+        buffer[count++] = (byte) (v >>> 16);
+        buffer[count++] = (byte) (v >>> 8);
+        buffer[count++] = (byte) v;
+    }
+
+    void writeLong(long v) throws IOException {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    void writeVarLong(long v) throws IOException {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buffer[count++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[count++] = (byte) v;
+    }
+
+    void writeVarInt(int v) throws IOException {
+        writeVarLong(v & 0xFFFFFFFFL);
+    }
+
+    void writeSignedVarLong(long v) throws IOException {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    void writeString(String s) throws IOException {
+        int length = s.length();
+        ensure(length + 5);
+        int start = count;
+        count++;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                count = start;
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes);
+                return;
+            }
+            buffer[count++] = (byte) c;
+        }
+        if (length < 0x80) {
+            buffer[start] = (byte) length;
+        } else {
+            // ASCII fast path only fits a single length byte, fall back for longer strings
+            count = start;
+            writeVarInt(length);
+            writeBytes(s.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Writes an entity identifier.
+     * Identifiers generated by the model are zero padded base-36 counters, so they are stored as
+     * their width and numeric value. Anything else is stored verbatim.
+     *
+     * @param id Identifier to write
+     */
+    void writeId(String id) throws IOException {
+        int width = id.length();
+        if (width == 0 || width > 12) {
+            writeByte(0);
+            writeString(id);
+            return;
+        }
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            char c = id.charAt(i);
+            int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'z' ? c - 'a' + 10 : -1;
+            if (digit < 0) {
+                writeByte(0);
+                writeString(id);
+                return;
+            }
+            value = value * 36 + digit;
+        }
+        writeByte(width);
+        writeVarLong(value);
+    }
+
+    void writeDecimal(BigDecimal value) throws IOException {
+        BigInteger unscaled = value.unscaledValue();
+        long scale = value.scale();
+        if (unscaled.bitLength() < 63) {
+            writeSignedVarLong(scale << 1);
+            writeSignedVarLong(unscaled.longValue());
+        } else {
+            writeSignedVarLong((scale << 1) | 1);
+            byte[] bytes = unscaled.toByteArray();
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+    }
+
+    void writeDateTime(LocalDateTime dateTime) throws IOException {
+        writeSignedVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        writeVarInt(dateTime.getNano());
+    }
+
+    void flush() throws IOException {
+        if (out != null && count > 0) {
+            out.write(buffer, 0, count);
+            flushed += count;
+            count = 0;
+        }
+    }
+
+    /**
+     * Discards the buffered bytes of an in-memory output so it can be reused.
+     */
+    void reset() {
+        count = 0;
+        flushed = 0;
+    }
+
+    /**
+     * Backing array of an in-memory output, valid up to {@link #position()}.
+     *
+     * @return Internal buffer
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private void ensure(int length) throws IOException {
+        if (count + length <= buffer.length) {
+            return;
+        }
+        if (out != null) {
+            flush();
+            if (length <= buffer.length) {
+                return;
+            }
+        }
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+    }
+}
@@ -4,6 +4,7 @@ import java.awt.*;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.Year;
+import java.util.Map;
 
 /**
  * Sneaker class
@@ -40,6 +41,15 @@ public class Sneaker extends Product implements Serializable {
         this.sellerPriceCorrection = discount;
     }
 
+    Sneaker(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state, int size, Color color, boolean laces, Year collectionYear, BigDecimal discount) {
+        super(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state);
+        this.size = size;
+        this.color = color;
+        this.laces = laces;
+        this.collectionYear = collectionYear;
+        this.sellerPriceCorrection = discount;
+    }
+
     public int getSize() {
         return size;
     }
@@ -70,6 +80,14 @@ public class Sneaker extends Product implements Serializable {
         return isUsed() || size > 45 ? BigDecimal.ONE.subtract(sellerPriceCorrection) : BigDecimal.ONE;
     }
 
+    @Override
+    Map<ProductFacet, String> facets() {
+        Map<ProductFacet, String> facets = super.facets();
+        facets.put(ProductFacet.SNEAKER_SIZE, String.valueOf(size));
+        facets.put(ProductFacet.COLLECTION_YEAR, collectionYear.toString());
+        return facets;
+    }
+
     @Override
     public String show() {
         return "Sneaker, " + super.show() + ", Size: " + size + ", Color: " + String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue()) + ", " + (laces ? "has" : "no") + " laces, Collection year: " + collectionYear;
@@ -0,0 +1,55 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by identification codes, each code guarded by the lock its hash falls on.
+ * <p>
+ * Unrelated codes may share a lock, which only costs some parallelism. Several codes are locked in ascending lock
+ * order, so two threads locking overlapping sets of codes of the same stripes never wait on each other in a cycle.
+ */
+final class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param stripes Number of locks, a power of two
+     */
+    StripedLocks(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("The number of stripes must be a power of two.");
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return Distinct locks guarding the codes, in the order they must be taken
+     */
+    int[] stripes(Collection<String> ids) {
+        int[] stripes = new int[ids.size()];
+        int count = 0;
+        for (String id : ids) {
+            int hash = id.hashCode();
+            stripes[count++] = (hash ^ (hash >>> 16)) & (locks.length - 1);
+        }
+        return Arrays.stream(stripes).distinct().sorted().toArray();
+    }
+
+    void lock(int[] stripes) {
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+    }
+
+    void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package model;
+
+import java.time.Clock;
+
+/**
+ * Simulation clock and marketplace saved and restored together.
+ *
+ * @param clock    Simulation clock
+ * @param vintage  Marketplace state
+ * @param sequence Sequence number of the last journal record included in this state
+ */
+public record SystemState(Clock clock, Vintage vintage, long sequence) {
+    public SystemState(Clock clock, Vintage vintage) {
+        this(clock, vintage, 0);
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Map;
 
 /**
  * TShirt class
@@ -29,6 +30,12 @@ public class TShirt extends Product implements Serializable {
         this.pattern = pattern;
     }
 
+    TShirt(String id, String sellerId, String shippingCompanyId, String description, String brand, BigDecimal basePrice, int numberOfPreviousOwners, State state, Size size, Pattern pattern) {
+        super(id, sellerId, shippingCompanyId, description, brand, basePrice, numberOfPreviousOwners, state);
+        this.size = size;
+        this.pattern = pattern;
+    }
+
     public Size getSize() {
         return size;
     }
@@ -46,6 +53,14 @@ public class TShirt extends Product implements Serializable {
         return isUsed() ? pattern.getValue() : BigDecimal.ONE;
     }
 
+    @Override
+    Map<ProductFacet, String> facets() {
+        Map<ProductFacet, String> facets = super.facets();
+        facets.put(ProductFacet.TSHIRT_SIZE, size.name());
+        facets.put(ProductFacet.PATTERN, pattern.name());
+        return facets;
+    }
+
     @Override
     public String show() {
         return "T-Shirt, " + super.show() + ", " + getPattern();
@@ -0,0 +1,219 @@
+package model;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Trigram inverted index over the brand and description of the products on sale.
+ * <p>
+ * Text is lowercased, stripped of accents and split into words, and every word padded with a space on each side is
+ * cut into trigrams, so {@code nike} gives {@code " ni"}, {@code nik}, {@code ike} and {@code "ke "}. Products are
+ * numbered in the order they are added, and the posting list of a trigram holds the gaps between the numbers of the
+ * products that have it, each written as a variable-length integer, which takes one or two bytes per entry for most
+ * trigrams.
+ * <p>
+ * A search scores each product by the number of distinct query trigrams it has and keeps the products with at least
+ * half of them, most trigrams first and, among equal scores, the most recently added first. Prefixes and misspellings
+ * still share most of their trigrams with the words they stand for. Removed products are marked and skipped, and the
+ * index is rebuilt from the remaining ones once they are outnumbered by the removed ones.
+ */
+final class TextIndex {
+    private static final int MAX_QUERY_TRIGRAMS = 255;
+
+    private final Map<Long, Postings> postings;
+    private final List<String> productIds;
+    private final Map<String, Integer> numbers;
+    private final BitSet removed;
+    private int removedCount;
+
+    /**
+     * Posting list of a trigram.
+     */
+    private static final class Postings {
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int last = -1;
+
+        void add(int number) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            // number - last is at least one, so the first entry stores its number plus one
+            int gap = number - last;
+            while ((gap & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            last = number;
+        }
+
+        void forEach(IntConsumer action) {
+            int number = -1;
+            for (int i = 0; i < length; ) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[i++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                number += gap;
+                action.accept(number);
+            }
+        }
+    }
+
+    TextIndex() {
+        this.postings = new HashMap<>();
+        this.productIds = new ArrayList<>();
+        this.numbers = new HashMap<>();
+        this.removed = new BitSet();
+    }
+
+    /**
+     * Indexes the brand and description of a product, replacing any earlier entry for its identification code.
+     *
+     * @param product Product to index
+     */
+    void add(Product product) {
+        remove(product.getId());
+        int number = productIds.size();
+        productIds.add(product.getId());
+        numbers.put(product.getId(), number);
+        for (long trigram : trigrams(product.getBrand() + " " + product.getDescription())) {
+            postings.computeIfAbsent(trigram, k -> new Postings()).add(number);
+        }
+    }
+
+    /**
+     * Removes a product from the results.
+     *
+     * @param productId Product identification code
+     */
+    void remove(String productId) {
+        Integer number = numbers.remove(productId);
+        if (number == null) {
+            return;
+        }
+        removed.set(number);
+        removedCount++;
+        if (removedCount > numbers.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Finds the products whose text best matches a query.
+     *
+     * @param text   Query text
+     * @param accept Test a matching product must pass to be returned, given its identification code
+     * @param limit  Maximum number of products
+     * @return Identification codes of the best matching products, best match first
+     */
+    List<String> search(String text, Predicate<String> accept, int limit) {
+        Set<Long> trigrams = trigrams(text);
+        if (trigrams.isEmpty()) {
+            return List.of();
+        }
+        if (trigrams.size() > MAX_QUERY_TRIGRAMS) {
+            trigrams = new HashSet<>(new ArrayList<>(trigrams).subList(0, MAX_QUERY_TRIGRAMS));
+        }
+        byte[] scores = new byte[productIds.size()];
+        for (long trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list != null) {
+                list.forEach(number -> scores[number]++);
+            }
+        }
+
+        // counting sort of the qualifying products by score, walking the numbers down so each score lists newest first
+        int minimum = (trigrams.size() + 1) / 2;
+        int[] starts = new int[trigrams.size() + 2];
+        for (int number = 0; number < scores.length; number++) {
+            int score = scores[number] & 0xFF;
+            if (score >= minimum && !removed.get(number)) {
+                starts[trigrams.size() - score + 1]++;
+            }
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] ranked = new int[starts[starts.length - 1]];
+        for (int number = scores.length - 1; number >= 0; number--) {
+            int score = scores[number] & 0xFF;
+            if (score >= minimum && !removed.get(number)) {
+                ranked[starts[trigrams.size() - score]++] = number;
+            }
+        }
+        List<String> results = new ArrayList<>(Math.min(limit, ranked.length));
+        for (int i = 0; i < ranked.length && results.size() < limit; i++) {
+            String productId = productIds.get(ranked[i]);
+            if (accept.test(productId)) {
+                results.add(productId);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Renumbers the remaining products and rebuilds the posting lists without the removed ones.
+     */
+    private void compact() {
+        Map<Long, Postings> rebuilt = new HashMap<>();
+        List<String> remaining = new ArrayList<>(numbers.size());
+        int[] renumbered = new int[productIds.size()];
+        for (int number = 0; number < productIds.size(); number++) {
+            if (!removed.get(number)) {
+                renumbered[number] = remaining.size();
+                numbers.put(productIds.get(number), remaining.size());
+                remaining.add(productIds.get(number));
+            }
+        }
+        postings.forEach((trigram, list) -> {
+            Postings compacted = new Postings();
+            list.forEach(number -> {
+                if (!removed.get(number)) {
+                    compacted.add(renumbered[number]);
+                }
+            });
+            if (compacted.length > 0) {
+                rebuilt.put(trigram, compacted);
+            }
+        });
+        postings.clear();
+        postings.putAll(rebuilt);
+        productIds.clear();
+        productIds.addAll(remaining);
+        removed.clear();
+        removedCount = 0;
+    }
+
+    /**
+     * @return Distinct trigrams of the words of a text, each packed in the low 48 bits of a long
+     */
+    static Set<Long> trigrams(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        Set<Long> trigrams = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder(" ");
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 1) {
+                word.append(' ');
+                for (int j = 0; j + 3 <= word.length(); j++) {
+                    trigrams.add((long) word.charAt(j) << 32 | (long) word.charAt(j + 1) << 16 | word.charAt(j + 2));
+                }
+                word.setLength(1);
+            }
+        }
+        return trigrams;
+    }
+}
@@ -8,8 +8,6 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class User implements Serializable {
-    private static long numberOfUsers = 0;
-
     private final String id;
     private final String taxNumber;
     private final String name;
@@ -21,9 +19,11 @@ public class User implements Serializable {
     private String address;
     private BigDecimal revenue;
     private BigDecimal spending;
+    private transient OrderTimeline ordersMadeTimeline;
+    private transient OrderTimeline ordersReceivedTimeline;
 
     public User(String email, String name, String address, String taxNumber) {
-        this.id = nextAlphanumericId();
+        this.id = IdAllocator.USER.next();
         this.email = email;
         this.name = name;
         this.address = address;
@@ -36,6 +36,21 @@ public class User implements Serializable {
         this.spending = BigDecimal.ZERO;
     }
 
+    User(String id, String email, String name, String address, String taxNumber, BigDecimal revenue, BigDecimal spending, Map<String, Product> products, Map<String, Order> ordersMade, Map<String, Order> ordersReceived, Map<String, Product> cart) {
+        IdAllocator.USER.advancePast(id);
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.address = address;
+        this.taxNumber = taxNumber;
+        this.products = products;
+        this.ordersMade = ordersMade;
+        this.ordersReceived = ordersReceived;
+        this.cart = cart;
+        this.revenue = revenue;
+        this.spending = spending;
+    }
+
     private User(User other) {
         this.id = other.id;
         this.taxNumber = other.taxNumber;
@@ -116,6 +131,9 @@ public class User implements Serializable {
 
     public void addOrderMade(Order order) {
         ordersMade.put(order.getId(), order);
+        if (ordersMadeTimeline != null) {
+            ordersMadeTimeline.add(order);
+        }
         spending = spending.add(order.productsCost());
     }
 
@@ -125,6 +143,9 @@ public class User implements Serializable {
 
     public void addOrderReceived(Order order) {
         ordersReceived.put(order.getId(), order);
+        if (ordersReceivedTimeline != null) {
+            ordersReceivedTimeline.add(order);
+        }
         order.getProducts().stream().map(Product::getId).forEach(products.keySet()::remove);
         revenue = revenue.add(order.productsCost());
     }
@@ -153,6 +174,42 @@ public class User implements Serializable {
         return ordersReceived.values().stream().map(Order::clone).toList();
     }
 
+    /**
+     * Returns a page of the orders made, oldest first, copying only the orders of the page.
+     *
+     * @param cursor Identification code of the order the page starts after, or null for the first page
+     * @param limit  Maximum orders per page
+     * @return Page of copies of the orders made
+     */
+    public Page<Order> getOrdersMade(String cursor, int limit) {
+        return page(ordersMade, ordersMadeTimeline(), cursor, limit);
+    }
+
+    /**
+     * Returns a page of the orders received, oldest first, copying only the orders of the page.
+     *
+     * @param cursor Identification code of the order the page starts after, or null for the first page
+     * @param limit  Maximum orders per page
+     * @return Page of copies of the orders received
+     */
+    public Page<Order> getOrdersReceived(String cursor, int limit) {
+        return page(ordersReceived, ordersReceivedTimeline(), cursor, limit);
+    }
+
+    private static Page<Order> page(Map<String, Order> orders, OrderTimeline timeline, String cursor, int limit) {
+        Page.checkLimit(limit);
+        Order after = null;
+        if (cursor != null) {
+            after = orders.get(cursor);
+            if (after == null) {
+                throw new IllegalArgumentException("Unknown cursor '" + cursor + "'.");
+            }
+        }
+        List<String> ids = timeline.idsAfter(after, limit + 1);
+        List<Order> items = ids.stream().limit(limit).map(orders::get).map(Order::clone).toList();
+        return new Page<>(items, ids.size() > limit ? ids.get(limit - 1) : null);
+    }
+
     public void removeProductSelling(String productCode) {
         products.remove(productCode);
     }
@@ -174,11 +231,7 @@ public class User implements Serializable {
     }
 
     public BigDecimal getRevenue(LocalDateTime from, LocalDateTime to) {
-        return ordersReceived.values()
-                .stream()
-                .filter(order -> order.getCreationDate().isAfter(from) && order.getCreationDate().isBefore(to))
-                .map(Order::sellerRevenue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return ordersReceivedTimeline().sum(from, to);
     }
 
     public BigDecimal getSpending() {
@@ -187,27 +240,57 @@ public class User implements Serializable {
     }
 
     public BigDecimal getSpending(LocalDateTime from, LocalDateTime to) {
-        return ordersMade.values()
-                .stream()
-                .filter(order -> order.getCreationDate().isAfter(from) && order.getCreationDate().isBefore(to))
-                .map(Order::sellerRevenue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return ordersMadeTimeline().sum(from, to);
+    }
+
+    private OrderTimeline ordersMadeTimeline() {
+        if (ordersMadeTimeline == null) {
+            ordersMadeTimeline = new OrderTimeline(ordersMade.values());
+        }
+        return ordersMadeTimeline;
+    }
+
+    private OrderTimeline ordersReceivedTimeline() {
+        if (ordersReceivedTimeline == null) {
+            ordersReceivedTimeline = new OrderTimeline(ordersReceived.values());
+        }
+        return ordersReceivedTimeline;
     }
 
     public void orderMadeReturned(String orderId) {
-        spending = spending.subtract(ordersMade.get(orderId).totalCost());
+        Order order = ordersMade.get(orderId);
+        spending = spending.subtract(order.totalCost());
+        if (ordersMadeTimeline != null) {
+            ordersMadeTimeline.correct(order, order.productsCost().negate());
+        }
     }
 
     public void orderReceivedReturned(String orderId) {
-        revenue = revenue.subtract(ordersReceived.get(orderId).productsCost());
+        Order order = ordersReceived.get(orderId);
+        revenue = revenue.subtract(order.productsCost());
+        if (ordersReceivedTimeline != null) {
+            ordersReceivedTimeline.correct(order, order.productsCost().negate());
+        }
     }
 
-    public List<Order> getReturnableOrders() {
-        return ordersMade.values().stream().filter(Order::isReturnable).map(Order::clone).toList();
+    Map<String, Product> productsSelling() {
+        return products;
+    }
+
+    Map<String, Order> ordersMade() {
+        return ordersMade;
     }
 
-    private String nextAlphanumericId() {
-        return String.format("%6s", Long.toString(numberOfUsers++, 36)).replace(' ', '0');
+    Map<String, Order> ordersReceived() {
+        return ordersReceived;
+    }
+
+    Map<String, Product> cart() {
+        return cart;
+    }
+
+    public List<Order> getReturnableOrders() {
+        return ordersMade.values().stream().filter(Order::isReturnable).map(Order::clone).toList();
     }
 
     @Override
@@ -0,0 +1,15 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts of a user in a read view, without the orders and products a copy of the user would carry.
+ *
+ * @param id       User identification code
+ * @param name     User name
+ * @param email    User email
+ * @param revenue  Revenue of the user as a seller, over all time or over the interval asked for
+ * @param spending Spending of the user as a buyer, over all time or over the interval asked for
+ */
+public record UserStatistics(String id, String name, String email, BigDecimal revenue, BigDecimal spending) {
+}
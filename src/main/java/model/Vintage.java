@@ -1,23 +1,44 @@
 package model;
 
+import exceptions.DuplicateEmailException;
+import exceptions.DuplicateShippingCompanyNameException;
 import exceptions.ProductInCartUnavailable;
+import exceptions.SnapshotInProgressException;
+import util.TimeSimulation;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Vintage implements Serializable {
     private final BigDecimal baseValueSmall;
     private final BigDecimal baseValueMedium;
     private final BigDecimal baseValueBig;
     private final BigDecimal orderFee;
-    private final Map<String, Product> products;
-    private final Map<String, User> users;
-    private final Map<String, Order> orders;
-    private final Map<String, ShippingCompany> shippingCompanies;
+    private Map<String, Product> products;
+    private Map<String, User> users;
+    private Map<String, String> userIdsByEmail;
+    private Map<String, Order> orders;
+    private Map<String, ShippingCompany> shippingCompanies;
     private BigDecimal revenue;
+    private transient Journal journal;
+    private transient volatile BackgroundSnapshot snapshot;
+    private transient ChangeSet changes;
+    private transient ReadView view;
+    private transient ChangeSet unpublished;
+    private transient Leaderboard sellerLeaderboard;
+    private transient Leaderboard buyerLeaderboard;
+    private transient ProductCatalog catalog;
+    private transient ReturnWindows returnWindows;
+    private transient Map<String, String> shippingCompanyIdsByName;
 
     public Vintage(BigDecimal baseValueSmall, BigDecimal baseValueMedium, BigDecimal baseValueBig, BigDecimal orderFee) {
         this.baseValueSmall = baseValueSmall;
@@ -26,6 +47,7 @@ public class Vintage implements Serializable {
         this.orderFee = orderFee;
         this.products = new HashMap<>();
         this.users = new HashMap<>();
+        this.userIdsByEmail = new HashMap<>();
         this.orders = new LinkedHashMap<>();
         this.shippingCompanies = new HashMap<>();
         this.revenue = BigDecimal.ZERO;
@@ -38,43 +60,159 @@ public class Vintage implements Serializable {
         this.orderFee = new BigDecimal(orderFee);
         this.products = new HashMap<>();
         this.users = new HashMap<>();
+        this.userIdsByEmail = new HashMap<>();
         this.orders = new LinkedHashMap<>();
         this.shippingCompanies = new HashMap<>();
         this.revenue = BigDecimal.ZERO;
     }
 
-    public void registerUser(String email, String name, String address, String taxNumber) {
-        User user = new User(email, name, address, taxNumber);
+    /**
+     * Parameterized constructor over existing maps.
+     *
+     * @param userIdsByEmail Identification code of every user by email, filled in as the users were read
+     */
+    Vintage(BigDecimal baseValueSmall, BigDecimal baseValueMedium, BigDecimal baseValueBig, BigDecimal orderFee, BigDecimal revenue, Map<String, Product> products, Map<String, User> users, Map<String, String> userIdsByEmail, Map<String, Order> orders, Map<String, ShippingCompany> shippingCompanies) {
+        this.baseValueSmall = baseValueSmall;
+        this.baseValueMedium = baseValueMedium;
+        this.baseValueBig = baseValueBig;
+        this.orderFee = orderFee;
+        this.products = products;
+        this.users = users;
+        this.userIdsByEmail = userIdsByEmail;
+        this.orders = orders;
+        this.shippingCompanies = shippingCompanies;
+        this.revenue = revenue;
+    }
+
+    public void registerUser(String email, String name, String address, String taxNumber) throws DuplicateEmailException {
+        register(new User(email, name, address, taxNumber));
+    }
+
+    void register(User user) throws DuplicateEmailException {
+        if (userIdsByEmail.containsKey(user.getEmail())) {
+            throw new DuplicateEmailException("Email '" + user.getEmail() + "' is already registered.");
+        }
+        changing(user);
         users.put(user.getId(), user);
+        userIdsByEmail.put(user.getEmail(), user.getId());
+        if (journal != null) {
+            journal.registerUser(user);
+        }
     }
 
-    public void registerShippingCompany(String name, BigDecimal profitMargin) {
-        ShippingCompany newShippingCompany = new ShippingCompany(name, baseValueSmall, baseValueMedium, baseValueBig, orderFee, profitMargin);
-        shippingCompanies.put(newShippingCompany.getId(), newShippingCompany);
+    public void registerShippingCompany(String name, BigDecimal profitMargin) throws DuplicateShippingCompanyNameException {
+        register(new ShippingCompany(name, baseValueSmall, baseValueMedium, baseValueBig, orderFee, profitMargin));
     }
 
-    public void registerPremiumShippingCompany(String name, BigDecimal profitMargin, BigDecimal premiumTax) {
-        ShippingCompany newShippingCompany = new PremiumShippingCompany(name, baseValueSmall, baseValueMedium, baseValueBig, orderFee, profitMargin, premiumTax);
-        shippingCompanies.put(newShippingCompany.getId(), newShippingCompany);
+    public void registerPremiumShippingCompany(String name, BigDecimal profitMargin, BigDecimal premiumTax) throws DuplicateShippingCompanyNameException {
+        register(new PremiumShippingCompany(name, baseValueSmall, baseValueMedium, baseValueBig, orderFee, profitMargin, premiumTax));
+    }
+
+    void register(ShippingCompany shippingCompany) throws DuplicateShippingCompanyNameException {
+        if (shippingCompanyIdsByName().containsKey(shippingCompany.getName())) {
+            throw new DuplicateShippingCompanyNameException("Shipping company '" + shippingCompany.getName() + "' is already registered.");
+        }
+        changing(shippingCompany);
+        shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+        shippingCompanyIdsByName.put(shippingCompany.getName(), shippingCompany.getId());
+        if (journal != null) {
+            journal.registerShippingCompany(shippingCompany);
+        }
     }
 
     public void publishProduct(String userId, Product product) {
-        products.put(product.getId(), product);
+        changingCatalog(product.getId());
+        catalogPut(product);
         users.computeIfPresent(userId, (k, v) -> {
+            changing(v);
             v.addProductSelling(product);
             return v;
         });
+        if (journal != null) {
+            journal.publishProduct(userId, product);
+        }
+    }
+
+    /**
+     * Adds a batch of users, shipping companies and products, as registering and publishing each of them would.
+     * Every seller must either be registered already or be part of the batch.
+     *
+     * @param newUsers             Users to register
+     * @param newShippingCompanies Shipping companies to register
+     * @param newProducts          Products to publish on behalf of their sellers
+     */
+    void importBatch(List<User> newUsers, List<ShippingCompany> newShippingCompanies, List<Product> newProducts) throws DuplicateEmailException, DuplicateShippingCompanyNameException {
+        Set<String> emails = new HashSet<>();
+        for (User user : newUsers) {
+            if (userIdsByEmail.containsKey(user.getEmail()) || !emails.add(user.getEmail())) {
+                throw new DuplicateEmailException("Email '" + user.getEmail() + "' is already registered.");
+            }
+        }
+        Set<String> names = new HashSet<>();
+        for (ShippingCompany shippingCompany : newShippingCompanies) {
+            if (shippingCompanyIdsByName().containsKey(shippingCompany.getName()) || !names.add(shippingCompany.getName())) {
+                throw new DuplicateShippingCompanyNameException("Shipping company '" + shippingCompany.getName() + "' is already registered.");
+            }
+        }
+        for (User user : newUsers) {
+            changing(user);
+            users.put(user.getId(), user);
+            userIdsByEmail.put(user.getEmail(), user.getId());
+        }
+        for (ShippingCompany shippingCompany : newShippingCompanies) {
+            changing(shippingCompany);
+            shippingCompanies.put(shippingCompany.getId(), shippingCompany);
+            shippingCompanyIdsByName.put(shippingCompany.getName(), shippingCompany.getId());
+        }
+        Map<String, List<Product>> productsBySeller = new HashMap<>();
+        for (Product product : newProducts) {
+            changingCatalog(product.getId());
+            catalogPut(product);
+            productsBySeller.computeIfAbsent(product.getSellerId(), k -> new ArrayList<>()).add(product);
+        }
+        productsBySeller.forEach((sellerId, published) -> {
+            User seller = users.get(sellerId);
+            changing(seller);
+            seller.addProductsSelling(published);
+        });
+        if (journal != null) {
+            newUsers.forEach(journal::registerUser);
+            newShippingCompanies.forEach(journal::registerShippingCompany);
+            newProducts.forEach(product -> journal.publishProduct(product.getSellerId(), product));
+        }
     }
 
     public void addProductToUserCart(String userId, String productId) {
         if (users.containsKey(userId) && products.containsKey(productId)) {
+            changing(users.get(userId));
             users.get(userId).addProductToCart(products.get(productId));
+            if (journal != null) {
+                journal.addProductToUserCart(userId, productId);
+            }
+        }
+    }
+
+    /**
+     * Removes products from the cart of a user whether they are still on sale or not, as a failed checkout does.
+     *
+     * @param userId     User identification code
+     * @param productIds Identification codes of the products to remove
+     */
+    void pruneUserCart(String userId, List<String> productIds) {
+        User user = users.get(userId);
+        if (user != null) {
+            changing(user);
+            productIds.forEach(user::removeProductFromCart);
         }
     }
 
     public void removeProductFromUserCart(String userId, String productId) {
         if (users.containsKey(userId) && products.containsKey(productId)) {
+            changing(users.get(userId));
             users.get(userId).removeProductFromCart(products.get(productId));
+            if (journal != null) {
+                journal.removeProductFromUserCart(userId, productId);
+            }
         }
     }
 
@@ -82,12 +220,127 @@ public class Vintage implements Serializable {
         return products.values().stream().toList();
     }
 
+    /**
+     * Returns a page of the products on sale, in publication order.
+     *
+     * @param cursor Identification code of the product the page starts after, or null for the first page
+     * @param limit  Maximum products per page
+     * @return Page of the products on sale
+     */
+    public Page<Product> getProducts(String cursor, int limit) {
+        return searchProducts(ProductQuery.all(limit).sortedBy(ProductQuery.Sort.OLDEST).after(cursor));
+    }
+
+    /**
+     * Searches the products on sale.
+     *
+     * @param query Product search
+     * @return Page of the matching products
+     */
+    public Page<Product> searchProducts(ProductQuery query) {
+        return catalog().search(query);
+    }
+
+    /**
+     * Counts the products on sale matching a search, by facet value.
+     *
+     * @param query Product search, whose cursor is ignored
+     * @return Matching products and facet value counts
+     */
+    public FacetCounts countProducts(ProductQuery query) {
+        return catalog().count(query);
+    }
+
+    /**
+     * Finds the products on sale whose brand and description best match a free text, such as {@code "nike air"}.
+     * Products sharing more trigrams with the text come first, and partial or slightly misspelled words still match.
+     *
+     * @param text  Text to look for
+     * @param query Filters, price bounds, excluded seller and maximum number of results; its sort and cursor are ignored
+     * @return Matching products, best match first
+     */
+    public List<Product> searchText(String text, ProductQuery query) {
+        return catalog().searchText(text, query);
+    }
+
+    /**
+     * Builds the catalog indexes on first use; publishing and checkouts keep them up to date afterwards.
+     */
+    private ProductCatalog catalog() {
+        if (catalog == null) {
+            catalog = new ProductCatalog(products);
+        }
+        return catalog;
+    }
+
+    private void catalogPut(Product product) {
+        Product replaced = products.put(product.getId(), product);
+        if (catalog != null) {
+            if (replaced != null) {
+                catalog.remove(replaced);
+            }
+            catalog.add(product);
+        }
+    }
+
     public List<ShippingCompany> getShippingCompanies() {
         return shippingCompanies.values().stream().map(ShippingCompany::clone).toList();
     }
 
+    /**
+     * Returns a page of the shipping companies in identification code order, copying only the companies of the page.
+     *
+     * @param cursor Identification code of the shipping company the page starts after, or null for the first page
+     * @param limit  Maximum shipping companies per page
+     * @return Page of copies of the shipping companies
+     */
+    public Page<ShippingCompany> getShippingCompanies(String cursor, int limit) {
+        return Page.scan(shippingCompanies, cursor, limit, ShippingCompany::clone);
+    }
+
+    /**
+     * @return Directory entries of every shipping company, in no particular order
+     */
+    public List<ShippingCompanySummary> getShippingCompanySummaries() {
+        return shippingCompanies.values().stream().map(ShippingCompany::summary).toList();
+    }
+
+    /**
+     * Returns a page of the shipping company directory in identification code order, without copying any orders.
+     *
+     * @param cursor Identification code of the shipping company the page starts after, or null for the first page
+     * @param limit  Maximum shipping companies per page
+     * @return Page of directory entries
+     */
+    public Page<ShippingCompanySummary> getShippingCompanySummaries(String cursor, int limit) {
+        return Page.scan(shippingCompanies, cursor, limit, ShippingCompany::summary);
+    }
+
     public Optional<String> getUserIdByEmail(String email) {
-        return users.values().stream().filter(user -> user.getEmail().equals(email)).findFirst().map(User::getId);
+        return Optional.ofNullable(userIdsByEmail.get(email));
+    }
+
+    /**
+     * Changes the email of a user, keeping the email index in sync.
+     *
+     * @param userId User identification code
+     * @param email  New email
+     */
+    public void setUserEmail(String userId, String email) throws DuplicateEmailException {
+        User user = users.get(userId);
+        if (user == null || user.getEmail().equals(email)) {
+            return;
+        }
+        if (userIdsByEmail.containsKey(email)) {
+            throw new DuplicateEmailException("Email '" + email + "' is already registered.");
+        }
+        changing(user);
+        userIdsByEmail.remove(user.getEmail());
+        user.setEmail(email);
+        userIdsByEmail.put(email, userId);
+        if (journal != null) {
+            journal.setUserEmail(userId, email);
+        }
     }
 
     public Optional<User> getUser(String userId) {
@@ -95,11 +348,21 @@ public class Vintage implements Serializable {
     }
 
     public Optional<String> getShippingCompanyIdByName(String name) {
-        return shippingCompanies.values()
-                .stream()
-                .filter(shippingCompany -> shippingCompany.getName().equals(name))
-                .findFirst()
-                .map(ShippingCompany::getId);
+        return Optional.ofNullable(shippingCompanyIdsByName().get(name));
+    }
+
+    /**
+     * Builds the name index on first use; registering keeps it up to date afterwards. States saved before names were
+     * unique may hold several shipping companies with the same name, in which case the earliest registered one keeps
+     * it, as its identification code comes first.
+     */
+    private Map<String, String> shippingCompanyIdsByName() {
+        if (shippingCompanyIdsByName == null) {
+            shippingCompanyIdsByName = new ConcurrentHashMap<>();
+            shippingCompanies.values().forEach(shippingCompany -> shippingCompanyIdsByName.merge(shippingCompany.getName(), shippingCompany.getId(),
+                    (first, second) -> first.compareTo(second) <= 0 ? first : second));
+        }
+        return shippingCompanyIdsByName;
     }
 
     public List<Order> getShippingCompanyInitializedOrders(String shippingCompanyId) {
@@ -110,66 +373,182 @@ public class Vintage implements Serializable {
         return shippingCompanies.get(shippingCompanyId).getExpeditedOrders();
     }
 
+    public Page<Order> getShippingCompanyInitializedOrders(String shippingCompanyId, String cursor, int limit) {
+        return shippingCompanies.get(shippingCompanyId).getOrders(Order.Status.INITIALIZED, cursor, limit);
+    }
+
+    public Page<Order> getShippingCompanyExpeditedOrders(String shippingCompanyId, String cursor, int limit) {
+        return shippingCompanies.get(shippingCompanyId).getOrders(Order.Status.EXPEDITED, cursor, limit);
+    }
+
     public void setShippingCompanyProfitMargin(String shippingCompanyId, BigDecimal profitMargin) {
+        changing(shippingCompanies.get(shippingCompanyId));
         shippingCompanies.get(shippingCompanyId).setProfitMargin(profitMargin);
+        if (journal != null) {
+            journal.setShippingCompanyProfitMargin(shippingCompanyId, profitMargin);
+        }
     }
 
+    /**
+     * Returns the orders a user can still return, earliest deadline first, in time proportional to their number.
+     *
+     * @param userId User identification code
+     * @return Copies of the returnable orders
+     */
     public List<Order> getUserReturnableOrders(String userId) {
-        return users.get(userId).getReturnableOrders();
+        LocalDateTime now = LocalDateTime.now(TimeSimulation.getClock());
+        return returnWindows().returnable(userId, now).stream().map(orders::get).map(Order::clone).toList();
+    }
+
+    /**
+     * Closes the return windows whose deadline has passed, among those of the users whose returnable orders were
+     * listed; the windows of other users are built when first listed, without the expired ones.
+     *
+     * @return Number of windows closed
+     */
+    public int expireReturnWindows() {
+        LocalDateTime now = LocalDateTime.now(TimeSimulation.getClock());
+        return returnWindows().expire(now);
+    }
+
+    /**
+     * Creates the return windows on first use. The windows of each buyer are built from its own orders when first
+     * listed, and deliveries and returns keep them up to date afterwards.
+     */
+    private ReturnWindows returnWindows() {
+        if (returnWindows == null) {
+            returnWindows = new ReturnWindows(buyerId -> users.containsKey(buyerId) ? users.get(buyerId).ordersMade().values() : List.of());
+        }
+        return returnWindows;
     }
 
     public void deliverOrder(String orderId) {
-        orders.get(orderId).deliver();
+        Clock clock = TimeSimulation.getClock();
+        Instant now = clock.instant();
+        Order order = orders.get(orderId);
+        changing(order);
+        order.deliver(LocalDateTime.ofInstant(now, clock.getZone()));
+        shippingCompanies.get(order.getShippingCompanyId()).statusChanged(order, Order.Status.EXPEDITED);
+        if (returnWindows != null) {
+            // sweep while adding, so closed windows do not pile up between listings
+            returnWindows.expire(order.getDeliveryDateTime());
+            returnWindows.open(order);
+        }
+        if (journal != null) {
+            journal.deliverOrder(orderId, now);
+        }
     }
 
     public void expediteOrder(String orderId) {
-        orders.get(orderId).expedite();
+        Order order = orders.get(orderId);
+        changing(order);
+        order.expedite();
+        shippingCompanies.get(order.getShippingCompanyId()).statusChanged(order, Order.Status.INITIALIZED);
+        if (journal != null) {
+            journal.expediteOrder(orderId);
+        }
     }
 
-    public void orderUserCart(String buyerId) throws ProductInCartUnavailable {
+    public List<Order> orderUserCart(String buyerId) throws ProductInCartUnavailable {
+        return orderUserCart(buyerId, (sellerId, shippingCompanyId) -> Order.nextAlphanumericId());
+    }
+
+    /**
+     * Orders the cart of a user.
+     *
+     * @param buyerId  Buying user identification code
+     * @param orderIds Identification code for the order of each (seller, shipping company) pair
+     * @return Orders placed
+     */
+    List<Order> orderUserCart(String buyerId, BinaryOperator<String> orderIds) throws ProductInCartUnavailable {
         // get buying user
         User buyer = users.get(buyerId);
+        Clock clock = TimeSimulation.getClock();
+        Instant now = clock.instant();
+        LocalDateTime creationDate = LocalDateTime.ofInstant(now, clock.getZone());
 
         // get cart from buying user
+        changing(buyer);
         List<Product> cart = buyer.returnCart();
 
-        // check if cart is valid
-        if (!products.values().containsAll(cart)) {
-            cart.stream()
-                    .filter(product -> products.containsKey(product.getId()))
-                    .forEach(buyer::addProductToCart);
-            throw new ProductInCartUnavailable("Product in cart unavailable.");
+        // check the whole cart is still on sale before removing any product, so a failed checkout never hides products
+        // from the buyers adding them to their carts meanwhile
+        List<String> unavailable = new ArrayList<>();
+        for (Product product : cart) {
+            if (!product.equals(products.get(product.getId()))) {
+                unavailable.add(product.getId());
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            cart.stream().filter(product -> !unavailable.contains(product.getId())).forEach(buyer::addProductToCart);
+            // the unavailable products left the cart, which replaying the journal must repeat
+            if (journal != null) {
+                journal.pruneUserCart(buyerId, unavailable);
+            }
+            throw new ProductInCartUnavailable("Products in cart unavailable: " + String.join(", ", unavailable) + ".", unavailable);
         }
 
-        // remove products from list of selling products
-        cart.stream().map(Product::getId).forEach(products.keySet()::remove);
+        // remove products from the catalog
+        cart.forEach(product -> {
+            products.remove(product.getId());
+            changingCatalog(product.getId());
+            if (catalog != null) {
+                catalog.remove(product);
+            }
+        });
 
         // auxiliary (seller code, shipping company) pair
         record SellerShippingCompanyPair(String sellerId, String shippingCompanyId) {
         }
 
         // generate and distribute orders
-        cart.stream()
+        List<Order> newOrders = cart.stream()
                 .collect(Collectors.groupingBy(p -> new SellerShippingCompanyPair(p.getSellerId(), p.getShippingCompanyId())))
                 .entrySet()
                 .stream()
-                .map(e -> new Order(e.getValue(), buyerId, e.getKey().sellerId, e.getKey().shippingCompanyId, shippingCompanies.get(e.getKey().shippingCompanyId)
-                        .shippingCost(e.getValue().size())))
-                .forEach(order -> {
-                    orders.put(order.getId(), order);
-                    buyer.addOrderMade(order);
-                    users.get(order.getSellerId()).addOrderReceived(order);
-                    shippingCompanies.get(order.getShippingCompanyId()).addOrder(order);
-                    revenue = revenue.add(order.vintageFees());
-                });
+                .map(e -> new Order(orderIds.apply(e.getKey().sellerId, e.getKey().shippingCompanyId), e.getValue(), buyerId, e.getKey().sellerId, e.getKey().shippingCompanyId, shippingCompanies.get(e.getKey().shippingCompanyId)
+                        .shippingCost(e.getValue().size()), creationDate))
+                .toList();
+        newOrders.forEach(order -> {
+            changing(order);
+            changing(users.get(order.getSellerId()));
+            changing(shippingCompanies.get(order.getShippingCompanyId()));
+            orders.put(order.getId(), order);
+            buyer.addOrderMade(order);
+            users.get(order.getSellerId()).addOrderReceived(order);
+            shippingCompanies.get(order.getShippingCompanyId()).addOrder(order);
+            addRevenue(order.vintageFees());
+            if (sellerLeaderboard != null) {
+                sellerLeaderboard.add(order.getSellerId(), order.getCreationDate(), order.sellerRevenue());
+                buyerLeaderboard.add(order.getBuyerId(), order.getCreationDate(), order.sellerRevenue());
+            }
+        });
+        if (journal != null) {
+            journal.orderUserCart(buyerId, newOrders, now);
+        }
+        return newOrders;
     }
 
     public void returnOrder(String orderId) {
         if (orders.containsKey(orderId)) {
             Order returnedOrder = orders.get(orderId);
+            changing(returnedOrder);
+            changing(users.get(returnedOrder.getBuyerId()));
+            changing(users.get(returnedOrder.getSellerId()));
             returnedOrder.setAsReturned();
+            if (returnWindows != null) {
+                returnWindows.close(orderId);
+            }
+            shippingCompanies.get(returnedOrder.getShippingCompanyId()).statusChanged(returnedOrder, Order.Status.DELIVERED);
             users.get(returnedOrder.getBuyerId()).orderMadeReturned(orderId);
             users.get(returnedOrder.getSellerId()).orderReceivedReturned(orderId);
+            if (sellerLeaderboard != null) {
+                sellerLeaderboard.add(returnedOrder.getSellerId(), returnedOrder.getCreationDate(), returnedOrder.productsCost().negate());
+                buyerLeaderboard.add(returnedOrder.getBuyerId(), returnedOrder.getCreationDate(), returnedOrder.productsCost().negate());
+            }
+            if (journal != null) {
+                journal.returnOrder(orderId);
+            }
         }
     }
 
@@ -178,7 +557,12 @@ public class Vintage implements Serializable {
     }
 
     public Optional<User> userWithMostRevenue(LocalDateTime from, LocalDateTime to) {
-        return users.values().stream().max(Comparator.comparing(user -> user.getRevenue(from, to))).map(User::clone);
+        return users.values()
+                .stream()
+                .map(user -> Map.entry(user, user.getRevenue(from, to)))
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .map(User::clone);
     }
 
     public Optional<ShippingCompany> shippingCompanyMostRevenue() {
@@ -189,15 +573,316 @@ public class Vintage implements Serializable {
         return users.get(userId).getOrdersMade().stream().map(Order::clone).toList();
     }
 
+    /**
+     * Returns a page of the orders a user made, oldest first.
+     *
+     * @param userId User identification code
+     * @param cursor Identification code of the order the page starts after, or null for the first page
+     * @param limit  Maximum orders per page
+     * @return Page of copies of the orders
+     */
+    public Page<Order> userIssuedOrders(String userId, String cursor, int limit) {
+        return users.get(userId).getOrdersMade(cursor, limit);
+    }
+
+    /**
+     * Returns a page of the orders a user received as a seller, oldest first.
+     *
+     * @param userId User identification code
+     * @param cursor Identification code of the order the page starts after, or null for the first page
+     * @param limit  Maximum orders per page
+     * @return Page of copies of the orders
+     */
+    public Page<Order> userReceivedOrders(String userId, String cursor, int limit) {
+        return users.get(userId).getOrdersReceived(cursor, limit);
+    }
+
     public List<User> topSellersInInterval(LocalDateTime from, LocalDateTime to) {
-        return users.values().stream().sorted(Comparator.comparing(user -> user.getRevenue(from, to))).toList();
+        return rankUsers(user -> user.getRevenue(from, to)).toList();
     }
 
     public List<User> topBuyersInInterval(LocalDateTime from, LocalDateTime to) {
-        return users.values().stream().sorted(Comparator.comparing(user -> user.getSpending(from, to))).toList();
+        return rankUsers(user -> user.getSpending(from, to)).toList();
+    }
+
+    /**
+     * Finds the sellers with the most revenue from the orders created strictly between two dates.
+     *
+     * @param from  Start of the interval
+     * @param to    End of the interval
+     * @param limit Maximum number of sellers
+     * @return Sellers with revenue in the interval, most revenue first
+     */
+    public List<RankedUser> topSellers(LocalDateTime from, LocalDateTime to, int limit) {
+        buildLeaderboards();
+        return ranked(sellerLeaderboard.top(from, to, limit));
+    }
+
+    /**
+     * Finds the buyers with the most spending on the orders created strictly between two dates.
+     *
+     * @param from  Start of the interval
+     * @param to    End of the interval
+     * @param limit Maximum number of buyers
+     * @return Buyers with spending in the interval, most spending first
+     */
+    public List<RankedUser> topBuyers(LocalDateTime from, LocalDateTime to, int limit) {
+        buildLeaderboards();
+        return ranked(buyerLeaderboard.top(from, to, limit));
+    }
+
+    /**
+     * Builds the leaderboards from the orders on first use; checkouts and returns keep them up to date afterwards.
+     * The orders of a memory-mapped snapshot are read once from the file for this and not hydrated.
+     */
+    private void buildLeaderboards() {
+        if (sellerLeaderboard == null) {
+            Leaderboard sellers = new Leaderboard();
+            Leaderboard buyers = new Leaderboard();
+            for (Order order : LazyMap.transientValues(orders)) {
+                sellers.add(order.getSellerId(), order.getCreationDate(), order.sellerRevenue());
+                buyers.add(order.getBuyerId(), order.getCreationDate(), order.sellerRevenue());
+            }
+            sellerLeaderboard = sellers;
+            buyerLeaderboard = buyers;
+        }
+    }
+
+    private List<RankedUser> ranked(List<Map.Entry<String, BigDecimal>> top) {
+        return top.stream().map(entry -> new RankedUser(users.get(entry.getKey()).clone(), entry.getValue())).toList();
     }
 
-    public BigDecimal getRevenue() {
+    /**
+     * Sorts the users by an amount, computing it once per user rather than on every comparison.
+     */
+    private Stream<User> rankUsers(Function<User, BigDecimal> amount) {
+        return users.values()
+                .stream()
+                .map(user -> Map.entry(user, amount.apply(user)))
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey);
+    }
+
+    public synchronized BigDecimal getRevenue() {
         return revenue;
     }
+
+    // checkouts of unrelated users may run concurrently in a ConcurrentVintage, so the shared total is synchronized
+    private synchronized void addRevenue(BigDecimal fees) {
+        revenue = revenue.add(fees);
+    }
+
+    /**
+     * Builds every derived index now rather than on first use, so that it is already in place when the engine is
+     * shared between threads. Afterwards, mutations update the indexes and never replace them.
+     */
+    void buildIndexes() {
+        catalog();
+        buildLeaderboards();
+        returnWindows();
+        shippingCompanyIdsByName();
+    }
+
+    /**
+     * Sets the journal every successful mutation is appended to, or null to stop journaling.
+     *
+     * @param journal Journal of this Vintage
+     */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return Journal of this Vintage, or null if it is not journaled
+     */
+    Journal journal() {
+        return journal;
+    }
+
+    /**
+     * Starts capturing this Vintage for a background snapshot, which preserves every entity before it first changes.
+     * The top-level maps are frozen rather than copied, so capturing takes constant time and loads no lazy order; the
+     * maps of this Vintage record the changes made meanwhile on top of them.
+     *
+     * @param snapshot Background snapshot being started
+     * @return Vintage over the frozen top-level maps, sharing the entities with this one
+     */
+    Vintage capture(BackgroundSnapshot snapshot) throws SnapshotInProgressException {
+        if (this.snapshot != null) {
+            throw new SnapshotInProgressException("A snapshot is already being written.");
+        }
+        CaptureMap<Product> products = capturable(this.products);
+        CaptureMap<User> users = capturable(this.users);
+        CaptureMap<String> userIdsByEmail = capturable(this.userIdsByEmail);
+        CaptureMap<Order> orders = capturable(this.orders);
+        CaptureMap<ShippingCompany> shippingCompanies = capturable(this.shippingCompanies);
+        this.products = products;
+        this.users = users;
+        this.userIdsByEmail = userIdsByEmail;
+        this.orders = orders;
+        this.shippingCompanies = shippingCompanies;
+        this.snapshot = snapshot;
+        return new Vintage(baseValueSmall, baseValueMedium, baseValueBig, orderFee, revenue, products.freeze(), users.freeze(), userIdsByEmail.freeze(), orders.freeze(), shippingCompanies.freeze());
+    }
+
+    private static <V> CaptureMap<V> capturable(Map<String, V> map) {
+        return map instanceof CaptureMap<V> captured ? captured : new CaptureMap<>(map);
+    }
+
+    /**
+     * Stops capturing for a background snapshot once it has been written. Runs on the snapshot writer, which no
+     * longer reads the frozen maps.
+     *
+     * @param snapshot Finished background snapshot
+     */
+    void release(BackgroundSnapshot snapshot) {
+        if (this.snapshot == snapshot) {
+            // thawed before the next capture can start, which would otherwise drop the changes of this one
+            ((CaptureMap<?>) products).thaw();
+            ((CaptureMap<?>) users).thaw();
+            ((CaptureMap<?>) userIdsByEmail).thaw();
+            ((CaptureMap<?>) orders).thaw();
+            ((CaptureMap<?>) shippingCompanies).thaw();
+            this.snapshot = null;
+        }
+    }
+
+    /**
+     * Starts tracking the entities changed from now on, discarding the changes tracked so far.
+     *
+     * @return Previously tracked changes, or null if changes were not being tracked
+     */
+    ChangeSet trackChanges() {
+        ChangeSet previous = changes;
+        changes = new ChangeSet();
+        return previous;
+    }
+
+    /**
+     * Puts back changes discarded by {@link #trackChanges()}, ahead of the ones tracked since.
+     *
+     * @param previous Changes returned by {@link #trackChanges()}, or null if changes were not being tracked then
+     */
+    void restoreChanges(ChangeSet previous) {
+        if (previous != null && changes != null) {
+            previous.addAll(changes);
+        }
+        changes = previous;
+    }
+
+    /**
+     * Publishes a read view with the changes made since the previous one, which statistics can be computed from on
+     * other threads without stopping changes to this Vintage. The first view is built from every entity; each later
+     * one copies only the entities changed in between.
+     *
+     * @return Latest read view, the previous one if nothing changed since
+     */
+    public ReadView publishView() {
+        if (view == null) {
+            view = ReadView.of(this);
+            unpublished = new ChangeSet();
+        } else if (unpublished.size() > 0) {
+            view = view.next(this, unpublished);
+            unpublished = new ChangeSet();
+        }
+        return view;
+    }
+
+    /**
+     * @return Entities changed since tracking started, or null if changes are not being tracked
+     */
+    ChangeSet changes() {
+        return changes;
+    }
+
+    // called right before an entity changes or is added
+    private void changing(User user) {
+        if (user == null) {
+            return;
+        }
+        BackgroundSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.preserve(user);
+        }
+        if (changes != null) {
+            changes.user(user.getId());
+        }
+        if (unpublished != null) {
+            unpublished.user(user.getId());
+        }
+    }
+
+    private void changing(Order order) {
+        if (order == null) {
+            return;
+        }
+        BackgroundSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.preserve(order);
+        }
+        if (changes != null) {
+            changes.order(order.getId());
+        }
+        if (unpublished != null) {
+            unpublished.order(order.getId());
+        }
+    }
+
+    private void changing(ShippingCompany shippingCompany) {
+        if (shippingCompany == null) {
+            return;
+        }
+        BackgroundSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.preserve(shippingCompany);
+        }
+        if (changes != null) {
+            changes.shippingCompany(shippingCompany.getId());
+        }
+        if (unpublished != null) {
+            unpublished.shippingCompany(shippingCompany.getId());
+        }
+    }
+
+    private void changingCatalog(String productId) {
+        if (changes != null) {
+            changes.product(productId);
+        }
+    }
+
+    BigDecimal getBaseValueSmall() {
+        return baseValueSmall;
+    }
+
+    BigDecimal getBaseValueMedium() {
+        return baseValueMedium;
+    }
+
+    BigDecimal getBaseValueBig() {
+        return baseValueBig;
+    }
+
+    BigDecimal getOrderFee() {
+        return orderFee;
+    }
+
+    Map<String, Product> products() {
+        return products;
+    }
+
+    Map<String, User> users() {
+        return users;
+    }
+
+    Map<String, String> userIdsByEmail() {
+        return userIdsByEmail;
+    }
+
+    Map<String, Order> orders() {
+        return orders;
+    }
+
+    Map<String, ShippingCompany> shippingCompanies() {
+        return shippingCompanies;
+    }
 }
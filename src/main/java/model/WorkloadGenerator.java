@@ -0,0 +1,261 @@
+package model;
+
+import util.TimeSimulation;
+
+import java.awt.Color;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Seeded generator of a synthetic marketplace workload.
+ * <p>
+ * Registers users and shipping companies, then simulates the given number of days an hour at a time: every hour
+ * publishes its share of the products and places its share of the orders, each over one to three products of the
+ * catalog, and advances the simulated time. Orders are expedited 2 to 24 hours after they are placed and delivered 1 to
+ * 4 days after that; some delivered orders are returned within the 48 hour deadline. Sellers and buyers are drawn with
+ * a skew towards the first users, so a few of them account for most of the activity.
+ * <p>
+ * The same configuration and seed always drive the same sequence of operations.
+ */
+public final class WorkloadGenerator {
+    private static final double[] PRODUCT_MIX = {0.25, 0.05, 0.40, 0.25, 0.05}; // sneaker, premium sneaker, t-shirt, handbag, premium handbag
+    private static final double RETURN_RATE = 0.05;
+
+    private final Vintage vintage;
+    private final Config config;
+    private final Random random;
+    private final List<String> userIds;
+    private final List<String> shippingCompanyIds;
+    private final List<String> catalog;
+    private final PriorityQueue<Event> events;
+    private long hour;
+    private long eventSequence;
+    private int published;
+    private long placed;
+    private long skipped;
+    private long expedited;
+    private long delivered;
+    private long returned;
+
+    /**
+     * Workload configuration.
+     *
+     * @param users             Users to register
+     * @param shippingCompanies Shipping companies to register
+     * @param premiumShare      Share of the shipping companies that are premium
+     * @param products          Products to publish
+     * @param orders            Orders to place, as long as the catalog has products left
+     * @param days              Days of simulated time the products and orders are spread over
+     * @param seed              Random seed
+     */
+    public record Config(int users, int shippingCompanies, double premiumShare, int products, int orders, int days, long seed) {
+        public Config {
+            if (users < 2 || shippingCompanies < 1 || products < 0 || orders < 0 || days < 1) {
+                throw new IllegalArgumentException("A workload needs two users, one shipping company and one day.");
+            }
+        }
+    }
+
+    /**
+     * Generated workload totals.
+     *
+     * @param orders    Orders placed
+     * @param skipped   Orders not placed because the catalog was empty
+     * @param expedited Orders expedited
+     * @param delivered Orders delivered
+     * @param returned  Orders returned
+     * @param elapsed   Generation duration
+     */
+    public record Summary(long orders, long skipped, long expedited, long delivered, long returned, Duration elapsed) {
+    }
+
+    /**
+     * Scheduled transition of an order.
+     */
+    private record Event(long hour, long sequence, String orderId, Action action) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byHour = Long.compare(hour, other.hour);
+            return byHour != 0 ? byHour : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private enum Action {
+        EXPEDITE, DELIVER, RETURN
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param vintage Vintage to generate the workload in
+     * @param config  Workload configuration
+     */
+    public WorkloadGenerator(Vintage vintage, Config config) {
+        this.vintage = vintage;
+        this.config = config;
+        this.random = new Random(config.seed());
+        this.userIds = new ArrayList<>(config.users());
+        this.shippingCompanyIds = new ArrayList<>(config.shippingCompanies());
+        this.catalog = new ArrayList<>();
+        this.events = new PriorityQueue<>();
+    }
+
+    /**
+     * Generates the workload, advancing the simulated time by the configured number of days.
+     *
+     * @return Generated workload totals
+     */
+    public Summary generate() {
+        long start = System.nanoTime();
+        for (int i = 0; i < config.shippingCompanies(); i++) {
+            BigDecimal profitMargin = BigDecimal.valueOf(5 + random.nextInt(26), 2);
+            ShippingCompany shippingCompany = i < Math.round(config.shippingCompanies() * config.premiumShare())
+                    ? new PremiumShippingCompany("Shipping " + i, vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), profitMargin, BigDecimal.valueOf(5 + random.nextInt(16), 2))
+                    : new ShippingCompany("Shipping " + i, vintage.getBaseValueSmall(), vintage.getBaseValueMedium(), vintage.getBaseValueBig(), vintage.getOrderFee(), profitMargin);
+            vintage.register(shippingCompany);
+            shippingCompanyIds.add(shippingCompany.getId());
+        }
+        for (int i = 0; i < config.users(); i++) {
+            User user = new User("user" + i + "@vintage.test", "User " + i, "Street " + i + ", Braga", String.valueOf(200_000_000 + i));
+            vintage.register(user);
+            userIds.add(user.getId());
+        }
+
+        long hours = config.days() * 24L;
+        for (hour = 0; hour < hours; hour++) {
+            runEvents();
+            for (long i = share(config.products(), hour); i < share(config.products(), hour + 1); i++) {
+                publish();
+            }
+            for (long i = share(config.orders(), hour); i < share(config.orders(), hour + 1); i++) {
+                order();
+            }
+            TimeSimulation.advanceTime(Duration.ofHours(1));
+        }
+        runEvents();
+        return new Summary(placed, skipped, expedited, delivered, returned, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * @return Identification codes of the registered users, in registration order
+     */
+    List<String> userIds() {
+        return userIds;
+    }
+
+    /**
+     * @return Identification codes of the registered shipping companies, in registration order
+     */
+    List<String> shippingCompanyIds() {
+        return shippingCompanyIds;
+    }
+
+    /**
+     * @return Number of the first n items that fall before the given hour
+     */
+    private long share(long n, long hour) {
+        return n * hour / (config.days() * 24L);
+    }
+
+    private void publish() {
+        String sellerId = userIds.get(skewed(userIds.size()));
+        Product product = product(random, sellerId, shippingCompanyIds.get(random.nextInt(shippingCompanyIds.size())), published++);
+        vintage.publishProduct(sellerId, product);
+        catalog.add(product.getId());
+    }
+
+    private void order() {
+        String buyerId = userIds.get(skewed(userIds.size()));
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count && !catalog.isEmpty(); i++) {
+            // take a random product out of the catalog in constant time
+            int index = random.nextInt(catalog.size());
+            String productId = catalog.set(index, catalog.get(catalog.size() - 1));
+            catalog.remove(catalog.size() - 1);
+            if (!vintage.products().get(productId).getSellerId().equals(buyerId)) {
+                vintage.addProductToUserCart(buyerId, productId);
+            } else {
+                catalog.add(productId);
+            }
+        }
+        List<Order> orders = vintage.orderUserCart(buyerId);
+        if (orders.isEmpty()) {
+            skipped++;
+            return;
+        }
+        placed++;
+        for (Order order : orders) {
+            schedule(2 + random.nextInt(23), order.getId(), Action.EXPEDITE);
+        }
+    }
+
+    private void runEvents() {
+        while (!events.isEmpty() && events.peek().hour() <= hour) {
+            Event event = events.poll();
+            switch (event.action()) {
+                case EXPEDITE -> {
+                    vintage.expediteOrder(event.orderId());
+                    expedited++;
+                    schedule(24 + random.nextInt(73), event.orderId(), Action.DELIVER);
+                }
+                case DELIVER -> {
+                    vintage.deliverOrder(event.orderId());
+                    delivered++;
+                    if (random.nextDouble() < RETURN_RATE) {
+                        schedule(1 + random.nextInt(47), event.orderId(), Action.RETURN);
+                    }
+                }
+                case RETURN -> {
+                    vintage.returnOrder(event.orderId());
+                    returned++;
+                }
+            }
+        }
+    }
+
+    private void schedule(int hours, String orderId, Action action) {
+        events.add(new Event(hour + hours, eventSequence++, orderId, action));
+    }
+
+    /**
+     * @return Index below n drawn with a quadratic skew towards zero
+     */
+    private int skewed(int n) {
+        double r = random.nextDouble();
+        return (int) (r * r * n);
+    }
+
+    /**
+     * Builds a product of a type drawn from the product mix, with random attributes.
+     *
+     * @param random            Random source
+     * @param sellerId          Seller identification code
+     * @param shippingCompanyId Shipping company identification code
+     * @param index             Product number, used in its description
+     * @return New product
+     */
+    static Product product(Random random, String sellerId, String shippingCompanyId, int index) {
+        String description = "Product " + index;
+        BigDecimal price = BigDecimal.valueOf(500 + random.nextInt(20_000), 2);
+        int previousOwners = random.nextInt(4);
+        Product.State state = Product.State.values()[random.nextInt(Product.State.values().length)];
+        Year collectionYear = Year.of(1990 + random.nextInt(33));
+        double pick = random.nextDouble();
+        int type = 0;
+        while (type < PRODUCT_MIX.length - 1 && pick >= PRODUCT_MIX[type]) {
+            pick -= PRODUCT_MIX[type++];
+        }
+        return switch (type) {
+            case 0 -> new Sneaker(sellerId, shippingCompanyId, description, "Nike", price, previousOwners, state, 36 + random.nextInt(12), new Color(random.nextInt(0x1000000)), random.nextBoolean(), collectionYear, BigDecimal.valueOf(random.nextInt(30), 2));
+            case 1 -> new PremiumSneaker(sellerId, shippingCompanyId, description, "Jordan", price, previousOwners, state, 36 + random.nextInt(12), new Color(random.nextInt(0x1000000)), random.nextBoolean(), collectionYear, BigDecimal.valueOf(random.nextInt(10), 2));
+            case 2 -> new TShirt(sellerId, shippingCompanyId, description, "Zara", price, previousOwners, state, Size.values()[random.nextInt(Size.values().length)], TShirt.Pattern.values()[random.nextInt(TShirt.Pattern.values().length)]);
+            case 3 -> new Handbag(sellerId, shippingCompanyId, description, "Michael Kors", price, previousOwners, state, BigDecimal.valueOf(1 + random.nextInt(20)), Handbag.Material.values()[random.nextInt(Handbag.Material.values().length)], collectionYear);
+            default -> new PremiumHandbag(sellerId, shippingCompanyId, description, "Gucci", price, previousOwners, state, BigDecimal.valueOf(1 + random.nextInt(20)), Handbag.Material.values()[random.nextInt(Handbag.Material.values().length)], collectionYear, BigDecimal.valueOf(random.nextInt(10), 2));
+        };
+    }
+}
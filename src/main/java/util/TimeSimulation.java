@@ -2,19 +2,44 @@ package util;
 
 import java.time.Clock;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class TimeSimulation {
-    private static Clock clock = Clock.systemDefaultZone();
+    private static final List<Consumer<Duration>> listeners = new CopyOnWriteArrayList<>();
+    private static Clock baseClock = Clock.systemDefaultZone();
+    private static Duration offset = Duration.ZERO;
+    private static Clock clock = baseClock;
 
     public static Clock getClock() {
         return clock;
     }
 
     public static void setClock(Clock clock) {
+        baseClock = clock;
+        offset = Duration.ZERO;
         TimeSimulation.clock = clock;
     }
 
     public static void advanceTime(Duration duration) {
-        clock = Clock.offset(clock, duration);
+        // offset the base clock once, so reading the time does not go through a clock per advance
+        offset = offset.plus(duration);
+        clock = Clock.offset(baseClock, offset);
+        listeners.forEach(listener -> listener.accept(duration));
     }
-}
\ No newline at end of file
+
+    /**
+     * Registers a listener notified with the offset of every time advance.
+     * Replacing the clock with setClock does not notify listeners.
+     *
+     * @param listener Time advance listener
+     */
+    public static void addListener(Consumer<Duration> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<Duration> listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,116 @@
+package controllerView;
+
+import model.Vintage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptRunnerTest {
+    StringWriter output;
+    ScriptRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        output = new StringWriter();
+        runner = new ScriptRunner(null, new BufferedWriter(output));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    void runsADayOfOperations() throws IOException {
+        ScriptRunner.Summary summary = runner.run(new BufferedReader(new StringReader("""
+                # setup
+                system 2.5 5 7.5 0.1
+                user seller@mail.com Seller "Rua 1, Braga" 1
+                user buyer@mail.com Buyer Porto 2
+                shipping DHL 1.5
+                login seller@mail.com
+                publish shirt tshirt DHL description="Blue shirt" brand=Zara price=15 previous_owners=0 state=good size=M pattern=plain
+                login buyer@mail.com
+                add shirt
+                order first
+                company DHL
+                expedite
+                deliver first
+                return first
+                advance P1D
+                stats
+                return second
+                """)));
+
+        assertEquals(16, summary.commands());
+        assertEquals(1, summary.failed());
+        assertTrue(output.toString().contains("line 17: return failed"));
+        assertTrue(output.toString().contains("16 commands, 1 failed"));
+    }
+
+    @Test
+    void unreadableImportFailsOnlyItsLine() throws IOException {
+        ScriptRunner.Summary summary = runner.run(new BufferedReader(new StringReader("""
+                system 2.5 5 7.5 0.1
+                import /nonexistent/vintage.csv
+                user seller@mail.com Seller Braga 1
+                """)));
+
+        assertEquals(3, summary.commands());
+        assertEquals(1, summary.failed());
+        assertTrue(output.toString().contains("line 2: import failed"));
+        assertTrue(output.toString().contains("3 commands, 1 failed"));
+    }
+
+    @Test
+    void newSystemForgetsTheRefsOfThePreviousOne() throws IOException {
+        ScriptRunner.Summary summary = runner.run(new BufferedReader(new StringReader("""
+                system 2.5 5 7.5 0.1
+                user seller@mail.com Seller Braga 1
+                shipping DHL 1.5
+                login seller@mail.com
+                publish shirt tshirt DHL description=Shirt brand=Zara price=15 previous_owners=0 state=good size=M pattern=plain
+                user buyer@mail.com Buyer Porto 2
+                login buyer@mail.com
+                add shirt
+                order first
+                system 2.5 5 7.5 0.1
+                login seller@mail.com
+                company DHL
+                return first
+                """)));
+
+        assertEquals(3, summary.failed());
+        assertTrue(output.toString().contains("line 11: login failed"));
+        assertTrue(output.toString().contains("line 12: company failed"));
+        assertTrue(output.toString().contains("line 13: return failed"));
+    }
+
+    @Test
+    void runsAgainstAnExistingSystem() throws IOException {
+        Vintage vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        runner = new ScriptRunner(vintage, new BufferedWriter(output));
+        runner.run(new BufferedReader(new StringReader("""
+                user seller@mail.com Seller Braga 1
+                shipping UPS 1
+                login seller@mail.com
+                publish bag handbag UPS description=Bag brand=Gucci price=100 previous_owners=1 state=very_good dimension=3 material=leather collection_year=2020
+                """)));
+
+        assertEquals(1, vintage.getProducts().size());
+        assertEquals(0, vintage.getRevenue().compareTo(BigDecimal.ZERO));
+        assertEquals(ScriptRunner.tokenize("a \"b c\" d=\"e \\\" f\""), java.util.List.of("a", "b c", "d=e \" f"));
+    }
+}
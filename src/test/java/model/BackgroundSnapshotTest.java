@@ -0,0 +1,141 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackgroundSnapshotTest {
+    Path directory;
+    SnapshotFixture fixture;
+    Vintage vintage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        directory = Files.createTempDirectory("snapshot");
+        fixture = new SnapshotFixture(200, 2000);
+        vintage = fixture.vintage;
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    void snapshotHoldsStateWhenStarted() throws Exception {
+        fixture.order(500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.write(out, new SystemState(TimeSimulation.getClock(), vintage));
+        Vintage expected = SnapshotCodec.read(new ByteArrayInputStream(out.toByteArray())).vintage();
+        Path path = directory.resolve("vintage.snapshot");
+
+        BackgroundSnapshot snapshot = BackgroundSnapshot.start(path, new SystemState(TimeSimulation.getClock(), vintage));
+        fixture.order(1000);
+        vintage.getProducts().stream().limit(5).forEach(product -> vintage.addProductToUserCart(fixture.userIds.get(0), product.getId()));
+        vintage.orders().keySet().forEach(vintage::expediteOrder);
+        vintage.setShippingCompanyProfitMargin(fixture.dhl, new BigDecimal("4"));
+        assertEquals(path, snapshot.completion().get());
+        assertEquals(1.0, snapshot.progress());
+
+        Vintage loaded = SnapshotCodec.read(path).vintage();
+        assertIterableEquals(expected.orders().values(), loaded.orders().values());
+        assertEquals(expected.products().keySet(), loaded.products().keySet());
+        assertEquals(expected.shippingCompanies(), loaded.shippingCompanies());
+        for (User user : expected.users().values()) {
+            User other = loaded.users().get(user.getId());
+            assertEquals(user.cart().keySet(), other.cart().keySet());
+            assertEquals(user.ordersMade().keySet(), other.ordersMade().keySet());
+            assertEquals(0, user.getRevenue().compareTo(other.getRevenue()));
+        }
+    }
+
+    @Test
+    void captureOfAMappedVintageLoadsNoOrder() throws Exception {
+        fixture.order(300);
+        Path mappedPath = directory.resolve("mapped.snapshot");
+        SnapshotCodec.write(mappedPath, new SystemState(TimeSimulation.getClock(), vintage));
+        Vintage mapped = SnapshotCodec.map(mappedPath).vintage();
+        LazyMap<?> orders = (LazyMap<?>) mapped.orders();
+        Path path = directory.resolve("vintage.snapshot");
+
+        BackgroundSnapshot snapshot = BackgroundSnapshot.start(path, new SystemState(TimeSimulation.getClock(), mapped));
+        mapped.registerUser("during@mail.com", "During", "Porto", "998");
+        snapshot.completion().get();
+        assertEquals(0, orders.loaded());
+        mapped.registerUser("after@mail.com", "After", "Porto", "999");
+
+        Vintage captured = SnapshotCodec.read(path).vintage();
+        assertEquals(vintage.orders().keySet(), captured.orders().keySet());
+        assertEquals(vintage.users().keySet(), captured.users().keySet());
+        assertEquals(vintage.users().size() + 2, mapped.users().size());
+
+        BackgroundSnapshot.start(path, new SystemState(TimeSimulation.getClock(), mapped)).completion().get();
+        Vintage next = SnapshotCodec.read(path).vintage();
+        assertEquals(mapped.users().keySet(), next.users().keySet());
+        assertTrue(next.getUserIdByEmail("during@mail.com").isPresent());
+        assertEquals(0, orders.loaded());
+    }
+
+    @Test
+    void backgroundCheckpointKeepsLaterRecords() throws Exception {
+        Path snapshot = directory.resolve("vintage.snapshot");
+        Path journalPath = directory.resolve("vintage.journal");
+        Journal journal = Journal.open(journalPath, new SystemState(TimeSimulation.getClock(), vintage));
+        try {
+            fixture.order(200);
+            BackgroundSnapshot checkpoint = journal.checkpointInBackground(snapshot);
+            fixture.order(400);
+            checkpoint.completion().get();
+            vintage.registerUser("late@mail.com", "Late", "Porto", "999");
+
+            SystemState recovered = Journal.recover(snapshot, journalPath);
+            assertEquals(journal.sequence(), recovered.sequence());
+            assertIterableEquals(vintage.orders().values(), recovered.vintage().orders().values());
+            assertTrue(recovered.vintage().getUserIdByEmail("late@mail.com").isPresent());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void failedBackgroundCheckpointKeepsEarlierChangesForTheNextDelta() throws Exception {
+        Path snapshot = directory.resolve("vintage.snapshot");
+        Path journalPath = directory.resolve("vintage.journal");
+        Journal journal = Journal.open(journalPath, new SystemState(TimeSimulation.getClock(), vintage));
+        try {
+            journal.checkpoint(snapshot);
+            fixture.order(100);
+            journal.checkpointDelta(snapshot);
+            fixture.order(300);
+
+            // a directory in the way of the temporary file makes the background write fail
+            Path blocker = directory.resolve("vintage.snapshot.tmp");
+            Files.createDirectories(blocker.resolve("inside"));
+            BackgroundSnapshot checkpoint = journal.checkpointInBackground(snapshot);
+            assertThrows(ExecutionException.class, () -> checkpoint.completion().get());
+            Files.delete(blocker.resolve("inside"));
+            Files.delete(blocker);
+            vintage.registerUser("late@mail.com", "Late", "Porto", "999");
+
+            journal.checkpointDelta(snapshot);
+            SystemState recovered = Journal.recover(snapshot, journalPath);
+            assertIterableEquals(vintage.orders().values(), recovered.vintage().orders().values());
+            assertTrue(recovered.vintage().getUserIdByEmail("late@mail.com").isPresent());
+        } finally {
+            journal.close();
+        }
+    }
+}
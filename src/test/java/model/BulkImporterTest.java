@@ -0,0 +1,97 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkImporterTest {
+    Path directory;
+    Vintage vintage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        directory = Files.createTempDirectory("import");
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    void importsCsvAndRejectsMalformedRows() throws IOException {
+        Path csv = directory.resolve("data.csv");
+        Files.writeString(csv, """
+                type,email,name,address,tax_number,profit_margin,premium_tax,seller,shipping_company,description,brand,price,previous_owners,state,size,pattern,ref,buyer,products
+                user,seller@mail.com,Seller,"Rua 1, Braga",1,,,,,,,,,,,,,,
+                user,buyer@mail.com,Buyer,Porto,2,,,,,,,,,,,,,,
+                premium_shipping_company,,DHL,,,1.5,3,,,,,,,,,,,,
+                tshirt,,,,,,,seller@mail.com,DHL,"Shirt, ""striped""\",Zara,15,1,good,M,stripes,shirt1,,
+                tshirt,,,,,,,seller@mail.com,DHL,Shirt,Zara,abc,1,good,M,plain,,,
+                tshirt,,,,,,,nobody@mail.com,DHL,Shirt,Zara,15,1,good,M,plain,,,
+                order,,,,,,,,,,,,,,,,,buyer@mail.com,shirt1
+                bogus
+                """);
+
+        BulkImporter.Report report = new BulkImporter(vintage, 2).importFile(csv);
+        assertEquals(5, report.accepted());
+        assertEquals(3, report.rejected());
+        assertEquals(3, report.errors().size());
+        assertTrue(report.errors().get(0).startsWith("line 6:"));
+
+        String buyerId = vintage.getUserIdByEmail("buyer@mail.com").orElseThrow();
+        assertEquals(1, vintage.userIssuedOrders(buyerId).size());
+        Product shirt = vintage.userIssuedOrders(buyerId).get(0).getProducts().get(0);
+        assertEquals("Shirt, \"striped\"", shirt.getDescription());
+        assertTrue(vintage.products().isEmpty());
+    }
+
+    @Test
+    void reportsTheLinesOfRecordsAfterAMultiLineField() throws IOException {
+        Path csv = directory.resolve("lines.csv");
+        Files.writeString(csv, """
+                type,email,name,address,tax_number
+                user,first@mail.com,First,"Rua 1
+                Braga",1
+                user,second@mail.com,Second,Porto
+                user,third@mail.com,Third,Faro,3
+                user,fourth@mail.com,Fourth,Lisboa
+                """);
+
+        BulkImporter.Report report = new BulkImporter(vintage).importFile(csv);
+        assertEquals(2, report.accepted());
+        assertEquals(2, report.errors().size());
+        assertTrue(report.errors().get(0).startsWith("line 4:"), report.errors().get(0));
+        assertTrue(report.errors().get(1).startsWith("line 6:"), report.errors().get(1));
+    }
+
+    @Test
+    void importsJsonLines() throws IOException {
+        Path jsonl = directory.resolve("data.jsonl");
+        Files.writeString(jsonl, """
+                {"type": "user", "email": "seller@mail.com", "name": "Seller", "address": "Braga", "tax_number": "1"}
+                {"type": "shipping_company", "name": "CTT", "profit_margin": 1.2}
+                {"type": "premium_sneaker", "seller": "seller@mail.com", "shipping_company": "CTT", "description": "Jordan \\u00e9", "brand": "Nike", "price": 300, "previous_owners": 0, "state": "NEW_WITH_TAG", "size": 42, "color": "FF0000", "laces": true, "collection_year": 2015, "appreciation": 0.1}
+                {"type": "handbag", "seller": "seller@mail.com", "shipping_company": "CTT", "description": "Tote", "brand": "Mango", "price": 45, "previous_owners": 0, "state": "very good", "dimension": 12.5, "material": "canvas", "collection_year": 2021, "note": null}
+                {"type": "handbag", "seller": "seller@mail.com"
+                """);
+
+        BulkImporter.Report report = new BulkImporter(vintage).importFile(jsonl);
+        assertEquals(4, report.accepted());
+        assertEquals(1, report.rejected());
+        assertEquals(2, vintage.products().size());
+        assertTrue(vintage.getProducts().stream().anyMatch(product -> product instanceof PremiumSneaker && product.getDescription().equals("Jordan é")));
+        String sellerId = vintage.getUserIdByEmail("seller@mail.com").orElseThrow();
+        assertEquals(2, vintage.users().get(sellerId).getProducts().size());
+    }
+}
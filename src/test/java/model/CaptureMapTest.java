@@ -0,0 +1,40 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureMapTest {
+    @Test
+    void frozenMapKeepsItsEntriesWhileChangesGoOnTop() {
+        Map<String, Integer> backing = new LinkedHashMap<>();
+        backing.put("a", 1);
+        backing.put("b", 2);
+        backing.put("c", 3);
+        CaptureMap<Integer> map = new CaptureMap<>(backing);
+
+        Map<String, Integer> frozen = map.freeze();
+        map.put("b", 20);
+        map.remove("c");
+        map.put("d", 4);
+        map.put("e", 5);
+        map.remove("e");
+
+        assertEquals(Map.of("a", 1, "b", 2, "c", 3), frozen);
+        assertEquals(List.of("a", "b", "d"), List.copyOf(map.keySet()));
+        assertEquals(List.of(1, 20, 4), List.copyOf(map.values()));
+        assertEquals(3, map.size());
+        assertNull(map.get("c"));
+        assertFalse(map.containsKey("e"));
+
+        map.thaw();
+        assertEquals(Map.of("a", 1, "b", 2, "c", 3), backing);
+        map.put("f", 6);
+        assertEquals(Map.of("a", 1, "b", 20, "d", 4, "f", 6), backing);
+        assertEquals(backing, map);
+    }
+}
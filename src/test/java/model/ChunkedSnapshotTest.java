@@ -0,0 +1,62 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedSnapshotTest {
+    Vintage vintage;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        SnapshotFixture fixture = new SnapshotFixture(50, ChunkedSnapshot.CHUNK_SIZE * 2 + 10);
+        fixture.order(200);
+        vintage = fixture.vintage;
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedSnapshot.write(out, new SystemState(TimeSimulation.getClock(), vintage, 7), 3);
+        return out.toByteArray();
+    }
+
+    @Test
+    void roundTripRelinksChunks() throws IOException {
+        SystemState state = ChunkedSnapshot.read(new ByteArrayInputStream(write()), 3);
+        Vintage loaded = state.vintage();
+        assertEquals(7, state.sequence());
+        assertEquals(vintage.products(), loaded.products());
+        assertIterableEquals(vintage.orders().values(), loaded.orders().values());
+        assertEquals(vintage.shippingCompanies(), loaded.shippingCompanies());
+        for (Order order : loaded.orders().values()) {
+            assertSame(order, loaded.users().get(order.getBuyerId()).ordersMade().get(order.getId()));
+            assertSame(order, loaded.shippingCompanies().get(order.getShippingCompanyId()).orders().get(order.getId()));
+        }
+        for (User user : loaded.users().values()) {
+            for (Product product : user.getProducts()) {
+                assertSame(loaded.products().getOrDefault(product.getId(), product), product);
+            }
+        }
+    }
+
+    @Test
+    void corruptChunkIsRejected() throws IOException {
+        byte[] bytes = write();
+        bytes[bytes.length / 2] ^= 0x55;
+        assertThrows(IOException.class, () -> ChunkedSnapshot.read(new ByteArrayInputStream(bytes), 2));
+    }
+}
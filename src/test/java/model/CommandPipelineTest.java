@@ -0,0 +1,200 @@
+package model;
+
+import exceptions.PipelineClosedException;
+import exceptions.ProductInCartUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandPipelineTest {
+    static final int THREADS = 4;
+
+    Vintage vintage;
+    CommandPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        for (int i = 0; i < THREADS * 2; i++) {
+            vintage.registerUser("user" + i + "@mail.com", "User " + i, "Braga", String.valueOf(i));
+        }
+        vintage.registerShippingCompany("CTT", new BigDecimal("1.5"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private String userId(int i) {
+        return vintage.getUserIdByEmail("user" + i + "@mail.com").orElseThrow();
+    }
+
+    @Test
+    void commandsFromManyThreadsAreAppliedInBatches() throws Exception {
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * 2; i++) {
+            userIds.add(userId(i));
+        }
+        pipeline = new CommandPipeline(vintage, 64, 16);
+
+        ConcurrentVintageTest.inParallel(THREADS, thread -> {
+            String sellerId = userIds.get(thread * 2);
+            String buyerId = userIds.get(thread * 2 + 1);
+            List<CompletableFuture<?>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Product product = new TShirt(sellerId, ctt, "Shirt " + i, "Zara", new BigDecimal("10"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+                results.add(pipeline.publishProduct(sellerId, product));
+                results.add(pipeline.addProductToUserCart(buyerId, product.getId()));
+            }
+            results.add(pipeline.orderUserCart(buyerId));
+            for (CompletableFuture<?> result : results) {
+                result.get();
+            }
+        });
+        pipeline.close();
+
+        assertEquals(THREADS * 401, pipeline.commands());
+        assertTrue(pipeline.batches() <= pipeline.commands());
+        assertEquals(0, vintage.products().size());
+        assertEquals(THREADS, vintage.orders().size());
+        for (Order order : vintage.orders().values()) {
+            assertEquals(200, order.getProducts().size());
+        }
+        assertThrows(PipelineClosedException.class, () -> pipeline.submit(Vintage::getRevenue));
+    }
+
+    @Test
+    void failuresCompleteTheirOwnFutureOnly() throws Exception {
+        String sellerId = userId(0);
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        Product product = new TShirt(sellerId, ctt, "Shirt", "Zara", new BigDecimal("10"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        vintage.publishProduct(sellerId, product);
+        pipeline = new CommandPipeline(vintage);
+
+        pipeline.addProductToUserCart(userId(1), product.getId());
+        pipeline.addProductToUserCart(userId(2), product.getId());
+        CompletableFuture<List<Order>> first = pipeline.orderUserCart(userId(1));
+        CompletableFuture<List<Order>> second = pipeline.orderUserCart(userId(2));
+
+        assertEquals(1, first.get().size());
+        ExecutionException e = assertThrows(ExecutionException.class, second::get);
+        assertTrue(e.getCause() instanceof ProductInCartUnavailable);
+        assertEquals(1, (int) pipeline.submit(v -> v.orders().size()).get());
+    }
+
+    @Test
+    void journaledBatchesAreRecovered() throws Exception {
+        Path directory = Files.createTempDirectory("pipeline");
+        Path snapshot = directory.resolve("vintage.snapshot");
+        Path journalPath = directory.resolve("vintage.journal");
+        Journal journal = Journal.open(journalPath, new SystemState(TimeSimulation.getClock(), vintage));
+        journal.checkpoint(snapshot);
+        journal.setSync(true);
+        String sellerId = userId(0);
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        pipeline = new CommandPipeline(vintage);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Product product = new TShirt(sellerId, ctt, "Shirt " + i, "Zara", new BigDecimal("10"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+            results.add(pipeline.publishProduct(sellerId, product));
+            results.add(pipeline.addProductToUserCart(userId(1), product.getId()));
+        }
+        pipeline.orderUserCart(userId(1)).get();
+        for (CompletableFuture<Void> result : results) {
+            assertTrue(result.isDone());
+        }
+        pipeline.close();
+        journal.close();
+
+        Vintage recovered = Journal.recover(snapshot, journalPath).vintage();
+        assertIterableEquals(vintage.orders().values(), recovered.orders().values());
+        assertEquals(0, vintage.getRevenue().compareTo(recovered.getRevenue()));
+    }
+
+    @Test
+    void timeAdvancedOnAnotherThreadIsJournaledIntact() throws Exception {
+        Path directory = Files.createTempDirectory("pipeline");
+        Path snapshot = directory.resolve("vintage.snapshot");
+        Path journalPath = directory.resolve("vintage.journal");
+        Journal journal = Journal.open(journalPath, new SystemState(TimeSimulation.getClock(), vintage));
+        journal.checkpoint(snapshot);
+        String sellerId = userId(0);
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        pipeline = new CommandPipeline(vintage);
+
+        ConcurrentVintageTest.inParallel(2, thread -> {
+            for (int i = 0; i < 500; i++) {
+                if (thread == 0) {
+                    pipeline.publishProduct(sellerId, new TShirt(sellerId, ctt, "Shirt " + i, "Zara", new BigDecimal("10"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN));
+                } else {
+                    TimeSimulation.advanceTime(Duration.ofMinutes(1));
+                }
+            }
+        });
+        pipeline.advanceTime(Duration.ofDays(1)).get();
+        pipeline.close();
+        journal.close();
+
+        assertEquals(1001, journal.sequence());
+        Instant expected = TimeSimulation.getClock().instant();
+        Vintage recovered = Journal.recover(snapshot, journalPath).vintage();
+        assertEquals(500, recovered.products().size());
+        assertTrue(vintage.products().keySet().equals(recovered.products().keySet()));
+        assertTrue(Duration.between(expected, TimeSimulation.getClock().instant()).abs().getSeconds() < 5);
+    }
+
+    @Test
+    void aFailedBatchClosesThePipeline() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean();
+        Vintage failing = new Vintage("2.5", "5", "7.5", "0.1") {
+            @Override
+            public ReadView publishView() {
+                if (broken.get()) {
+                    throw new IllegalStateException("Broken view.");
+                }
+                return super.publishView();
+            }
+        };
+        pipeline = new CommandPipeline(failing, 4, 1);
+        pipeline.view();
+        broken.set(true);
+
+        CompletableFuture<Void> registered = pipeline.registerUser("user@mail.com", "User", "Braga", "1");
+        ExecutionException e = assertThrows(ExecutionException.class, registered::get);
+        assertEquals("Broken view.", e.getCause().getMessage());
+        List<CompletableFuture<Void>> queued = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                queued.add(pipeline.registerUser("other" + i + "@mail.com", "Other", "Braga", String.valueOf(i)));
+            }
+            fail("The pipeline should have closed.");
+        } catch (PipelineClosedException closed) {
+            for (CompletableFuture<Void> result : queued) {
+                assertThrows(ExecutionException.class, result::get);
+            }
+        }
+        pipeline.close();
+    }
+}
@@ -0,0 +1,228 @@
+package model;
+
+import exceptions.ProductInCartUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentVintageTest {
+    static final int THREADS = 8;
+
+    ConcurrentVintage vintage;
+    List<String> userIds;
+    List<String> shippingCompanyIds;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        vintage = new ConcurrentVintage("2.5", "5", "7.5", "0.1");
+        userIds = new ArrayList<>();
+        shippingCompanyIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * 4; i++) {
+            vintage.registerUser("user" + i + "@mail.com", "User " + i, "Braga", String.valueOf(i));
+            userIds.add(vintage.getUserIdByEmail("user" + i + "@mail.com").orElseThrow());
+        }
+        for (int i = 0; i < THREADS; i++) {
+            vintage.registerShippingCompany("Carrier " + i, new BigDecimal("1.5"));
+            shippingCompanyIds.add(vintage.getShippingCompanyIdByName("Carrier " + i).orElseThrow());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    static void inParallel(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    @Test
+    void parallelCheckoutsLoseNoUpdates() throws Exception {
+        inParallel(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 300; i++) {
+                // mostly sellers of this thread, sometimes a seller shared with the others
+                String sellerId = userIds.get(random.nextInt(10) == 0 ? random.nextInt(userIds.size()) : thread * 4 + random.nextInt(2));
+                String buyerId = userIds.get(thread * 4 + 2 + random.nextInt(2));
+                if (sellerId.equals(buyerId)) {
+                    continue;
+                }
+                String shippingCompanyId = shippingCompanyIds.get(random.nextInt(shippingCompanyIds.size()));
+                Product product = new TShirt(sellerId, shippingCompanyId, "Shirt " + i, "Zara", new BigDecimal(10 + random.nextInt(40)), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+                vintage.publishProduct(sellerId, product);
+                vintage.addProductToUserCart(buyerId, product.getId());
+                if (random.nextBoolean()) {
+                    vintage.orderUserCart(buyerId);
+                }
+            }
+            for (int buyer = 2; buyer < 4; buyer++) {
+                vintage.orderUserCart(userIds.get(thread * 4 + buyer));
+            }
+        });
+
+        Vintage engine = vintage.vintage();
+        BigDecimal fees = BigDecimal.ZERO;
+        Set<String> sold = new HashSet<>();
+        for (Order order : engine.orders().values()) {
+            fees = fees.add(order.vintageFees());
+            for (Product product : order.getProducts()) {
+                assertTrue(sold.add(product.getId()));
+            }
+        }
+        assertEquals(0, fees.compareTo(vintage.getRevenue()));
+        assertEquals(0, engine.products().size());
+        assertEquals(0, vintage.countProducts(ProductQuery.all(1)).total());
+        for (String userId : userIds) {
+            User user = vintage.getUser(userId).orElseThrow();
+            BigDecimal revenue = engine.orders().values().stream().filter(order -> order.getSellerId().equals(userId)).map(Order::productsCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal spending = engine.orders().values().stream().filter(order -> order.getBuyerId().equals(userId)).map(Order::productsCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(0, revenue.compareTo(user.getRevenue()));
+            assertEquals(0, spending.compareTo(user.getSpending()));
+        }
+        for (String shippingCompanyId : shippingCompanyIds) {
+            long orders = engine.orders().values().stream().filter(order -> order.getShippingCompanyId().equals(shippingCompanyId)).count();
+            assertEquals(orders, engine.shippingCompanies().get(shippingCompanyId).getInitializedOrders().size());
+        }
+    }
+
+    @Test
+    void aContestedProductIsSoldOnce() throws Exception {
+        String sellerId = userIds.get(0);
+        List<String> productIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Product product = new TShirt(sellerId, shippingCompanyIds.get(i % THREADS), "Shirt " + i, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+            vintage.publishProduct(sellerId, product);
+            productIds.add(product.getId());
+        }
+        AtomicInteger sales = new AtomicInteger();
+        AtomicInteger refusals = new AtomicInteger();
+        inParallel(THREADS, thread -> {
+            String buyerId = userIds.get(thread + 1);
+            for (String productId : productIds) {
+                vintage.addProductToUserCart(buyerId, productId);
+                try {
+                    sales.addAndGet(vintage.orderUserCart(buyerId).size());
+                } catch (ProductInCartUnavailable e) {
+                    assertEquals(List.of(productId), e.getUnavailableProductIds());
+                    refusals.incrementAndGet();
+                    vintage.removeProductFromUserCart(buyerId, productId);
+                }
+            }
+        });
+
+        assertEquals(productIds.size(), sales.get());
+        assertEquals(productIds.size(), vintage.vintage().orders().size());
+        assertTrue(refusals.get() <= productIds.size() * (THREADS - 1));
+        BigDecimal revenue = vintage.vintage().orders().values().stream().map(Order::productsCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, revenue.compareTo(vintage.getUser(sellerId).orElseThrow().getRevenue()));
+    }
+
+    @Test
+    void aFailedCheckoutHidesNoProductFromAnotherBuyer() throws Exception {
+        String sellerId = userIds.get(0);
+        String buyerId = userIds.get(1);
+        String otherBuyerId = userIds.get(2);
+        String soldBuyerId = userIds.get(3);
+        List<List<String>> carts = new ArrayList<>();
+        List<String> sold = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            List<String> cart = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                // yields when looked up, so the other buyer runs in the middle of a checkout even on a single processor
+                Product product = new TShirt(sellerId, shippingCompanyIds.get(0), "Shirt " + i + " " + j, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN) {
+                    @Override
+                    public String getId() {
+                        Thread.yield();
+                        return super.getId();
+                    }
+                };
+                vintage.publishProduct(sellerId, product);
+                cart.add(product.getId());
+            }
+            Product soldProduct = new TShirt(sellerId, shippingCompanyIds.get(0), "Sold shirt " + i, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+            vintage.publishProduct(sellerId, soldProduct);
+            carts.add(cart);
+            sold.add(soldProduct.getId());
+        }
+
+        AtomicInteger adding = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger hidden = new AtomicInteger();
+        inParallel(2, thread -> {
+            for (int i = 0; i < carts.size(); i++) {
+                List<String> cart = carts.get(i);
+                if (thread == 0) {
+                    // a cart holding a product sold in the meantime, whose checkout fails while the other buyer keeps
+                    // adding the rest of it to their own cart
+                    cart.forEach(productId -> vintage.addProductToUserCart(buyerId, productId));
+                    vintage.addProductToUserCart(buyerId, sold.get(i));
+                    vintage.addProductToUserCart(soldBuyerId, sold.get(i));
+                    vintage.orderUserCart(soldBuyerId);
+                    while (adding.get() <= i) {
+                        Thread.yield();
+                    }
+                    ProductInCartUnavailable e = assertThrows(ProductInCartUnavailable.class, () -> vintage.orderUserCart(buyerId));
+                    failed.incrementAndGet();
+                    assertEquals(List.of(sold.get(i)), e.getUnavailableProductIds());
+                    cart.forEach(productId -> vintage.removeProductFromUserCart(buyerId, productId));
+                } else {
+                    adding.incrementAndGet();
+                    while (failed.get() <= i) {
+                        for (String productId : cart) {
+                            vintage.addProductToUserCart(otherBuyerId, productId);
+                            if (!vintage.getUser(otherBuyerId).orElseThrow().cart().containsKey(productId)) {
+                                hidden.incrementAndGet();
+                            }
+                        }
+                    }
+                    cart.forEach(productId -> vintage.removeProductFromUserCart(otherBuyerId, productId));
+                }
+            }
+        });
+        assertEquals(0, hidden.get());
+    }
+
+    @Test
+    void unknownOrdersAreIgnored() {
+        assertDoesNotThrow(() -> vintage.expediteOrder("unknown"));
+        assertDoesNotThrow(() -> vintage.deliverOrder("unknown"));
+        assertDoesNotThrow(() -> vintage.returnOrder("unknown"));
+        assertEquals(0, vintage.vintage().orders().size());
+    }
+}
@@ -0,0 +1,141 @@
+package model;
+
+import exceptions.ProductInCartUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    Path directory;
+    Path snapshot;
+    Path journalPath;
+    Vintage vintage;
+    Journal journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        directory = Files.createTempDirectory("journal");
+        snapshot = directory.resolve("vintage.snapshot");
+        journalPath = directory.resolve("vintage.journal");
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        journal = Journal.open(journalPath, new SystemState(TimeSimulation.getClock(), vintage));
+        journal.checkpoint(snapshot);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private void populate() {
+        vintage.registerUser("buyer@mail.com", "Buyer", "Braga", "123");
+        vintage.registerUser("seller@mail.com", "Seller", "Porto", "456");
+        vintage.registerPremiumShippingCompany("DHL", new BigDecimal("1.5"), new BigDecimal("3"));
+        String buyerId = vintage.getUserIdByEmail("buyer@mail.com").orElseThrow();
+        String sellerId = vintage.getUserIdByEmail("seller@mail.com").orElseThrow();
+        String dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+        vintage.publishProduct(sellerId, new TShirt(sellerId, dhl, "Shirt", "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.STRIPES));
+        vintage.publishProduct(sellerId, new TShirt(sellerId, dhl, "Shirt", "Zara", new BigDecimal("20"), 0, Product.State.NEW_WITH_TAG, Size.S, TShirt.Pattern.PLAIN));
+        vintage.getProducts().forEach(product -> vintage.addProductToUserCart(buyerId, product.getId()));
+        vintage.orderUserCart(buyerId);
+        String orderId = vintage.userIssuedOrders(buyerId).get(0).getId();
+        TimeSimulation.advanceTime(Duration.ofHours(5));
+        vintage.expediteOrder(orderId);
+        TimeSimulation.advanceTime(Duration.ofDays(1));
+        vintage.deliverOrder(orderId);
+        vintage.returnOrder(orderId);
+        vintage.setShippingCompanyProfitMargin(dhl, new BigDecimal("2"));
+        vintage.setUserEmail(buyerId, "buyer@vintage.pt");
+    }
+
+    @Test
+    void recoverReplaysJournal() throws IOException {
+        populate();
+        Clock clock = TimeSimulation.getClock();
+
+        SystemState recovered = Journal.recover(snapshot, journalPath);
+        Vintage loaded = recovered.vintage();
+        assertEquals(journal.sequence(), recovered.sequence());
+        assertIterableEquals(vintage.orders().values(), loaded.orders().values());
+        assertEquals(vintage.shippingCompanies(), loaded.shippingCompanies());
+        assertEquals(0, vintage.getRevenue().compareTo(loaded.getRevenue()));
+        for (User user : vintage.users().values()) {
+            User other = loaded.users().get(user.getId());
+            assertEquals(user.getEmail(), other.getEmail());
+            assertEquals(0, user.getRevenue().compareTo(other.getRevenue()));
+            assertEquals(0, user.getSpending().compareTo(other.getSpending()));
+        }
+        assertEquals(vintage.userIdsByEmail(), loaded.userIdsByEmail());
+        assertTrue(Duration.between(clock.instant(), recovered.clock().instant()).abs().toMillis() < 1000);
+    }
+
+    @Test
+    void recoverReplaysTheCartPruneOfAFailedCheckout() throws IOException {
+        vintage.registerUser("a@mail.com", "A", "Braga", "1");
+        vintage.registerUser("b@mail.com", "B", "Braga", "2");
+        vintage.registerUser("seller@mail.com", "Seller", "Porto", "3");
+        vintage.registerShippingCompany("CTT", new BigDecimal("1.5"));
+        String a = vintage.getUserIdByEmail("a@mail.com").orElseThrow();
+        String b = vintage.getUserIdByEmail("b@mail.com").orElseThrow();
+        String sellerId = vintage.getUserIdByEmail("seller@mail.com").orElseThrow();
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        Product x = new TShirt(sellerId, ctt, "X", "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        Product y = new TShirt(sellerId, ctt, "Y", "Zara", new BigDecimal("20"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        vintage.publishProduct(sellerId, x);
+        vintage.publishProduct(sellerId, y);
+
+        vintage.addProductToUserCart(a, x.getId());
+        vintage.addProductToUserCart(b, x.getId());
+        vintage.orderUserCart(b);
+        assertThrows(ProductInCartUnavailable.class, () -> vintage.orderUserCart(a));
+        vintage.addProductToUserCart(a, y.getId());
+        vintage.orderUserCart(a);
+
+        Vintage loaded = Journal.recover(snapshot, journalPath).vintage();
+        assertIterableEquals(vintage.orders().values(), loaded.orders().values());
+        assertTrue(loaded.users().get(a).getCart().isEmpty());
+    }
+
+    @Test
+    void checkpointEmptiesJournal() throws IOException {
+        populate();
+        long sequence = journal.sequence();
+        journal.checkpoint(snapshot);
+        assertEquals(5, Files.size(journalPath));
+
+        SystemState recovered = Journal.recover(snapshot, journalPath);
+        assertEquals(sequence, recovered.sequence());
+        assertIterableEquals(vintage.orders().values(), recovered.vintage().orders().values());
+    }
+
+    @Test
+    void tornRecordIsDiscarded() throws IOException {
+        vintage.registerUser("first@mail.com", "First", "Braga", "1");
+        long size = Files.size(journalPath);
+        vintage.registerUser("second@mail.com", "Second", "Braga", "2");
+        journal.close();
+        try (var channel = Files.newByteChannel(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journalPath) - 2);
+        }
+
+        SystemState recovered = Journal.recover(snapshot, journalPath);
+        assertTrue(recovered.vintage().getUserIdByEmail("first@mail.com").isPresent());
+        assertTrue(recovered.vintage().getUserIdByEmail("second@mail.com").isEmpty());
+
+        journal = Journal.open(journalPath, recovered);
+        assertEquals(size, Files.size(journalPath));
+    }
+}
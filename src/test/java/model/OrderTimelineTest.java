@@ -0,0 +1,72 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderTimelineTest {
+    static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    static Order order(int minutes, int cost) {
+        return order(minutes, new BigDecimal(cost));
+    }
+
+    static Order order(int minutes, BigDecimal cost) {
+        return new Order(Order.nextAlphanumericId(), "buyer", "seller", "shipping", Map.of(), START.plusMinutes(minutes), null, cost, BigDecimal.ONE, BigDecimal.ONE, Order.Status.INITIALIZED);
+    }
+
+    static BigDecimal scan(List<Order> orders, LocalDateTime from, LocalDateTime to) {
+        return orders.stream()
+                .filter(order -> order.getCreationDate().isAfter(from) && order.getCreationDate().isBefore(to))
+                .map(Order::sellerRevenue)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Test
+    void intervalSumsMatchAScan() {
+        Random random = new Random(1);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            orders.add(order(random.nextInt(1000), 1 + random.nextInt(100)));
+        }
+        OrderTimeline timeline = new OrderTimeline(orders);
+        for (int i = 0; i < 300; i++) {
+            // mostly in creation order, sometimes older than the last one
+            Order order = order(1000 + i * 3 - (i % 10 == 0 ? 500 : 0), 1 + random.nextInt(100));
+            orders.add(order);
+            timeline.add(order);
+        }
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = START.plusMinutes(random.nextInt(2000) - 10);
+            LocalDateTime to = from.plusMinutes(random.nextInt(1000));
+            assertEquals(0, scan(orders, from, to).compareTo(timeline.sum(from, to)));
+        }
+        assertEquals(BigDecimal.ZERO, timeline.sum(START.plusDays(1), START));
+    }
+
+    @Test
+    void returnedOrdersAreCorrected() {
+        List<Order> orders = List.of(order(1, 10), order(1, 20), order(2, 30));
+        OrderTimeline timeline = new OrderTimeline(orders);
+        timeline.correct(orders.get(1), new BigDecimal(-20));
+
+        assertEquals(new BigDecimal(40), timeline.sum(START, START.plusMinutes(3)));
+        assertEquals(new BigDecimal(10), timeline.sum(START, START.plusMinutes(2)));
+    }
+
+    @Test
+    void sumsKeepTheScaleOfTheValues() {
+        List<Order> orders = List.of(order(1, new BigDecimal("15.00")), order(2, new BigDecimal("15.00")), order(3, new BigDecimal("7.50")));
+        OrderTimeline timeline = new OrderTimeline(orders);
+
+        assertEquals(new BigDecimal("30.00"), timeline.sum(START, START.plusMinutes(3)));
+        assertEquals(scan(orders, START, START.plusMinutes(4)), timeline.sum(START, START.plusMinutes(4)));
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMapTest {
+    private static Map<String, Integer> contents(PersistentMap<String, Integer> map) {
+        Map<String, Integer> contents = new HashMap<>();
+        map.forEach(contents::put);
+        return contents;
+    }
+
+    @Test
+    void updatesLeaveEarlierVersionsIntact() {
+        Random random = new Random(7);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        PersistentMap<String, Integer> half = null;
+        Map<String, Integer> expectedHalf = null;
+        for (int i = 0; i < 20000; i++) {
+            String key = Integer.toString(random.nextInt(8000), 36);
+            expected.put(key, i);
+            map = map.with(key, i);
+            if (i == 10000) {
+                half = map;
+                expectedHalf = new HashMap<>(expected);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, contents(map));
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertNull(map.get("missing"));
+        assertEquals(expectedHalf, contents(half));
+    }
+
+    @Test
+    void keysWithTheSameHashAreKeptApart() {
+        // "Aa" and "BB" have the same hash code
+        PersistentMap<String, Integer> one = PersistentMap.<String, Integer>empty().with("Aa", 1);
+        PersistentMap<String, Integer> both = one.with("BB", 2);
+        PersistentMap<String, Integer> replaced = both.with("Aa", 3);
+
+        assertEquals(2, both.size());
+        assertEquals(2, replaced.size());
+        assertEquals(Integer.valueOf(1), both.get("Aa"));
+        assertEquals(Integer.valueOf(3), replaced.get("Aa"));
+        assertEquals(Integer.valueOf(2), replaced.get("BB"));
+        assertNull(one.get("BB"));
+    }
+}
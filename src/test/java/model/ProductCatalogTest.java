@@ -0,0 +1,178 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCatalogTest {
+    Vintage vintage;
+    String sellerId;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneOffset.UTC));
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        // search before generating, so the indexes are kept up to date through publishing and checkouts
+        vintage.searchProducts(ProductQuery.all(1));
+        WorkloadGenerator generator = new WorkloadGenerator(vintage, new WorkloadGenerator.Config(20, 2, 0.5, 800, 150, 5, 3));
+        generator.generate();
+        sellerId = generator.userIds().get(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    static List<String> scan(Vintage vintage, ProductQuery query) {
+        Comparator<Product> order = switch (query.sort()) {
+            case NEWEST -> Comparator.comparing(Product::getId).reversed();
+            case OLDEST -> Comparator.comparing(Product::getId);
+            case PRICE_ASCENDING -> Comparator.comparing(Product::price).thenComparing(Product::getId);
+            case PRICE_DESCENDING -> Comparator.comparing(Product::price).thenComparing(Product::getId).reversed();
+        };
+        return vintage.products().values().stream()
+                .filter(product -> !product.getSellerId().equals(query.excludedSellerId()))
+                .filter(product -> query.minPrice() == null || product.price().compareTo(query.minPrice()) >= 0)
+                .filter(product -> query.maxPrice() == null || product.price().compareTo(query.maxPrice()) <= 0)
+                .filter(product -> query.filters().entrySet().stream().allMatch(filter -> filter.getValue().equals(filter.getKey() == ProductFacet.PRICE_RANGE
+                        ? ProductFacet.priceRange(product.price())
+                        : product.facets().get(filter.getKey()))))
+                .sorted(order)
+                .map(Product::getId)
+                .toList();
+    }
+
+    static List<String> pageThrough(Vintage vintage, ProductQuery query) {
+        List<String> ids = new ArrayList<>();
+        Page<Product> page = vintage.searchProducts(query);
+        ids.addAll(page.items().stream().map(Product::getId).toList());
+        while (page.hasNext()) {
+            assertEquals(query.limit(), page.items().size());
+            page = vintage.searchProducts(query.after(page.nextCursor()));
+            ids.addAll(page.items().stream().map(Product::getId).toList());
+        }
+        return ids;
+    }
+
+    @Test
+    void pagesMatchAScanInEveryOrder() {
+        List<ProductQuery> queries = List.of(
+                ProductQuery.all(7),
+                ProductQuery.all(7).where(ProductFacet.TYPE, "Sneaker"),
+                ProductQuery.all(7).where(ProductFacet.BRAND, "Zara").where(ProductFacet.CONDITION, "used"),
+                ProductQuery.all(7).where(ProductFacet.STATE, "GOOD").where(ProductFacet.PRICE_RANGE, "50-100"),
+                ProductQuery.all(7).where(ProductFacet.MATERIAL, "LEATHER").excludingSeller(sellerId),
+                ProductQuery.all(7).where(ProductFacet.BRAND, "Unknown"),
+                ProductQuery.all(7).pricedBetween(new BigDecimal("50"), new BigDecimal("100")),
+                ProductQuery.all(7).pricedBetween(new BigDecimal("150"), null).where(ProductFacet.CONDITION, "new"),
+                ProductQuery.all(7).pricedBetween(null, new BigDecimal("20")).excludingSeller(sellerId));
+        for (ProductQuery query : queries) {
+            for (ProductQuery.Sort sort : ProductQuery.Sort.values()) {
+                List<String> expected = scan(vintage, query.sortedBy(sort));
+                assertEquals(expected, pageThrough(vintage, query.sortedBy(sort)));
+                assertEquals(expected.size(), vintage.countProducts(query.sortedBy(sort)).total());
+            }
+        }
+    }
+
+    @Test
+    void premiumProductsAreRepricedInANewYear() {
+        ProductQuery query = ProductQuery.all(5).sortedBy(ProductQuery.Sort.PRICE_DESCENDING).where(ProductFacet.TYPE, "PremiumHandbag");
+        assertEquals(scan(vintage, query), pageThrough(vintage, query));
+        List<String> before = pageThrough(vintage, ProductQuery.all(5).sortedBy(ProductQuery.Sort.PRICE_DESCENDING));
+
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2030-06-01T00:00:00Z"), ZoneOffset.UTC));
+        List<String> after = pageThrough(vintage, ProductQuery.all(5).sortedBy(ProductQuery.Sort.PRICE_DESCENDING));
+        assertNotEquals(before, after);
+        assertEquals(scan(vintage, ProductQuery.all(5).sortedBy(ProductQuery.Sort.PRICE_DESCENDING)), after);
+        assertEquals(scan(vintage, query), pageThrough(vintage, query));
+    }
+
+    @Test
+    void facetCountsMatchTheProductsOnSale() {
+        FacetCounts counts = vintage.countProducts(ProductQuery.all(1).where(ProductFacet.CONDITION, "new"));
+        List<String> expected = scan(vintage, ProductQuery.all(1).where(ProductFacet.CONDITION, "new"));
+        assertEquals(expected.size(), counts.total());
+        assertEquals(Map.of("new", (long) expected.size()), counts.counts().get(ProductFacet.CONDITION));
+        for (ProductFacet facet : List.of(ProductFacet.TYPE, ProductFacet.PRICE_RANGE)) {
+            assertEquals(counts.total(), counts.counts().get(facet).values().stream().mapToLong(Long::longValue).sum());
+        }
+        assertEquals((long) scan(vintage, ProductQuery.all(1).where(ProductFacet.TYPE, "Handbag").where(ProductFacet.CONDITION, "new")).size(),
+                (long) counts.counts().get(ProductFacet.TYPE).getOrDefault("Handbag", 0L));
+    }
+
+    @Test
+    void publishingAndCheckoutUpdateTheIndexes() {
+        ProductQuery query = ProductQuery.all(10).where(ProductFacet.BRAND, "Adidas");
+        assertEquals(List.of(), vintage.searchProducts(query).items());
+
+        Handbag handbag = new Handbag(sellerId, vintage.getShippingCompanies().get(0).getId(), "Tote", "Adidas", new BigDecimal("40"), 0, Product.State.NEW_WITH_TAG, BigDecimal.TEN, Handbag.Material.LEATHER, Year.of(2020));
+        vintage.publishProduct(sellerId, handbag);
+        assertEquals(List.of(handbag), vintage.searchProducts(query).items());
+        assertEquals(List.of(), vintage.searchProducts(query.excludingSeller(sellerId)).items());
+
+        String buyerId = vintage.users().keySet().stream().filter(id -> !id.equals(sellerId)).findFirst().orElseThrow();
+        vintage.addProductToUserCart(buyerId, handbag.getId());
+        vintage.orderUserCart(buyerId);
+        assertEquals(List.of(), vintage.searchProducts(query).items());
+        assertEquals(0, vintage.countProducts(query.where(ProductFacet.MATERIAL, "LEATHER")).total());
+    }
+
+    @Test
+    void textSearchRanksByTrigramsAndFollowsPublishingAndCheckout() {
+        ProductQuery query = ProductQuery.all(5);
+        List<Product> gucci = vintage.searchText("gucci", query.excludingSeller(sellerId));
+        assertEquals(5, gucci.size());
+        assertTrue(gucci.stream().allMatch(product -> product.getBrand().equals("Gucci") && !product.getSellerId().equals(sellerId)));
+        // equally good matches come newest first
+        assertEquals(gucci.stream().map(Product::getId).sorted(Comparator.reverseOrder()).toList(), gucci.stream().map(Product::getId).toList());
+        assertEquals(List.of(), vintage.searchText("tote", query));
+
+        Handbag tote = new Handbag(sellerId, vintage.getShippingCompanies().get(0).getId(), "Leather tote bag", "Longchamp", new BigDecimal("40"), 0, Product.State.NEW_WITH_TAG, BigDecimal.TEN, Handbag.Material.LEATHER, Year.of(2020));
+        vintage.publishProduct(sellerId, tote);
+        assertEquals(List.of(tote), vintage.searchText("longchamps totes", query));
+        assertEquals(List.of(tote), vintage.searchText("Léather", query.where(ProductFacet.TYPE, "Handbag")));
+        assertEquals(List.of(), vintage.searchText("leather", query.where(ProductFacet.TYPE, "Sneaker")));
+        assertEquals(tote, vintage.searchText("gucci leather tote", query).get(0));
+
+        String buyerId = vintage.users().keySet().stream().filter(id -> !id.equals(sellerId)).findFirst().orElseThrow();
+        vintage.addProductToUserCart(buyerId, tote.getId());
+        vintage.orderUserCart(buyerId);
+        assertEquals(List.of(), vintage.searchText("leather tote", query));
+    }
+
+    @Test
+    void textIndexSkipsAndCompactsRemovedProducts() {
+        TextIndex index = new TextIndex();
+        List<Product> products = new ArrayList<>(vintage.products().values());
+        products.forEach(index::add);
+        List<String> remaining = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            if (i % 3 == 0) {
+                remaining.add(products.get(i).getId());
+            } else {
+                index.remove(products.get(i).getId());
+            }
+        }
+        // two thirds removed, so the index was compacted; the remaining products keep their order, newest first
+        List<String> expected = new ArrayList<>(remaining.stream().filter(id -> vintage.products().get(id).getBrand().equals("Zara")).toList());
+        Collections.reverse(expected);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, index.search("zara", id -> true, products.size()));
+    }
+}
@@ -0,0 +1,98 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadViewTest {
+    Vintage vintage;
+    String buyerId;
+    String sellerId;
+    String ctt;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        vintage.registerUser("buyer@mail.com", "Buyer", "Braga", "123");
+        vintage.registerUser("seller@mail.com", "Seller", "Porto", "456");
+        vintage.registerShippingCompany("CTT", new BigDecimal("1.2"));
+        buyerId = vintage.getUserIdByEmail("buyer@mail.com").orElseThrow();
+        sellerId = vintage.getUserIdByEmail("seller@mail.com").orElseThrow();
+        ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private void sell(String price) {
+        Product product = new TShirt(sellerId, ctt, "Shirt", "Zara", new BigDecimal(price), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        vintage.publishProduct(sellerId, product);
+        vintage.addProductToUserCart(buyerId, product.getId());
+        vintage.orderUserCart(buyerId);
+    }
+
+    @Test
+    void viewsKeepTheStateTheyWerePublishedAt() {
+        sell("20");
+        ReadView first = vintage.publishView();
+        assertSame(first, vintage.publishView());
+
+        sell("30");
+        vintage.expediteOrder(first.userIssuedOrders(buyerId).get(0).getId());
+        ReadView second = vintage.publishView();
+
+        assertEquals(first.version() + 1, second.version());
+        assertEquals(1, first.userIssuedOrders(buyerId).size());
+        assertEquals(Order.Status.INITIALIZED, first.userIssuedOrders(buyerId).get(0).getStatus());
+        assertEquals(vintage.userIssuedOrders(buyerId, null, 10).items(), second.userIssuedOrders(buyerId));
+        assertEquals(Order.Status.EXPEDITED, second.userIssuedOrders(buyerId).get(0).getStatus());
+        assertEquals(0, vintage.users().get(sellerId).getRevenue().compareTo(second.userWithMostRevenue().orElseThrow().revenue()));
+        assertTrue(first.getRevenue().compareTo(second.getRevenue()) < 0);
+        assertEquals(0, vintage.getRevenue().compareTo(second.getRevenue()));
+        assertEquals(ctt, second.shippingCompanyMostRevenue().orElseThrow().id());
+    }
+
+    @Test
+    void intervalRankingsMatchTheLiveStatistics() {
+        sell("20");
+        sell("30");
+        LocalDateTime from = LocalDateTime.now(TimeSimulation.getClock()).minusDays(1);
+        LocalDateTime to = from.plusDays(2);
+        ReadView view = vintage.publishView();
+
+        UserStatistics seller = view.topSellers(from, to, 5).get(0);
+        UserStatistics buyer = view.topBuyers(from, to, 5).get(0);
+        assertEquals(sellerId, seller.id());
+        assertEquals(buyerId, buyer.id());
+        assertEquals(0, vintage.topSellers(from, to, 1).get(0).amount().compareTo(seller.revenue()));
+        assertEquals(0, vintage.topBuyers(from, to, 1).get(0).amount().compareTo(buyer.spending()));
+        assertEquals(sellerId, view.userWithMostRevenue(from, to).orElseThrow().id());
+        assertTrue(view.topSellers(to, to.plusDays(1), 5).isEmpty());
+    }
+
+    @Test
+    void pipelinePublishesAViewAfterEveryBatch() throws Exception {
+        Product product = new TShirt(sellerId, ctt, "Shirt", "Zara", new BigDecimal("20"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        try (CommandPipeline pipeline = new CommandPipeline(vintage)) {
+            ReadView before = pipeline.view();
+            pipeline.publishProduct(sellerId, product);
+            pipeline.addProductToUserCart(buyerId, product.getId());
+            pipeline.orderUserCart(buyerId).get();
+
+            ReadView after = pipeline.view();
+            assertTrue(after.version() > before.version());
+            assertTrue(before.userIssuedOrders(buyerId).isEmpty());
+            assertEquals(1, after.userIssuedOrders(buyerId).size());
+        }
+    }
+}
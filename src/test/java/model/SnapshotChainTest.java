@@ -0,0 +1,108 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotChainTest {
+    Path base;
+    SnapshotFixture fixture;
+    Vintage vintage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        base = Files.createTempDirectory("chain").resolve("vintage.snapshot");
+        fixture = new SnapshotFixture(100, 1000);
+        vintage = fixture.vintage;
+        fixture.order(300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private void assertSameState(Vintage expected, Vintage actual) {
+        assertEquals(expected.products().keySet(), actual.products().keySet());
+        assertIterableEquals(expected.orders().values(), actual.orders().values());
+        assertEquals(expected.shippingCompanies(), actual.shippingCompanies());
+        assertEquals(0, expected.getRevenue().compareTo(actual.getRevenue()));
+        for (User user : expected.users().values()) {
+            User other = actual.users().get(user.getId());
+            assertEquals(user.cart().keySet(), other.cart().keySet());
+            assertEquals(user.ordersMade().keySet(), other.ordersMade().keySet());
+            assertEquals(0, user.getSpending().compareTo(other.getSpending()));
+        }
+        for (Order order : actual.orders().values()) {
+            assertSame(order, actual.users().get(order.getSellerId()).ordersReceived().get(order.getId()));
+            assertSame(order, actual.shippingCompanies().get(order.getShippingCompanyId()).orders().get(order.getId()));
+        }
+    }
+
+    @Test
+    void deltasHoldOnlyChanges() throws IOException {
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+        Order first = vintage.orders().values().iterator().next();
+        vintage.expediteOrder(first.getId());
+        Path delta = SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage));
+        assertEquals(SnapshotChain.delta(base, 1), delta);
+        assertTrue(Files.size(delta) * 20 < Files.size(base));
+
+        fixture.order(20);
+        vintage.deliverOrder(first.getId());
+        assertEquals(SnapshotChain.delta(base, 2), SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage)));
+
+        assertSameState(vintage, SnapshotChain.read(base).vintage());
+    }
+
+    @Test
+    void baseWithDeltasIsNotMapped() throws IOException {
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+        assertFalse(SnapshotChain.hasDeltas(base));
+        vintage.expediteOrder(vintage.orders().values().iterator().next().getId());
+        SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage));
+
+        assertTrue(SnapshotChain.hasDeltas(base));
+        assertThrows(IOException.class, () -> SnapshotCodec.map(base));
+    }
+
+    @Test
+    void chunkedBaseIsNotMapped() throws IOException {
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage), true);
+
+        assertFalse(SnapshotChain.canMap(base));
+        assertThrows(IOException.class, () -> SnapshotCodec.map(base));
+        assertSameState(vintage, SnapshotChain.read(base).vintage());
+    }
+
+    @Test
+    void mergeReplacesChainWithBase() throws IOException {
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+        fixture.order(20);
+        SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage));
+
+        SnapshotChain.merge(base);
+        assertFalse(Files.exists(SnapshotChain.delta(base, 1)));
+        assertSameState(vintage, SnapshotChain.read(base).vintage());
+    }
+
+    @Test
+    void largeChainIsMergedIntoBase() throws IOException {
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+        for (int i = 0; i < 6; i++) {
+            fixture.order(100);
+            SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage));
+        }
+        assertFalse(Files.exists(SnapshotChain.delta(base, 6)));
+        assertSameState(vintage, SnapshotChain.read(base).vintage());
+    }
+}
@@ -0,0 +1,195 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Year;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCodecTest {
+    Vintage vintage;
+    String buyerId;
+    String sellerId;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        vintage.registerUser("buyer@mail.com", "Buyer", "Braga", "123");
+        vintage.registerUser("seller@mail.com", "Seller", "Porto", "456");
+        vintage.registerShippingCompany("CTT", new BigDecimal("1.2"));
+        vintage.registerPremiumShippingCompany("DHL", new BigDecimal("1.5"), new BigDecimal("3"));
+        buyerId = vintage.getUserIdByEmail("buyer@mail.com").orElseThrow();
+        sellerId = vintage.getUserIdByEmail("seller@mail.com").orElseThrow();
+        String ctt = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        String dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+
+        vintage.publishProduct(sellerId, new Sneaker(sellerId, ctt, "Running shoes", "Nike", new BigDecimal("80"), 1, Product.State.GOOD, 42, Color.RED, true, Year.of(2019), new BigDecimal("0.2")));
+        vintage.publishProduct(sellerId, new PremiumSneaker(sellerId, dhl, "Limited edition", "Adidas", new BigDecimal("300"), 0, Product.State.NEW_WITH_TAG, 40, Color.BLACK, false, Year.of(2015), new BigDecimal("0.1")));
+        vintage.publishProduct(sellerId, new TShirt(sellerId, ctt, "Summer shirt", "Zara", new BigDecimal("15.99"), 2, Product.State.SATISFACTORY, Size.L, TShirt.Pattern.PALM_TREES));
+        vintage.publishProduct(sellerId, new Handbag(sellerId, ctt, "Tote", "Mango", new BigDecimal("45"), 0, Product.State.VERY_GOOD, new BigDecimal("12.5"), Handbag.Material.CANVAS, Year.of(2021)));
+        vintage.publishProduct(sellerId, new PremiumHandbag(sellerId, dhl, "Birkin", "Hermès", new BigDecimal("9000"), 1, Product.State.NEW_WITHOUT_TAG, new BigDecimal("30"), Handbag.Material.LEATHER, Year.of(2010), new BigDecimal("1.05")));
+
+        for (Product product : vintage.getProducts()) {
+            if (!product.getBrand().equals("Zara")) {
+                vintage.addProductToUserCart(buyerId, product.getId());
+            }
+        }
+        vintage.orderUserCart(buyerId);
+        for (Order order : vintage.userIssuedOrders(buyerId)) {
+            vintage.expediteOrder(order.getId());
+        }
+        Order delivered = vintage.userIssuedOrders(buyerId).get(0);
+        vintage.deliverOrder(delivered.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    private SystemState roundTrip(SystemState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.write(out, state);
+        return SnapshotCodec.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void roundTripPreservesCatalog() throws IOException {
+        Vintage loaded = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).vintage();
+        assertEquals(vintage.products(), loaded.products());
+    }
+
+    @Test
+    void roundTripPreservesOrders() throws IOException {
+        Vintage loaded = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).vintage();
+        assertIterableEquals(vintage.orders().values(), loaded.orders().values());
+        assertEquals(0, vintage.getRevenue().compareTo(loaded.getRevenue()));
+    }
+
+    @Test
+    void roundTripRelinksOrders() throws IOException {
+        Vintage loaded = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).vintage();
+        for (Order order : loaded.orders().values()) {
+            assertSame(order, loaded.users().get(order.getBuyerId()).ordersMade().get(order.getId()));
+            assertSame(order, loaded.users().get(order.getSellerId()).ordersReceived().get(order.getId()));
+            assertSame(order, loaded.shippingCompanies().get(order.getShippingCompanyId()).orders().get(order.getId()));
+        }
+    }
+
+    @Test
+    void roundTripPreservesUsersAndShippingCompanies() throws IOException {
+        Vintage loaded = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).vintage();
+        User seller = loaded.users().get(sellerId);
+        assertEquals("seller@mail.com", seller.getEmail());
+        assertEquals(0, vintage.users().get(sellerId).getRevenue().compareTo(seller.getRevenue()));
+        assertEquals(1, seller.getProducts().size());
+        assertEquals(vintage.shippingCompanies(), loaded.shippingCompanies());
+        assertTrue(loaded.shippingCompanies().values().stream().anyMatch(company -> company instanceof PremiumShippingCompany));
+    }
+
+    @Test
+    void roundTripPreservesClockOffset() throws IOException {
+        TimeSimulation.advanceTime(Duration.ofDays(3));
+        Clock clock = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).clock();
+        long difference = Duration.between(TimeSimulation.getClock().instant(), clock.instant()).abs().toMillis();
+        assertTrue(difference < 1000);
+    }
+
+    @Test
+    void mappedLoadHydratesOrdersOnAccess() throws IOException {
+        Path path = Files.createTempFile("vintage", ".snapshot");
+        try {
+            SnapshotCodec.write(path, new SystemState(TimeSimulation.getClock(), vintage));
+            Vintage loaded = SnapshotCodec.map(path).vintage();
+            LazyMap<?> orders = (LazyMap<?>) loaded.orders();
+            assertEquals(vintage.orders().keySet(), orders.keySet());
+            assertEquals(0, orders.loaded());
+            for (Order order : vintage.orders().values()) {
+                assertEquals(order, loaded.users().get(order.getBuyerId()).ordersMade().get(order.getId()));
+                assertSame(orders.get(order.getId()), loaded.shippingCompanies().get(order.getShippingCompanyId()).orders().get(order.getId()));
+            }
+            assertEquals(vintage.orders().size(), orders.loaded());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void mappedLoadListsReturnableOrdersOfOneBuyerOnly() throws IOException {
+        Path path = Files.createTempFile("vintage", ".snapshot");
+        try {
+            SnapshotCodec.write(path, new SystemState(TimeSimulation.getClock(), vintage));
+            Vintage loaded = SnapshotCodec.map(path).vintage();
+            LazyMap<?> orders = (LazyMap<?>) loaded.orders();
+
+            assertTrue(loaded.getUserReturnableOrders(sellerId).isEmpty());
+            assertEquals(0, orders.loaded());
+            assertEquals(vintage.getUserReturnableOrders(buyerId), loaded.getUserReturnableOrders(buyerId));
+            assertEquals(loaded.users().get(buyerId).ordersMade().size(), orders.loaded());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void mappedLoadRanksUsersWithoutHydratingOrders() throws IOException {
+        Path path = Files.createTempFile("vintage", ".snapshot");
+        try {
+            SnapshotCodec.write(path, new SystemState(TimeSimulation.getClock(), vintage));
+            Vintage loaded = SnapshotCodec.map(path).vintage();
+            LocalDateTime from = LocalDateTime.now(TimeSimulation.getClock()).minusDays(1);
+            LocalDateTime to = from.plusDays(2);
+
+            // an empty ranking builds the leaderboards without copying any ranked user and its orders
+            assertTrue(loaded.topSellers(from, to, 0).isEmpty());
+            assertEquals(0, ((LazyMap<?>) loaded.orders()).loaded());
+            RankedUser seller = loaded.topSellers(from, to, 1).get(0);
+            RankedUser buyer = loaded.topBuyers(from, to, 1).get(0);
+            assertEquals(sellerId, seller.user().getId());
+            assertEquals(0, vintage.topSellers(from, to, 1).get(0).amount().compareTo(seller.amount()));
+            assertEquals(buyerId, buyer.user().getId());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void loadedIdCountersKeepNewIdsApart() throws IOException {
+        assertEquals("000z", IdAllocator.encode(35, 4));
+        assertEquals(35, IdAllocator.decode("000z"));
+
+        // counters saved by a process that allocated further than this one
+        SnapshotOutput output = new SnapshotOutput();
+        output.writeVarInt(IdAllocator.values().length);
+        for (IdAllocator allocator : IdAllocator.values()) {
+            output.writeVarLong(allocator.peek() + 100);
+        }
+        long products = IdAllocator.PRODUCT.peek() + 100;
+        long users = IdAllocator.USER.peek() + 100;
+        SnapshotCodec.readIdCounters(new SnapshotInput(output.toByteArray()));
+
+        String shippingCompanyId = vintage.getShippingCompanyIdByName("CTT").orElseThrow();
+        Product product = new TShirt(sellerId, shippingCompanyId, "Shirt", "Zara", new BigDecimal("10"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN);
+        assertEquals(products, IdAllocator.decode(product.getId()));
+
+        // restoring an entity moves its counter past the restored code
+        Product restored = roundTrip(new SystemState(TimeSimulation.getClock(), vintage)).vintage().getProducts().get(0);
+        assertTrue(IdAllocator.decode(restored.getId()) < IdAllocator.PRODUCT.peek());
+        vintage.registerUser("new@mail.com", "New", "Braga", "789");
+        assertEquals(users, IdAllocator.decode(vintage.getUserIdByEmail("new@mail.com").orElseThrow()));
+    }
+}
@@ -0,0 +1,49 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vintage the snapshot tests write and reload: numbered users selling t-shirts shipped by DHL, bought one at a time by
+ * users other than their sellers.
+ */
+final class SnapshotFixture {
+    final Vintage vintage = new Vintage("2.5", "5", "7.5", "0.1");
+    final String dhl;
+    final List<String> userIds = new ArrayList<>();
+
+    /**
+     * @param users    Number of users
+     * @param products Number of t-shirts, published round-robin by the users
+     */
+    SnapshotFixture(int users, int products) {
+        vintage.registerPremiumShippingCompany("DHL", new BigDecimal("1.5"), new BigDecimal("3"));
+        dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+        for (int i = 0; i < users; i++) {
+            vintage.registerUser("user" + i + "@mail.com", "User " + i, "Braga", String.valueOf(i));
+            userIds.add(vintage.getUserIdByEmail("user" + i + "@mail.com").orElseThrow());
+        }
+        for (int i = 0; i < products; i++) {
+            String sellerId = userIds.get(i % users);
+            vintage.publishProduct(sellerId, new TShirt(sellerId, dhl, "Shirt " + i, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN));
+        }
+    }
+
+    /**
+     * Orders the first products of the catalog, each by itself, skipping those the chosen buyer sells.
+     *
+     * @param count Number of catalog products to go through
+     */
+    void order(int count) {
+        List<Product> products = vintage.getProducts();
+        for (int i = 0; i < count; i++) {
+            String buyerId = userIds.get((i * 7 + 1) % userIds.size());
+            Product product = products.get(i);
+            if (!product.getSellerId().equals(buyerId)) {
+                vintage.addProductToUserCart(buyerId, product.getId());
+                vintage.orderUserCart(buyerId);
+            }
+        }
+    }
+}
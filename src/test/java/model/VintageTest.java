@@ -0,0 +1,261 @@
+package model;
+
+import exceptions.DuplicateEmailException;
+import exceptions.DuplicateShippingCompanyNameException;
+import exceptions.ProductInCartUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VintageTest {
+    Vintage vintage;
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+        vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        vintage.registerUser("ana@mail.com", "Ana", "Braga", "1");
+        vintage.registerUser("rui@mail.com", "Rui", "Porto", "2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    void duplicateEmailsAreRejected() {
+        assertThrows(DuplicateEmailException.class, () -> vintage.registerUser("ana@mail.com", "Other", "Lisboa", "3"));
+        assertThrows(DuplicateEmailException.class, () -> vintage.importBatch(List.of(new User("new@mail.com", "A", "B", "4"), new User("new@mail.com", "C", "D", "5")), List.of(), List.of()));
+        String rui = vintage.getUserIdByEmail("rui@mail.com").orElseThrow();
+        assertThrows(DuplicateEmailException.class, () -> vintage.setUserEmail(rui, "ana@mail.com"));
+        assertEquals(2, vintage.users().size());
+        assertEquals(Optional.empty(), vintage.getUserIdByEmail("new@mail.com"));
+    }
+
+    @Test
+    void emailIndexFollowsChangesAndSnapshots() throws IOException {
+        Path base = Files.createTempDirectory("vintage").resolve("vintage.snapshot");
+        String ana = vintage.getUserIdByEmail("ana@mail.com").orElseThrow();
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+
+        vintage.setUserEmail(ana, "ana@vintage.pt");
+        assertEquals(Optional.empty(), vintage.getUserIdByEmail("ana@mail.com"));
+        assertEquals(Optional.of(ana), vintage.getUserIdByEmail("ana@vintage.pt"));
+        vintage.registerUser("ana@mail.com", "Another Ana", "Faro", "3");
+        SnapshotChain.writeDelta(base, new SystemState(TimeSimulation.getClock(), vintage));
+
+        Vintage loaded = SnapshotChain.read(base).vintage();
+        assertEquals(vintage.userIdsByEmail(), loaded.userIdsByEmail());
+        assertEquals(Optional.of(ana), loaded.getUserIdByEmail("ana@vintage.pt"));
+    }
+
+    @Test
+    void shippingCompanyNamesAreUniqueAndSurviveSnapshots() throws IOException {
+        vintage.registerShippingCompany("DHL", new BigDecimal("1.5"));
+        vintage.registerPremiumShippingCompany("UPS", new BigDecimal("2"), new BigDecimal("0.1"));
+        String dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+        assertThrows(DuplicateShippingCompanyNameException.class, () -> vintage.registerPremiumShippingCompany("DHL", BigDecimal.ONE, BigDecimal.ONE));
+        ShippingCompany fedex = new ShippingCompany("FedEx", BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+        assertThrows(DuplicateShippingCompanyNameException.class, () -> vintage.importBatch(List.of(), List.of(fedex, fedex.clone()), List.of()));
+        assertEquals(2, vintage.shippingCompanies().size());
+        assertEquals(Optional.empty(), vintage.getShippingCompanyIdByName("FedEx"));
+
+        List<ShippingCompanySummary> directory = pageThrough(cursor -> vintage.getShippingCompanySummaries(cursor, 1), 1);
+        assertEquals(vintage.getShippingCompanySummaries().stream().sorted(Comparator.comparing(ShippingCompanySummary::id)).toList(), directory);
+        assertEquals(new ShippingCompanySummary(dhl, "DHL", false), directory.get(0));
+        assertTrue(directory.get(1).premium());
+
+        Path base = Files.createTempDirectory("vintage").resolve("vintage.snapshot");
+        SnapshotChain.writeBase(base, new SystemState(TimeSimulation.getClock(), vintage));
+        Vintage loaded = SnapshotChain.read(base).vintage();
+        assertEquals(Optional.of(dhl), loaded.getShippingCompanyIdByName("DHL"));
+        assertThrows(DuplicateShippingCompanyNameException.class, () -> loaded.registerShippingCompany("UPS", BigDecimal.ONE));
+    }
+
+    @Test
+    void checkoutReportsExactlyTheUnavailableProducts() {
+        vintage.registerShippingCompany("DHL", new BigDecimal("1.5"));
+        vintage.registerUser("eva@mail.com", "Eva", "Faro", "3");
+        String dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+        String ana = vintage.getUserIdByEmail("ana@mail.com").orElseThrow();
+        String rui = vintage.getUserIdByEmail("rui@mail.com").orElseThrow();
+        String eva = vintage.getUserIdByEmail("eva@mail.com").orElseThrow();
+        List<Product> shirts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shirts.add(new TShirt(ana, dhl, "Shirt " + i, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN));
+            vintage.publishProduct(ana, shirts.get(i));
+            vintage.addProductToUserCart(rui, shirts.get(i).getId());
+        }
+        vintage.addProductToUserCart(eva, shirts.get(1).getId());
+        vintage.orderUserCart(eva);
+
+        ProductInCartUnavailable e = assertThrows(ProductInCartUnavailable.class, () -> vintage.orderUserCart(rui));
+        assertEquals(List.of(shirts.get(1).getId()), e.getUnavailableProductIds());
+        assertEquals(List.of(shirts.get(0), shirts.get(2)), vintage.getUser(rui).orElseThrow().getCart().stream().sorted(Comparator.comparing(Product::getId)).toList());
+        assertEquals(List.of(shirts.get(0), shirts.get(2)), vintage.searchProducts(ProductQuery.all(10).sortedBy(ProductQuery.Sort.OLDEST)).items());
+        assertEquals(1, vintage.orders().size());
+
+        assertEquals(1, vintage.orderUserCart(rui).size());
+        assertEquals(List.of(), vintage.getProducts());
+    }
+
+    @Test
+    void shippingCompanyWorkQueuesFollowOrderTransitions() {
+        vintage.registerShippingCompany("DHL", new BigDecimal("1.5"));
+        String dhl = vintage.getShippingCompanyIdByName("DHL").orElseThrow();
+        String ana = vintage.getUserIdByEmail("ana@mail.com").orElseThrow();
+        String rui = vintage.getUserIdByEmail("rui@mail.com").orElseThrow();
+        ShippingCompany shippingCompany = vintage.shippingCompanies().get(dhl);
+        assertEquals(List.of(), shippingCompany.getInitializedOrders());
+
+        for (int i = 0; i < 3; i++) {
+            vintage.publishProduct(ana, new TShirt(ana, dhl, "Shirt " + i, "Zara", new BigDecimal("15"), 1, Product.State.GOOD, Size.M, TShirt.Pattern.PLAIN));
+            vintage.getProducts().forEach(product -> vintage.addProductToUserCart(rui, product.getId()));
+            vintage.orderUserCart(rui);
+            TimeSimulation.advanceTime(Duration.ofMinutes(1));
+        }
+        List<String> placed = shippingCompany.getInitializedOrders().stream().map(Order::getId).toList();
+        assertEquals(3, placed.size());
+
+        vintage.expediteOrder(placed.get(1));
+        vintage.expediteOrder(placed.get(0));
+        vintage.deliverOrder(placed.get(0));
+        vintage.returnOrder(placed.get(0));
+
+        assertEquals(List.of(placed.get(2)), shippingCompany.getInitializedOrders().stream().map(Order::getId).toList());
+        assertEquals(List.of(placed.get(1)), shippingCompany.getExpeditedOrders().stream().map(Order::getId).toList());
+        assertEquals(List.of(placed.get(0)), shippingCompany.getOrders(Order.Status.RETURNED).stream().map(Order::getId).toList());
+        assertEquals(shippingCompany.getExpeditedOrders(), shippingCompany.clone().getExpeditedOrders());
+    }
+
+    @Test
+    void intervalStatisticsMatchTheOrderHistory() {
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Vintage generated = new Vintage("2.5", "5", "7.5", "0.1");
+        new WorkloadGenerator(generated, new WorkloadGenerator.Config(20, 2, 0.5, 600, 200, 10, 3)).generate();
+        LocalDateTime from = LocalDateTime.of(2023, 1, 3, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2023, 1, 8, 12, 0);
+
+        for (User user : generated.users().values()) {
+            assertEquals(0, OrderTimelineTest.scan(List.copyOf(user.ordersReceived().values()), from, to).compareTo(user.getRevenue(from, to)));
+            assertEquals(0, OrderTimelineTest.scan(List.copyOf(user.ordersMade().values()), from, to).compareTo(user.getSpending(from, to)));
+        }
+        List<User> sellers = generated.topSellersInInterval(from, to);
+        assertEquals(generated.users().size(), sellers.size());
+        assertEquals(0, sellers.get(sellers.size() - 1).getRevenue(from, to).compareTo(generated.userWithMostRevenue(from, to).orElseThrow().getRevenue(from, to)));
+    }
+
+    @Test
+    void leaderboardsMatchTheIntervalSums() {
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Vintage generated = new Vintage("2.5", "5", "7.5", "0.1");
+        WorkloadGenerator generator = new WorkloadGenerator(generated, new WorkloadGenerator.Config(30, 2, 0.5, 900, 300, 10, 5));
+        generated.topSellers(LocalDateTime.MIN, LocalDateTime.MAX, 1);
+        generator.generate();
+
+        LocalDateTime[][] intervals = {
+                {LocalDateTime.of(2023, 1, 2, 7, 13), LocalDateTime.of(2023, 1, 6, 18, 41)},
+                {LocalDateTime.of(2023, 1, 3, 10, 5), LocalDateTime.of(2023, 1, 3, 10, 50)},
+                {LocalDateTime.of(2022, 12, 1, 0, 0), LocalDateTime.of(2024, 1, 1, 0, 0)},
+        };
+        for (LocalDateTime[] interval : intervals) {
+            List<RankedUser> sellers = generated.topSellers(interval[0], interval[1], 5);
+            List<BigDecimal> expected = generated.users().values().stream()
+                    .map(user -> user.getRevenue(interval[0], interval[1]))
+                    .filter(revenue -> revenue.signum() > 0)
+                    .sorted(Comparator.reverseOrder())
+                    .limit(5)
+                    .toList();
+            assertEquals(expected.size(), sellers.size());
+            for (int i = 0; i < sellers.size(); i++) {
+                assertEquals(0, expected.get(i).compareTo(sellers.get(i).amount()));
+            }
+            for (RankedUser buyer : generated.topBuyers(interval[0], interval[1], 3)) {
+                assertEquals(0, generated.users().get(buyer.user().getId()).getSpending(interval[0], interval[1]).compareTo(buyer.amount()));
+            }
+        }
+        assertEquals(List.of(), generated.topSellers(intervals[0][1], intervals[0][0], 5));
+    }
+
+    static <T> List<T> pageThrough(Function<String, Page<T>> pages, int limit) {
+        List<T> items = new ArrayList<>();
+        Page<T> page = pages.apply(null);
+        items.addAll(page.items());
+        while (page.hasNext()) {
+            assertEquals(limit, page.items().size());
+            page = pages.apply(page.nextCursor());
+            items.addAll(page.items());
+        }
+        return items;
+    }
+
+    @Test
+    void pagedListingsMatchTheFullListings() {
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Vintage generated = new Vintage("2.5", "5", "7.5", "0.1");
+        WorkloadGenerator generator = new WorkloadGenerator(generated, new WorkloadGenerator.Config(10, 7, 0.5, 600, 200, 5, 9));
+        generator.generate();
+        Comparator<Order> byCreation = Comparator.comparing(Order::getCreationDate).thenComparing(Order::getId);
+
+        for (String userId : generator.userIds()) {
+            User user = generated.users().get(userId);
+            List<Order> made = user.getOrdersMade();
+            assertEquals(made.stream().sorted(byCreation).map(Order::getId).toList(),
+                    pageThrough(cursor -> generated.userIssuedOrders(userId, cursor, 4), 4).stream().map(Order::getId).toList());
+            assertEquals(user.getOrdersReceived().size(), pageThrough(cursor -> generated.userReceivedOrders(userId, cursor, 3), 3).size());
+        }
+        for (String shippingCompanyId : generator.shippingCompanyIds()) {
+            assertEquals(generated.getShippingCompanyExpeditedOrders(shippingCompanyId).stream().sorted(byCreation).toList(),
+                    pageThrough(cursor -> generated.getShippingCompanyExpeditedOrders(shippingCompanyId, cursor, 2), 2));
+        }
+        assertEquals(generator.shippingCompanyIds().stream().sorted().toList(),
+                pageThrough(cursor -> generated.getShippingCompanies(cursor, 3), 3).stream().map(ShippingCompany::getId).toList());
+        assertEquals(generated.products().keySet().stream().sorted().toList(),
+                pageThrough(cursor -> generated.getProducts(cursor, 50), 50).stream().map(Product::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> generated.userIssuedOrders(generator.userIds().get(0), "unknown", 4));
+    }
+
+    @Test
+    void returnableOrdersFollowDeliveriesReturnsAndDeadlines() {
+        TimeSimulation.setClock(Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneOffset.UTC));
+        Vintage generated = new Vintage("2.5", "5", "7.5", "0.1");
+        WorkloadGenerator generator = new WorkloadGenerator(generated, new WorkloadGenerator.Config(15, 2, 0.5, 600, 250, 6, 4));
+        generated.getUserReturnableOrders("none");
+        generator.generate();
+        Comparator<Order> byDeadline = Comparator.comparing(Order::returnDeadline).thenComparing(Order::getId);
+
+        long returnable = 0;
+        for (int step = 0; step < 10; step++) {
+            for (String userId : generator.userIds()) {
+                List<Order> expected = generated.users().get(userId).getReturnableOrders().stream().sorted(byDeadline).toList();
+                assertEquals(expected, generated.getUserReturnableOrders(userId));
+                returnable += expected.size();
+            }
+            TimeSimulation.advanceTime(Duration.ofHours(7));
+        }
+        assertTrue(returnable > 0);
+        assertEquals(0, generated.expireReturnWindows());
+        for (String userId : generator.userIds()) {
+            assertEquals(List.of(), generated.getUserReturnableOrders(userId));
+        }
+    }
+}
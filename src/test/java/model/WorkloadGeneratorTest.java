@@ -0,0 +1,60 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.TimeSimulation;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadGeneratorTest {
+    static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        TimeSimulation.setClock(Clock.fixed(START, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TimeSimulation.setClock(Clock.systemDefaultZone());
+    }
+
+    Vintage generate(long seed) {
+        TimeSimulation.setClock(Clock.fixed(START, ZoneOffset.UTC));
+        Vintage vintage = new Vintage("2.5", "5", "7.5", "0.1");
+        WorkloadGenerator.Summary summary = new WorkloadGenerator(vintage, new WorkloadGenerator.Config(50, 4, 0.5, 2000, 500, 10, seed)).generate();
+        assertEquals(500, summary.orders() + summary.skipped());
+        assertTrue(summary.delivered() > 0);
+        assertTrue(summary.returned() > 0);
+        return vintage;
+    }
+
+    @Test
+    void sameSeedDrivesTheSameWorkload() {
+        Vintage first = generate(42);
+        Vintage second = generate(42);
+        Vintage other = generate(43);
+
+        assertEquals(first.getRevenue(), second.getRevenue());
+        assertEquals(first.orders().size(), second.orders().size());
+        assertEquals(first.products().size(), second.products().size());
+        assertNotEquals(first.getRevenue(), other.getRevenue());
+    }
+
+    @Test
+    void spreadsOrdersOverTheSimulatedDays() {
+        Vintage vintage = generate(7);
+        LocalDateTime start = LocalDateTime.ofInstant(START, ZoneOffset.UTC);
+
+        assertEquals(START.plusSeconds(10 * 24 * 3600), TimeSimulation.getClock().instant());
+        assertTrue(vintage.orders().values().stream().anyMatch(order -> order.getCreationDate().isBefore(start.plusDays(1))));
+        assertTrue(vintage.orders().values().stream().anyMatch(order -> order.getCreationDate().isAfter(start.plusDays(9))));
+        assertTrue(vintage.orders().values().stream().allMatch(order -> order.getDeliveryDateTime() == null || order.getDeliveryDateTime().isAfter(order.getCreationDate())));
+    }
+}